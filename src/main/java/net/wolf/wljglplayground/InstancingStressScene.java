@@ -0,0 +1,274 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.wolf.wljglplayground.object.BoxMesh;
+import net.wolf.wljglplayground.object.Camera;
+import net.wolf.wljglplayground.object.ColorMaterial;
+import net.wolf.wljglplayground.object.InstancedObjectGroup;
+import net.wolf.wljglplayground.object.Light3d;
+import net.wolf.wljglplayground.object.MeshCache;
+import net.wolf.wljglplayground.object.MultiDrawBatch;
+import net.wolf.wljglplayground.object.SceneOctree;
+import net.wolf.wljglplayground.object.Simple3dObject;
+import net.wolf.wljglplayground.object.SphereMesh;
+import net.wolf.wljglplayground.shader.ProgramGLSL;
+import net.wolf.wljglplayground.shader.ShaderGLSL;
+import net.wolf.wljglplayground.shader.UniformBlock;
+import net.wolf.wljglplayground.shader.UniformBufferGLSL;
+import net.wolf.wljglplayground.util.Deletable;
+import org.joml.Vector3f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stress scene with grid of many identical cubes, drawn 
+ * by instanced group (one draw call), by separate objects 
+ * (one draw call per cube) or by multi draw batch of visible cubes 
+ * (indirect draw or loop of base vertex draws) for comparing 
+ * @author Volchkov Andrey
+ */
+public class InstancingStressScene implements PlayScene {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(InstancingStressScene.class);
+    
+    private static final String[] COLORS = {
+        "#00ffff", "#ff00ff", "#6600cc", "#66ff33", "#663300"
+    };
+    
+    /**
+     * Way of drawing cubes
+     */
+    public enum Mode {
+        //instanced group
+        INSTANCED,
+        //draw call per object with uniforms
+        SIMPLE,
+        //multi draw batch, indirect when supported
+        INDIRECT,
+        //multi draw batch with loop of draw calls
+        LOOP
+    }
+    
+    private final int gridSize;
+    private final Mode mode;
+    private final boolean instanced;
+    
+    private Camera camera;
+    
+    private ProgramGLSL objectsProgram;
+    private UniformBufferGLSL frameUniforms;
+    
+    //for delete all objects when destroy scene
+    private final List<Deletable> objToDelete = new ArrayList<>();
+    private Light3d light;
+    
+    private InstancedObjectGroup cubesGroup;
+    private final List<Simple3dObject> cubes = new ArrayList<>();
+    //spatial index of separate cubes and its query result
+    private SceneOctree cubesIndex;
+    private final List<Simple3dObject> visibleCubes = new ArrayList<>();
+    private MultiDrawBatch cubesBatch;
+    
+    //statistics
+    private float statsTime;
+    private int statsFrames;
+
+    /**
+     * @param gridSize - cubes count by side of grid
+     * @param instanced - draw by instanced group
+     */
+    public InstancingStressScene(int gridSize, boolean instanced) {
+        this(gridSize, instanced ? Mode.INSTANCED : Mode.SIMPLE);
+    }
+
+    /**
+     * @param gridSize - cubes count by side of grid
+     * @param mode - way of drawing cubes
+     */
+    public InstancingStressScene(int gridSize, Mode mode) {
+        this.gridSize = gridSize;
+        this.mode = mode;
+        this.instanced = mode == Mode.INSTANCED;
+    }
+    
+    private ProgramGLSL loadProgram(String... shaderFiles) {
+        try {
+            ShaderGLSL[] shaders = new ShaderGLSL[shaderFiles.length];
+
+            for (int i = 0; i < shaderFiles.length; ++i) {
+                shaders[i] = new ShaderGLSL(shaderFiles[i]);
+            }
+
+            ProgramGLSL program = new ProgramGLSL(shaders);
+            program.link();
+
+            objToDelete.add(program);
+            return program;
+
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public void initScene(int width, int height) {
+        camera = new Camera(45.f, (float) width / (float) height, 0.1f, 500.f,
+                new Vector3f(0.f, 5.f, 5.f),
+                new Vector3f(0.f, 1.f, 0.f),
+                new Vector3f(0.f, 0.f, -1.f));
+        
+        frameUniforms = new UniformBufferGLSL(UniformBlock.FRAME, UniformBlock.LIGHT);
+        frameUniforms.init();
+        objToDelete.add(frameUniforms);
+        
+        final SphereMesh lsphere = new SphereMesh(0.1f, 8, 8);
+        lsphere.init();
+        light = new Light3d(lsphere, new Vector3f(0.f, 20.f, 0.f),
+                "#FFFFFF", 0.5f, 1.0f, 1.0f);
+        objToDelete.add(light);
+        
+        //every cube or group owns reference to shared mesh
+        MeshCache meshes = MeshCache.getInstance();
+        
+        ColorMaterial[] materials = new ColorMaterial[COLORS.length];
+        for (int i = 0; i < COLORS.length; ++i) {
+            materials[i] = new ColorMaterial(COLORS[i], COLORS[i], "#FFFFFF", 64, i % 2 != 0);
+        }
+        
+        if (instanced) {
+            objectsProgram = loadProgram("/objectShaderInst.vert", "/objectShaderInstM.frag");
+            cubesGroup = new InstancedObjectGroup(meshes.acquire(createCubeMesh()), 
+                    gridSize * gridSize);
+            objToDelete.add(cubesGroup);
+        } else if (mode == Mode.SIMPLE) {
+            objectsProgram = loadProgram("/objectShader.vert", "/objectShaderM.frag");
+        } else {
+            objectsProgram = loadProgram("/objectShaderMdi.vert", "/objectShaderInstM.frag");
+            cubesBatch = new MultiDrawBatch(gridSize * gridSize);
+            cubesBatch.init(mode == Mode.INDIRECT);
+            objToDelete.add(cubesBatch);
+        }
+        
+        Vector3f position = new Vector3f();
+        for (int x = 0; x < gridSize; ++x) {
+            for (int z = 0; z < gridSize; ++z) {
+                position.set(x - gridSize * 0.5f, 0.f, -z);
+                ColorMaterial material = materials[(x + z) % materials.length];
+                if (instanced) {
+                    cubesGroup.add(position, material);
+                } else {
+                    cubes.add(new Simple3dObject(meshes.acquire(createCubeMesh()), 
+                            new Vector3f(position), material));
+                }
+            }
+        }
+        if (instanced) {
+            cubesGroup.init();
+        } else {
+            cubesIndex = new SceneOctree(new Vector3f(0.f, 0.f, -gridSize * 0.5f), 
+                    gridSize * 0.5f + 1.f, 8);
+            cubes.forEach(cubesIndex::insert);
+            objToDelete.addAll(cubes);
+        }
+        LOG.info("Stress scene: {} cubes, mode {}", gridSize * gridSize, mode);
+    }
+
+    private static BoxMesh createCubeMesh() {
+        return new BoxMesh(0.5f, 0.5f, 0.5f);
+    }
+
+    @Override
+    public void drawFrame(float deltaTime, float currTime) {
+        camera.apply(frameUniforms);
+        light.apply(frameUniforms);
+        frameUniforms.upload();
+        
+        objectsProgram.use();
+        int drawCalls;
+        if (instanced) {
+            cubesGroup.draw(objectsProgram);
+            drawCalls = 1;
+        } else if (mode == Mode.SIMPLE) {
+            visibleCubes.clear();
+            drawCalls = cubesIndex.queryVisible(camera, visibleCubes);
+            for (int i = 0; i < drawCalls; ++i) {
+                visibleCubes.get(i).draw(objectsProgram);
+            }
+        } else {
+            visibleCubes.clear();
+            int visible = cubesIndex.queryVisible(camera, visibleCubes);
+            cubesBatch.begin();
+            for (int i = 0; i < visible; ++i) {
+                cubesBatch.add(visibleCubes.get(i));
+            }
+            cubesBatch.flush(objectsProgram);
+            drawCalls = cubesBatch.getDrawCalls();
+        }
+        
+        statsTime += deltaTime;
+        statsFrames++;
+        if (statsTime >= 1.0f) {
+            LOG.info("Draw calls per frame {}, avg frame time {} ms", drawCalls,
+                    statsTime * 1000.f / statsFrames);
+            statsTime = 0;
+            statsFrames = 0;
+        }
+    }
+
+    @Override
+    public Camera getCamera() {
+        return camera;
+    }
+
+    @Override
+    public void destroyScene() {
+        objToDelete.stream()
+                .forEach(Deletable::delete);
+    }
+    
+    /**
+     * Run stress scene, grid size 224 gives 50k cubes 
+     * for comparing indirect and loop modes
+     * @param args - [grid size] [instanced|simple|indirect|loop]
+     */
+    public static void main(String[] args) {
+        int gridSize = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        Mode mode = args.length < 2 ? Mode.INSTANCED : Mode.valueOf(args[1].toUpperCase());
+        try {
+            PlayScene scene = new InstancingStressScene(gridSize, mode);
+            PlayWindow playWindow = PlayWindow.builder(scene)
+                    .withWidth(1650)
+                    .withHeight(1050)
+                    .build();
+            
+            playWindow.init();
+            playWindow.start();
+        } catch (Exception e) {
+            LOG.error("Scene error", e);
+        }
+    }
+}
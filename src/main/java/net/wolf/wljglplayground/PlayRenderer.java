@@ -28,6 +28,7 @@ import java.util.List;
 import net.wolf.wljglplayground.shader.ShaderGLSL;
 import net.wolf.wljglplayground.shader.ProgramGLSL;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -36,6 +37,9 @@ import net.wolf.wljglplayground.input.CameraKeyHandler;
 import net.wolf.wljglplayground.object.Camera;
 import net.wolf.wljglplayground.object.BoxMesh;
 import net.wolf.wljglplayground.object.ColorMaterial;
+import net.wolf.wljglplayground.object.GpuTextureCache;
+import net.wolf.wljglplayground.object.GeometryPool;
+import net.wolf.wljglplayground.object.MeshCache;
 import net.wolf.wljglplayground.object.Light3d;
 import net.wolf.wljglplayground.object.Mesh3d;
 import net.wolf.wljglplayground.object.PlaneMesh;
@@ -44,6 +48,8 @@ import net.wolf.wljglplayground.object.Skybox;
 import net.wolf.wljglplayground.object.SphereMesh;
 import net.wolf.wljglplayground.object.TexMaterial;
 import net.wolf.wljglplayground.object.Texture;
+import net.wolf.wljglplayground.util.GLStateCache;
+import net.wolf.wljglplayground.util.TextureLoader;
 import net.wolf.wljglplayground.util.Timer;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
@@ -69,6 +75,9 @@ public class PlayRenderer implements Runnable {
     
     private static final Logger LOG = LoggerFactory.getLogger(PlayRenderer.class);
     
+    //time budget of texture uploads per frame
+    private static final long UPLOAD_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    
 
     private final long window;
     private final Object lock;
@@ -83,6 +92,12 @@ public class PlayRenderer implements Runnable {
     private CameraKeyHandler cameraMover;
     private CameraCursorHandler cameraCursorHandler;
     
+    //GL state statistics
+    private float statsTime;
+    private long statsIssuedCalls;
+    private long statsAvoidedCalls;
+    private long statsTextureBinds;
+    
 
     public PlayRenderer(long window, Object lock, PlayScene scene) {
         this.window = window;
@@ -120,7 +135,9 @@ public class PlayRenderer implements Runnable {
         
         glfwSwapInterval(0);
         
-        glEnable(GL_DEPTH_TEST);
+        GLStateCache stateCache = GLStateCache.getInstance();
+        stateCache.invalidate();
+        stateCache.enable(GL_DEPTH_TEST);
         glViewport(0, 0, width, height);
         
         scene.initScene(width, height);
@@ -131,7 +148,7 @@ public class PlayRenderer implements Runnable {
     public void run() {
         init();        
 
-        
+        TextureLoader textureLoader = TextureLoader.getInstance();
         Timer timer = Timer.getTimer();
         timer.start();
         while (!destroyed) {
@@ -145,8 +162,12 @@ public class PlayRenderer implements Runnable {
             glClearColor(0.3f, 0.3f, 0.3f, 1.0f);
             glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
             
+            //upload textures loaded in background
+            textureLoader.processUploads(UPLOAD_BUDGET_NANOS);
+            
             //draw scene
             scene.drawFrame(deltaTime, timer.currentTime());
+            collectStateStats(deltaTime);
             
             synchronized (lock) {
                 if (!destroyed) {
@@ -158,10 +179,34 @@ public class PlayRenderer implements Runnable {
         }
         
         scene.destroyScene();
+        GpuTextureCache.getInstance().clear();
+        MeshCache.getInstance().clear();
+        GeometryPool.getInstance().clear();
+        textureLoader.shutdown();
     }
 
 
 
+    /**
+     * Collect per-frame counters of GL state cache and log them every second
+     */
+    private void collectStateStats(float deltaTime) {
+        GLStateCache stateCache = GLStateCache.getInstance();
+        stateCache.endFrame();
+        statsIssuedCalls += stateCache.getFrameIssuedCalls();
+        statsAvoidedCalls += stateCache.getFrameAvoidedCalls();
+        statsTextureBinds += stateCache.getFrameTextureBinds();
+        statsTime += deltaTime;
+        if (statsTime >= 1.0f) {
+            LOG.debug("GL state calls per second: issued {}, avoided {}, texture binds {}", 
+                    statsIssuedCalls, statsAvoidedCalls, statsTextureBinds);
+            statsTime = 0;
+            statsIssuedCalls = 0;
+            statsAvoidedCalls = 0;
+            statsTextureBinds = 0;
+        }
+    }
+
      public void close() {
          if (Objects. nonNull(debugProc)) {
              debugProc.free();
@@ -28,19 +28,27 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import net.wolf.wljglplayground.object.AtlasMaterial;
 import net.wolf.wljglplayground.object.BoxMesh;
 import net.wolf.wljglplayground.object.Camera;
 import net.wolf.wljglplayground.object.ColorMaterial;
 import net.wolf.wljglplayground.object.Light3d;
-import net.wolf.wljglplayground.object.Mesh3d;
+import net.wolf.wljglplayground.object.LodMesh;
+import net.wolf.wljglplayground.object.Material;
+import net.wolf.wljglplayground.object.MeshCache;
+import net.wolf.wljglplayground.object.Object3d;
 import net.wolf.wljglplayground.object.PlaneMesh;
+import net.wolf.wljglplayground.object.RenderQueue;
 import net.wolf.wljglplayground.object.Simple3dObject;
 import net.wolf.wljglplayground.object.Skybox;
 import net.wolf.wljglplayground.object.SphereMesh;
 import net.wolf.wljglplayground.object.TexMaterial;
 import net.wolf.wljglplayground.object.Texture;
+import net.wolf.wljglplayground.object.TextureAtlas;
 import net.wolf.wljglplayground.shader.ProgramGLSL;
 import net.wolf.wljglplayground.shader.ShaderGLSL;
+import net.wolf.wljglplayground.shader.UniformBlock;
+import net.wolf.wljglplayground.shader.UniformBufferGLSL;
 import net.wolf.wljglplayground.util.ColorUtils;
 import net.wolf.wljglplayground.util.Deletable;
 import org.joml.Vector3f;
@@ -54,6 +62,12 @@ import org.slf4j.LoggerFactory;
 public class SimpleScene implements PlayScene {
     
     private static final Logger LOG = LoggerFactory.getLogger(PlayRenderer.class);
+    
+    /** Put textures of scene into atlas: "true" (default) or "false" for separate textures */
+    public static final String ATLAS_PROPERTY = "wljgl.textureAtlas";
+    //one layer fits both 1365x2048 floor images with padding
+    private static final int ATLAS_PAGE_SIZE = 2816;
+    private static final int ATLAS_PADDING = 8;
 
     private static final Vector3f[] cubePositionsColors = {
         new Vector3f(1.5f, 0.5f, 2f),   ColorUtils.parseRGBColor("#00ffff"),
@@ -68,6 +82,14 @@ public class SimpleScene implements PlayScene {
     private ProgramGLSL objectsProgram;
     private ProgramGLSL objectsTexProgram;
     private ProgramGLSL lightProgram;
+    private ProgramGLSL[] programs;
+    //camera and light blocks shared by all object programs
+    private UniformBufferGLSL frameUniforms;
+    
+    //state sorted queue of object draws
+    private RenderQueue renderQueue;
+    //objects skipped by frustum culling in last frame
+    private int culledObjects;
     //private ProgramGLSL normalsDebug;
 
     //for delete all objects when destroy scene
@@ -75,8 +97,11 @@ public class SimpleScene implements PlayScene {
     private Light3d light;
 
     private Skybox skybox;
+    //shared texture of textured objects, null if disabled
+    private TextureAtlas atlas;
 
     private Simple3dObject plane;
+    private Simple3dObject texCube;
     private List<Simple3dObject> cubes;
     private Simple3dObject sphere3d;
 
@@ -107,12 +132,27 @@ public class SimpleScene implements PlayScene {
         }
     }
 
-    private List<Simple3dObject> createCubes(final Mesh3d cubeMesh) {
+    /**
+     * Create material of textured objects in atlas or with separate textures
+     */
+    private Material createTexMaterial(String diffuseFile, String specularFile, float shininess) {
+        if (atlas != null) {
+            return new AtlasMaterial(atlas, diffuseFile, specularFile, shininess);
+        }
+        return new TexMaterial(Texture.create(diffuseFile), 
+                Texture.create(specularFile), shininess);
+    }
+
+    /**
+     * Create cubes, every cube owns reference to shared mesh
+     */
+    private List<Simple3dObject> createCubes() {
         Vector3f specular = new Vector3f(1.0f); //white
+        MeshCache meshes = MeshCache.getInstance();
         return IntStream.range(0, cubePositionsColors.length / 2)
                 .mapToObj((i) -> {
                     Vector3f c = cubePositionsColors[i * 2 + 1];
-                    Simple3dObject cube3d = new Simple3dObject(cubeMesh,
+                    Simple3dObject cube3d = new Simple3dObject(meshes.acquire(new BoxMesh()),
                             cubePositionsColors[i * 2],
                             new ColorMaterial(c.mul(0.3f), c, specular, 128, (i%2 != 0)));
                     cube3d.init();
@@ -132,8 +172,19 @@ public class SimpleScene implements PlayScene {
         //create all shaders
         skyboxProgram = loadProgram("/skybox.vert", "/skybox.frag");        
         objectsProgram = loadProgram("/objectShader.vert", "/objectShaderM.frag");
-        objectsTexProgram = loadProgram("/objectShader.vert", "/objectShaderTex.frag");
+        boolean useAtlas = Boolean.parseBoolean(System.getProperty(ATLAS_PROPERTY, "true"));
+        objectsTexProgram = useAtlas 
+                ? loadProgram("/objectShader.vert", "/objectShaderAtlas.frag")
+                : loadProgram("/objectShader.vert", "/objectShaderTex.frag");
         lightProgram = loadProgram("/objectShader.vert", "/lightShader.frag");
+        programs = new ProgramGLSL[] {skyboxProgram, objectsProgram, 
+            objectsTexProgram, lightProgram};
+        
+        frameUniforms = new UniformBufferGLSL(UniformBlock.FRAME, UniformBlock.LIGHT);
+        frameUniforms.init();
+        objToDelete.add(frameUniforms);
+        
+        renderQueue = new RenderQueue(100.f);
         //normalsDebug = loadProgram("/debugNormals.vert", "/debugNormals.frag",
         //       "/debugNormals.geom");
 
@@ -153,31 +204,40 @@ public class SimpleScene implements PlayScene {
             throw new RuntimeException(ex);
         }
         
+        //textured objects share atlas, texture binds are logged by PlayRenderer
+        if (useAtlas) {
+            atlas = new TextureAtlas(ATLAS_PAGE_SIZE, 1, ATLAS_PADDING);
+            atlas.init();
+            objToDelete.add(atlas);
+        }
+        
         //create gound-plane
-        final PlaneMesh planeMesh = new PlaneMesh(20.0f, 15.0f);
-        planeMesh.init();
+        MeshCache meshes = MeshCache.getInstance();
+        final PlaneMesh planeMesh = meshes.acquire(new PlaneMesh(20.0f, 15.0f));
         plane = new Simple3dObject(planeMesh,
                 new Vector3f(0.f, -2.f, 0.f),
-                new TexMaterial(
-                        Texture.create("/textures/flour_diffuse.jpg"),
-                        Texture.create("/textures/flour_specular.jpg"), 64.0f));
+                createTexMaterial("/textures/flour_diffuse.jpg", 
+                        "/textures/flour_specular.jpg", 64.0f));
         objToDelete.add(plane);
 
         //create cubes
-        final BoxMesh cubeMesh = new BoxMesh();
-        cubeMesh.init();
-        cubes = createCubes(cubeMesh);
+        cubes = createCubes();
+        //textured cube with other material of same images
+        texCube = new Simple3dObject(meshes.acquire(new BoxMesh()),
+                new Vector3f(-2.5f, -1.5f, -1f),
+                createTexMaterial("/textures/flour_specular.jpg", 
+                        "/textures/flour_diffuse.jpg", 16.0f));
+        texCube.init();
+        objToDelete.add(texCube);
         
         //light
-        final SphereMesh lsphere = new SphereMesh(0.1f, 20, 20);
-        lsphere.init();
+        final SphereMesh lsphere = meshes.acquire(new SphereMesh(0.1f, 20, 20));
         light = new Light3d(lsphere, new Vector3f(-3.f, 3.f, 3.f),
                 "#FFFFFF", 0.5f, 1.0f, 1.0f);
         objToDelete.add(light);
 
-        //create sphere
-        final SphereMesh sphereMesh = new SphereMesh(0.5f, 30, 30);
-        sphereMesh.init();
+        //create sphere with levels of detail
+        final LodMesh sphereMesh = LodMesh.sphere(0.5f, 30, 30);
         sphere3d = new Simple3dObject(sphereMesh,
                 new Vector3f(0.f, 0.f, 0.f),
                 new ColorMaterial("#0F004D", "#3300FF", "#FFFFFF", 128, true));
@@ -187,33 +247,60 @@ public class SimpleScene implements PlayScene {
     @Override
     public void drawFrame(float deltaTime, float currTime) {
 
+        //update shared camera and light blocks
+        light.setX((float) (-3.0f - Math.sin(currTime) * 3));
+        camera.apply(frameUniforms);
+        light.apply(frameUniforms);
+        frameUniforms.upload();
+
         //draw skybox
         skyboxProgram.use();
         camera.applySkybox(skyboxProgram);            
         skybox.draw(skyboxProgram);
             
-        //draw light
-        lightProgram.use();
-        light.setX((float) (-3.0f - Math.sin(currTime) * 3));
-        camera.apply(lightProgram);
-        light.draw(lightProgram);
-
-        //draw cubes
-        objectsProgram.use();
-        camera.apply(objectsProgram);
-        light.apply(objectsProgram);
+        //draw light and objects sorted by state
+        renderQueue.begin(camera);
+        culledObjects = 0;
+        submitVisible(light, lightProgram);
         for (Simple3dObject cube : cubes) {
-            cube.draw(objectsProgram);
+            submitVisible(cube, objectsProgram);
         }        
-        //draw shpere
-        sphere3d.draw(objectsProgram);
-
-        //draw plane
-        objectsTexProgram.use();
-        camera.apply(objectsTexProgram);
-        light.apply(objectsTexProgram);
-        plane.draw(objectsTexProgram);
+        submitVisible(sphere3d, objectsProgram);
+        submitVisible(plane, objectsTexProgram);
+        submitVisible(texCube, objectsTexProgram);
+        renderQueue.flush();
 
+        logUniformStats();
+    }
+    
+    /**
+     * Submit object into render queue if it is inside of camera frustum
+     */
+    private void submitVisible(Object3d object, ProgramGLSL program) {
+        if (object.isVisible(camera)) {
+            object.submit(renderQueue, program);
+        } else {
+            culledObjects++;
+        }
+    }
+    
+    /**
+     * Log per-frame count of issued and skipped uniform uploads 
+     * and state changes of render queue
+     */
+    private void logUniformStats() {
+        int issued = 0;
+        int skipped = 0;
+        for (ProgramGLSL program : programs) {
+            issued += program.getIssuedCalls();
+            skipped += program.getSkippedCalls();
+            program.resetStats();
+        }
+        LOG.trace("Uniforms per frame: issued {}, skipped {}", issued, skipped);
+        LOG.trace("Render queue: packets {}, program changes {}, material changes {}, mesh changes {}",
+                renderQueue.size(), renderQueue.getProgramChanges(),
+                renderQueue.getMaterialChanges(), renderQueue.getMeshChanges());
+        LOG.trace("Culled objects per frame: {}", culledObjects);
     }
 
     @Override
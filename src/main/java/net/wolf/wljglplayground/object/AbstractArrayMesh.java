@@ -0,0 +1,60 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+
+/**
+ * Procedural mesh generated as arrays of vertices, normals, 
+ * texture coordinates and triangle indexes, which are copied into builder
+ * @author Volchkov Andrey
+ */
+public abstract class AbstractArrayMesh extends AbstractProceduralMesh {
+
+    @Override
+    protected void build(MeshBuilder builder) {
+        Vector3f[] vertices = generateVertices();
+        Vector3f[] normales = generateNormals(vertices);
+        Vector2f[] uvs = generateUVs(vertices.length);
+        int[] triangles = createTrianglesIndexes(vertices.length);
+        
+        builder.begin(vertices.length, triangles.length);
+        for (int i = 0; i < vertices.length; ++i) {
+            builder.vertex(i, vertices[i].x, vertices[i].y, vertices[i].z, 
+                    normales[i].x, normales[i].y, normales[i].z, 
+                    uvs[i].x, uvs[i].y);
+        }
+        builder.indices(triangles);
+    }
+
+    protected abstract Vector3f[] generateVertices();
+
+    protected abstract Vector3f[] generateNormals(Vector3f[] vertices);
+
+    protected abstract Vector2f[] generateUVs(int length);
+    
+    protected abstract int[] createTrianglesIndexes(int length);
+    
+}
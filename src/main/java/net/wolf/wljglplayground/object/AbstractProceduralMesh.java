@@ -23,138 +23,130 @@
  */
 package net.wolf.wljglplayground.object;
 
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import static net.wolf.wljglplayground.object.Mesh3d.FLOAT_SIZE;
-import static net.wolf.wljglplayground.object.Mesh3d.TRIANGLE_VERTEXES;
-import net.wolf.wljglplayground.util.Deletable;
-import org.joml.Vector2f;
 import org.joml.Vector3f;
-import static org.lwjgl.opengl.GL11.GL_FLOAT;
-import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
 import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
-import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
-import static org.lwjgl.opengl.GL15.GL_ELEMENT_ARRAY_BUFFER;
-import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
-import static org.lwjgl.opengl.GL15.glBindBuffer;
-import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
-import static org.lwjgl.opengl.GL30.glBindVertexArray;
-import org.lwjgl.system.MemoryUtil;
-import static org.lwjgl.system.MemoryUtil.memAllocFloat;
-import static org.lwjgl.opengl.GL11.glDrawElements;
-import static org.lwjgl.opengl.GL15.glBufferData;
-import static org.lwjgl.opengl.GL15.glGenBuffers;
-import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
-import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
-import static org.lwjgl.opengl.GL30.glGenVertexArrays;
-import static org.lwjgl.system.MemoryUtil.memFree;
 
 /**
- * Abstract class for procedural meshes
+ * Abstract class for procedural meshes, subclasses generate geometry 
+ * into {@link MeshBuilder}. Meshes generated as vector arrays 
+ * extend {@link AbstractArrayMesh}
  * @author Volchkov Andrey
  */
 public abstract class AbstractProceduralMesh implements Mesh3d {
     
     protected int indexCount;
+    //GL_UNSIGNED_SHORT or GL_UNSIGNED_INT by count of vertices
+    protected int indexType = GL_UNSIGNED_INT;
     
-    //OpenGL objects id;
-    protected int vao;
-    protected int vbo;
-    protected int ebo;
+    //layout of vertices in GPU buffer
+    protected VertexFormat vertexFormat = VertexFormat.getDefault();
+    
+    //ranges of shared buffers of GeometryPool
+    protected GeometryPool.Range geometry;
+    
+    //local bounds of generated vertices
+    protected BoundingVolume bounds = BoundingVolume.of(new Vector3f[0]);
+    
+    //managed by MeshCache, key is null for not shared mesh
+    String cacheKey;
+    int refCount;
 
 
-    @Override
-    public void init() {
-        Vector3f[] vertices = generateVertices();
+    public VertexFormat getVertexFormat() {
+        return vertexFormat;
+    }
 
-        Vector3f[] normales = generateNormals(vertices);
+    /**
+     * @param vertexFormat - layout of vertices, must be set before {@link #init()}
+     */
+    public void setVertexFormat(VertexFormat vertexFormat) {
+        this.vertexFormat = vertexFormat;
+    }
 
-        Vector2f[] uvs = generateUVs(vertices.length);
-        
-        int[] triangles = createTrianglesIndexes(vertices.length);
-        indexCount = triangles.length;
-        
-        int vertLnegth = vertices.length;
-        // vertices + normals + uvs
-        int stride = TRIANGLE_VERTEXES + TRIANGLE_VERTEXES + UV_VERTEXES; 
-        
-        //create off-heap buffer        
-        FloatBuffer dataVerts = memAllocFloat(vertLnegth * stride);
-        for (int i = 0; i < vertLnegth; ++i) {
-            dataVerts.put(vertices[i].x());
-            dataVerts.put(vertices[i].y());
-            dataVerts.put(vertices[i].z());
-            
-            dataVerts.put(normales[i].x());
-            dataVerts.put(normales[i].y());
-            dataVerts.put(normales[i].z());
-            
-            dataVerts.put(uvs[i].x());
-            dataVerts.put(uvs[i].y());            
-        }        
-        dataVerts.flip();
-     
-        IntBuffer dataTriangles = MemoryUtil.memAllocInt(triangles.length);
-        dataTriangles.put(triangles);
-        dataTriangles.flip();    
-        
-         //generate GL buffers
-        vao = glGenVertexArrays();
-        vbo = glGenBuffers();
-        ebo = glGenBuffers();
+    @Override
+    public void init() {
+        MeshBuilder builder = new MeshBuilder();
+        try {
+            build(builder);
+            if (MeshOptimizer.isEnabled()) {
+                MeshOptimizer.optimize(builder, getClass().getSimpleName() + ' ' + getCacheKey());
+            }
+            bounds = builder.getBounds();
+            indexCount = builder.getIndexCount();
+            upload(builder);
+        } finally {
+            builder.delete();
+        }
+    }
+    
+    /**
+     * Generate mesh data into builder
+     * @param builder - empty builder
+     */
+    protected abstract void build(MeshBuilder builder);
+    
+    /**
+     * Send data of builder to shared buffers of {@link GeometryPool} in vertex format 
+     * of mesh, indices are unsigned short when vertices fit
+     */
+    private void upload(MeshBuilder builder) {
+        geometry = GeometryPool.getInstance().allocate(vertexFormat, builder);
+        indexType = geometry.getIndexType();
+    }
+    
+    @Override
+    public void draw() {
+        geometry.bind();
+        geometry.drawBound();
+    }
 
-        glBindVertexArray(vao);        
-        //send data to GPU
-        glBindBuffer(GL_ARRAY_BUFFER, vbo);
-        glBufferData(GL_ARRAY_BUFFER, dataVerts, GL_STATIC_DRAW);
-        
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo);
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, dataTriangles, GL_STATIC_DRAW);
+    @Override
+    public void bind() {
+        geometry.bind();
+    }
 
-        //setup vertexes
-        glVertexAttribPointer(0, TRIANGLE_VERTEXES, GL_FLOAT, false, stride * FLOAT_SIZE, 0L);
-        glEnableVertexAttribArray(0);
-        //setup normals
-        glVertexAttribPointer(1, TRIANGLE_VERTEXES, GL_FLOAT, false, stride * FLOAT_SIZE, TRIANGLE_VERTEXES * FLOAT_SIZE);
-        glEnableVertexAttribArray(1);
-        //setup UVs
-        glVertexAttribPointer(2, UV_VERTEXES, GL_FLOAT, false, stride * FLOAT_SIZE, TRIANGLE_VERTEXES * 2 * FLOAT_SIZE);
-        glEnableVertexAttribArray(2);
+    @Override
+    public void drawBound() {
+        geometry.drawBound();
+    }
 
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glBindVertexArray(0);
-        
-        memFree(dataVerts);
-        memFree(dataTriangles);
+    @Override
+    public int getSortKey() {
+        //meshes of one pool share vertex array
+        return geometry == null ? 0 : geometry.getVertexArray();
     }
 
     @Override
-    public void draw() {
-        glBindVertexArray(vao);
-            glDrawElements(GL_TRIANGLES, indexCount, GL_UNSIGNED_INT, 0);
-        glBindVertexArray(0);
+    public BoundingVolume getBounds() {
+        return bounds;
+    }
+
+    /**
+     * @return parameters identifying generated geometry, meshes with equal keys 
+     * are shared by {@link MeshCache}, null if mesh can't be shared
+     */
+    protected String getCacheKey() {
+        return null;
     }
 
+    /**
+     * Free ranges of pool buffers, shared mesh is only released 
+     * and deleted by cache when it has no more references
+     */
     @Override
     public void delete() {
-        if (vao != 0) {
-            glDeleteVertexArrays(vao);
-        }
-        if (vbo != 0) {
-            glDeleteVertexArrays(vbo);
+        if (cacheKey != null) {
+            MeshCache.getInstance().release(this);
+        } else {
+            deleteBuffers();
         }
-        if (ebo != 0) {
-            glDeleteVertexArrays(vbo);
-        }
-        vbo = vao = ebo = 0;
     }
-
-    protected abstract Vector3f[] generateVertices();
-
-    protected abstract Vector3f[] generateNormals(Vector3f[] vertices);
-
-    protected abstract Vector2f[] generateUVs(int length);
     
-    protected abstract int[] createTrianglesIndexes(int length);
+    void deleteBuffers() {
+        if (geometry != null) {
+            geometry.free();
+            geometry = null;
+        }
+    }
     
 }
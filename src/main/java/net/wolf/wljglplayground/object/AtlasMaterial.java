@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import net.wolf.wljglplayground.shader.ProgramGLSL;
+import net.wolf.wljglplayground.shader.UniformHandle;
+
+/**
+ * Textured material with diffuse and specular images in texture atlas, 
+ * all materials of one atlas share bound texture and differ by uniforms only
+ * @author Volchkov Andrey
+ */
+public class AtlasMaterial implements Material {
+    
+    private final TextureAtlas atlas;
+    private final AtlasRegion diffuse;
+    private final AtlasRegion specular;
+    private final float shininess;
+    
+    //uniforms resolved for last applied program
+    private ProgramGLSL uniformsProgram;
+    private UniformHandle atlasUniform;
+    private UniformHandle diffuseRectUniform;
+    private UniformHandle diffuseLayerUniform;
+    private UniformHandle specularRectUniform;
+    private UniformHandle specularLayerUniform;
+    private UniformHandle shininessUniform;
+
+    public AtlasMaterial(TextureAtlas atlas, AtlasRegion diffuse, AtlasRegion specular, 
+            float shininess) {
+        this.atlas = atlas;
+        this.diffuse = diffuse;
+        this.specular = specular;
+        this.shininess = shininess;
+    }
+    
+    public AtlasMaterial(TextureAtlas atlas, String diffuseFile, String specularFile, 
+            float shininess) {
+        this(atlas, atlas.add(diffuseFile), atlas.add(specularFile), shininess);
+    }
+
+    @Override
+    public void apply(ProgramGLSL program) {
+        if (program != uniformsProgram) {
+            atlasUniform = program.getUniform("textureAtlas");
+            diffuseRectUniform = program.getUniform("diffuseRect");
+            diffuseLayerUniform = program.getUniform("diffuseLayer");
+            specularRectUniform = program.getUniform("specularRect");
+            specularLayerUniform = program.getUniform("specularLayer");
+            shininessUniform = program.getUniform("shininess");
+            uniformsProgram = program;
+        }
+        atlas.bind(0);
+        program.setParam(atlasUniform, 0);
+        program.setParam(diffuseRectUniform, diffuse.getRect());
+        program.setParam(diffuseLayerUniform, diffuse.getLayer());
+        program.setParam(specularRectUniform, specular.getRect());
+        program.setParam(specularLayerUniform, specular.getLayer());
+        program.setParam(shininessUniform, shininess);
+    }
+    
+    /**
+     * All materials of atlas are grouped together
+     */
+    @Override
+    public int getSortKey() {
+        return atlas.getGLId();
+    }
+
+    @Override
+    public void use() {
+        
+    }
+
+    /**
+     * Atlas is shared between materials and deleted by owner
+     */
+    @Override
+    public void delete() {
+        
+    }
+    
+}
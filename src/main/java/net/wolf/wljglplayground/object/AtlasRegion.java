@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import org.joml.Vector4f;
+import org.joml.Vector4fc;
+
+/**
+ * Place of image in texture atlas: layer of array texture and 
+ * UV rectangle inside of layer. Region is filled when image is uploaded
+ * @author Volchkov Andrey
+ */
+public class AtlasRegion {
+    
+    private final String name;
+    //u0, v0, u1, v1
+    private final Vector4f rect = new Vector4f();
+    private int layer;
+    private boolean ready;
+
+    AtlasRegion(String name) {
+        this.name = name;
+    }
+    
+    void place(int layer, float u0, float v0, float u1, float v1) {
+        this.layer = layer;
+        this.rect.set(u0, v0, u1, v1);
+        this.ready = true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return UV rectangle in layer: x, y - min corner, z, w - max corner
+     */
+    public Vector4fc getRect() {
+        return rect;
+    }
+
+    public int getLayer() {
+        return layer;
+    }
+
+    /**
+     * @return true if image is uploaded into atlas
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public String toString() {
+        return "AtlasRegion{" + "name=" + name + ", rect=" + rect + ", layer=" + layer + ", ready=" + ready + '}';
+    }
+    
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.nio.FloatBuffer;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+/**
+ * Bounding volume of mesh in local space: 
+ * axis aligned box and sphere around it
+ * @author Volchkov Andrey
+ */
+public class BoundingVolume {
+    
+    private final Vector3f min = new Vector3f();
+    private final Vector3f max = new Vector3f();
+    private final Vector3f center = new Vector3f();
+    private float radius;
+
+    /**
+     * Compute bounding volume of points
+     * @param points - vertices of mesh
+     * @return bounding volume
+     */
+    public static BoundingVolume of(Vector3fc[] points) {
+        BoundingVolume bounds = new BoundingVolume();
+        if (points.length == 0) {
+            return bounds;
+        }
+        bounds.min.set(Float.POSITIVE_INFINITY);
+        bounds.max.set(Float.NEGATIVE_INFINITY);
+        for (Vector3fc point : points) {
+            bounds.min.min(point);
+            bounds.max.max(point);
+        }
+        //sphere around center of box, but radius by real points
+        bounds.min.add(bounds.max, bounds.center).mul(0.5f);
+        float radiusSq = 0.0f;
+        for (Vector3fc point : points) {
+            radiusSq = Math.max(radiusSq, bounds.center.distanceSquared(point));
+        }
+        bounds.radius = (float) Math.sqrt(radiusSq);
+        return bounds;
+    }
+
+    /**
+     * Compute bounding volume of interleaved vertex data, 
+     * position is first three floats of vertex
+     * @param data - vertex data
+     * @param stride - floats per vertex
+     * @param count - count of vertices
+     * @return bounding volume
+     */
+    public static BoundingVolume of(FloatBuffer data, int stride, int count) {
+        BoundingVolume bounds = new BoundingVolume();
+        if (count == 0) {
+            return bounds;
+        }
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = 0, offset = 0; i < count; ++i, offset += stride) {
+            float x = data.get(offset);
+            float y = data.get(offset + 1);
+            float z = data.get(offset + 2);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+        bounds.min.set(minX, minY, minZ);
+        bounds.max.set(maxX, maxY, maxZ);
+        bounds.min.add(bounds.max, bounds.center).mul(0.5f);
+        float radiusSq = 0.0f;
+        for (int i = 0, offset = 0; i < count; ++i, offset += stride) {
+            radiusSq = Math.max(radiusSq, bounds.center.distanceSquared(
+                    data.get(offset), data.get(offset + 1), data.get(offset + 2)));
+        }
+        bounds.radius = (float) Math.sqrt(radiusSq);
+        return bounds;
+    }
+
+    public Vector3fc getMin() {
+        return min;
+    }
+
+    public Vector3fc getMax() {
+        return max;
+    }
+
+    public Vector3fc getCenter() {
+        return center;
+    }
+
+    public float getRadius() {
+        return radius;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingVolume{" + "min=" + min + ", max=" + max + ", center=" + center + ", radius=" + radius + '}';
+    }
+    
+}
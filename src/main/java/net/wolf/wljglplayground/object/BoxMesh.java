@@ -30,7 +30,7 @@ import org.joml.Vector3f;
  *
  * @author Volchkov Andrey
  */
-public class BoxMesh extends AbstractProceduralMesh {
+public class BoxMesh extends AbstractArrayMesh {
 
     private final float length;
     private final float width;
@@ -49,6 +49,11 @@ public class BoxMesh extends AbstractProceduralMesh {
         this(1.0f, 1.0f, 1.0f);
     }
 
+    @Override
+    protected String getCacheKey() {
+        return length + ":" + width + ":" + height;
+    }
+
     @Override
     protected Vector3f[] generateVertices() {
         //create vertices
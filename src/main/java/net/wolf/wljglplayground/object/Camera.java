@@ -24,9 +24,12 @@
 package net.wolf.wljglplayground.object;
 
 import net.wolf.wljglplayground.shader.ProgramGLSL;
-import org.joml.Matrix3f;
+import net.wolf.wljglplayground.shader.UniformBlock;
+import net.wolf.wljglplayground.shader.UniformBufferGLSL;
+import org.joml.FrustumIntersection;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 
 /**
  * Represents the camera
@@ -47,8 +50,19 @@ public class Camera {
     
     //view matrix
     private final Matrix4f view;
+    //view matrix without translation for skybox
+    private final Matrix4f skyView;
     //projection matrix
     private final Matrix4f projection;
+    
+    //projection * view and its planes for culling
+    private final Matrix4f viewProjection;
+    private final FrustumIntersection frustum;
+    
+    //scratch vector for look at center
+    private final Vector3f center;
+    //view matrixes must be recomputed
+    private boolean dirty;
 
     public Camera(float fov, float apect,
             float zNear, float zFar, Vector3f position, 
@@ -58,76 +72,144 @@ public class Camera {
         this.direction = direction;
         this.right = new Vector3f();
         this.up = new Vector3f();
+        this.center = new Vector3f();
         //setup matrixes
         this.view = new Matrix4f();
+        this.skyView = new Matrix4f();
+        this.viewProjection = new Matrix4f();
+        this.frustum = new FrustumIntersection();
         this.projection = new Matrix4f()
                 .perspective(fov, apect, zNear, zFar);     
         updateVectors();
     }
     
     private void updateVectors() {
-        new Vector3f().set(
+        direction.set(
                 (float)(Math.cos(this.pitch) * Math.cos(this.yav)), 
                 (float)Math.sin(this.pitch),
                 (float)(Math.cos(this.pitch) * Math.sin(this.yav)))
-                .normalize(direction);
+                .normalize();
         direction.cross(wup, right);
         right.cross(direction, up);        
+        dirty = true;
+    }
+    
+    /**
+     * Recompute view matrixes if camera was moved or rotated
+     */
+    private void updateView() {
+        if (dirty) {
+            center.set(position)
+                    .add(direction);
+            view.setLookAt(position, center, up);
+            skyView.identity()
+                    .set3x3(view);
+            projection.mul(view, viewProjection);
+            frustum.set(viewProjection);
+            dirty = false;
+        }
     }
     
     public void moveForward(float speed) {
-        Vector3f moved = new Vector3f(direction)
-                .mul(speed);
-        position.add(moved);
+        position.fma(speed, direction);
+        dirty = true;
     }
     
     public void moveBackward(float speed) {
-        Vector3f moved = new Vector3f(direction)
-                .mul(speed);
-        position.sub(moved);
+        position.fma(-speed, direction);
+        dirty = true;
     }
     
     public void moveLeft(float speed) {
-        Vector3f moved = new Vector3f(right)
-                .mul(speed);
-        position.sub(moved);
+        position.fma(-speed, right);
+        dirty = true;
     }
     
     public void moveRight(float speed) {
-        Vector3f moved = new Vector3f(right)
-                .mul(speed);
-        position.add(moved);        
+        position.fma(speed, right);
+        dirty = true;
     }
     
     public void rotate(double yav, double pitch) {
-        this.yav =  Math.toRadians(yav);
-        this.pitch = Math.toRadians(pitch);
+        double yavRad = Math.toRadians(yav);
+        double pitchRad = Math.toRadians(pitch);
+        //rotate is called every frame, skip when not changed
+        if (yavRad == this.yav && pitchRad == this.pitch) {
+            return;
+        }
+        this.yav = yavRad;
+        this.pitch = pitchRad;
         updateVectors();
     }
         
     
     public void apply(ProgramGLSL program) {
-                
-        Vector3f center = new Vector3f(position)
-                .add(direction);        
-        view.identity()
-            .setLookAt(position, center, up);
+        updateView();
         
         program.setParam("projectionMatrix", projection)
                .setParam("viewMatrix", view)
                .setParam("viewPos", position);
     }
     
+    /**
+     * Write camera data into frame uniform block
+     * @param uniforms - uniform buffer with {@link UniformBlock#FRAME} block
+     */
+    public void apply(UniformBufferGLSL uniforms) {
+        updateView();
+        
+        uniforms.setParam(UniformBlock.FRAME, UniformBlock.FRAME_PROJECTION_MATRIX, projection)
+                .setParam(UniformBlock.FRAME, UniformBlock.FRAME_VIEW_MATRIX, view)
+                .setParam(UniformBlock.FRAME, UniformBlock.FRAME_VIEW_POS, position);
+    }
+    
     public void applySkybox(ProgramGLSL program) {
-                
-        Vector3f center = new Vector3f(position)
-                .add(direction);        
-        view.identity()
-            .setLookAt(position, center, up);
-        Matrix3f notMovedView = new Matrix3f();
-        view.get3x3(notMovedView);
+        updateView();
+        
         program.setParam("projectionMatrix", projection)
-               .setParam("viewMatrix", new Matrix4f(notMovedView));
+               .setParam("viewMatrix", skyView);
+    }
+
+    /**
+     * Test bounding sphere against camera frustum
+     * @param center - center of sphere in world space
+     * @param radius - radius of sphere
+     * @return true if sphere is fully or partly inside of frustum
+     */
+    public boolean isVisible(Vector3fc center, float radius) {
+        updateView();
+        return frustum.testSphere(center, radius);
+    }
+    
+    /**
+     * Test axis aligned box against camera frustum
+     * @param min - minimal corner of box in world space
+     * @param max - maximal corner of box in world space
+     * @return true if box is fully or partly inside of frustum
+     */
+    public boolean isVisible(Vector3fc min, Vector3fc max) {
+        updateView();
+        return frustum.testAab(min, max);
+    }
+
+    /**
+     * @return vertical scale of projection, cot(fov / 2): projected height of object 
+     * at distance d in fractions of viewport height is size * scale / (2 * d)
+     */
+    public float getProjectionScale() {
+        return projection.m11();
+    }
+
+    /**
+     * @return frustum planes of current view
+     */
+    public FrustumIntersection getFrustum() {
+        updateView();
+        return frustum;
+    }
+
+    public Vector3fc getPosition() {
+        return position;
     }
 
     @Override
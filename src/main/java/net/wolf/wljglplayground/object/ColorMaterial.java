@@ -23,7 +23,9 @@
  */
 package net.wolf.wljglplayground.object;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import net.wolf.wljglplayground.shader.ProgramGLSL;
+import net.wolf.wljglplayground.shader.UniformHandle;
 import net.wolf.wljglplayground.util.ColorUtils;
 import org.joml.Vector3f;
 import org.joml.Vector3fc;
@@ -33,12 +35,24 @@ import org.joml.Vector3fc;
  * @author Volchkov Andrey
  */
 public class ColorMaterial implements Material {
+    
+    private static final AtomicInteger NEXT_SORT_KEY = new AtomicInteger();
        
     private final Vector3f ambient;
     private final Vector3f diffuse;
     private final Vector3f specular;
     private final float shininess;
     private final int useBlinn;        
+    //unique id of material for sorting draws
+    private final int sortKey = NEXT_SORT_KEY.incrementAndGet();
+    
+    //uniforms resolved for last applied program
+    private ProgramGLSL uniformsProgram;
+    private UniformHandle ambientUniform;
+    private UniformHandle diffuseUniform;
+    private UniformHandle specularUniform;
+    private UniformHandle shininessUniform;
+    private UniformHandle useBlinnUniform;
 
     public ColorMaterial(Vector3f ambient, Vector3f diffuse, Vector3f specular, 
             int shininess, boolean useBlinn) {
@@ -60,11 +74,19 @@ public class ColorMaterial implements Material {
     
     @Override
     public void apply(ProgramGLSL program) {
-        program.setParam("material.ambient", ambient);
-        program.setParam("material.diffuse", diffuse);
-        program.setParam("material.specular", specular);
-        program.setParam("material.shininess", shininess);
-        program.setParam("material.useBlinn", useBlinn);
+        if (program != uniformsProgram) {
+            ambientUniform = program.getUniform("material.ambient");
+            diffuseUniform = program.getUniform("material.diffuse");
+            specularUniform = program.getUniform("material.specular");
+            shininessUniform = program.getUniform("material.shininess");
+            useBlinnUniform = program.getUniform("material.useBlinn");
+            uniformsProgram = program;
+        }
+        program.setParam(ambientUniform, ambient);
+        program.setParam(diffuseUniform, diffuse);
+        program.setParam(specularUniform, specular);
+        program.setParam(shininessUniform, shininess);
+        program.setParam(useBlinnUniform, useBlinn);
         
     }
 
@@ -99,6 +121,14 @@ public class ColorMaterial implements Material {
         
     }
 
+    /**
+     * Draws with same color material are grouped together
+     */
+    @Override
+    public int getSortKey() {
+        return sortKey;
+    }
+
     @Override
     public void use() {
         //do nothing
@@ -0,0 +1,389 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import net.wolf.wljglplayground.util.GLStateCache;
+import net.wolf.wljglplayground.util.RangeAllocator;
+import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_SHORT;
+import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_ELEMENT_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glBufferSubData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
+import static org.lwjgl.opengl.GL30.glGenVertexArrays;
+import static org.lwjgl.opengl.GL31.GL_COPY_READ_BUFFER;
+import static org.lwjgl.opengl.GL31.GL_COPY_WRITE_BUFFER;
+import static org.lwjgl.opengl.GL31.glCopyBufferSubData;
+import static org.lwjgl.opengl.GL32.glDrawElementsBaseVertex;
+import static org.lwjgl.system.MemoryUtil.memFree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of shared GPU buffers for mesh geometry. Meshes with the same vertex format 
+ * and index type get ranges of one vertex and one index buffer and share 
+ * one vertex array, so switching between them needs no rebinding. 
+ * Ranges are drawn by glDrawElementsBaseVertex, full buffers are grown 
+ * by copying on GPU. Must be used on render thread
+ * @author Volchkov Andrey
+ */
+public class GeometryPool {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(GeometryPool.class);
+    
+    //initial count of vertices in buffer
+    public static final String VERTICES_PROPERTY = "wljgl.poolVertices";
+    private static final int DEFAULT_VERTICES = 1 << 16;
+    //initial index buffer is sized for closed triangle meshes
+    private static final int INDICES_PER_VERTEX = 6;
+    
+    private static final GeometryPool INSTANCE = new GeometryPool();
+    
+    public static GeometryPool getInstance() {
+        return INSTANCE;
+    }
+    
+    private final int initialVertices = Math.max(Integer.getInteger(VERTICES_PROPERTY, DEFAULT_VERTICES), 1);
+    private final List<Buffers> buffers = new ArrayList<>();
+    
+    //metrics
+    private long grows;
+
+    GeometryPool() {
+    }
+    
+    /**
+     * Allocate ranges for vertices and indices of builder and upload them
+     * @param format - vertex format of data in GPU
+     * @param builder - built mesh data
+     * @return allocated range, must be freed by {@link Range#free()}
+     */
+    public synchronized Range allocate(VertexFormat format, MeshBuilder builder) {
+        int vertexCount = builder.getVertexCount();
+        int indexCount = builder.getIndexCount();
+        Buffers target = getBuffers(format, VertexFormat.getIndexType(vertexCount), vertexCount, indexCount);
+        
+        int baseVertex = target.vertices.allocate(vertexCount);
+        if (baseVertex < 0) {
+            growVertices(target, vertexCount);
+            baseVertex = target.vertices.allocate(vertexCount);
+        }
+        int firstIndex = target.indices.allocate(indexCount);
+        if (firstIndex < 0) {
+            growIndices(target, indexCount);
+            firstIndex = target.indices.allocate(indexCount);
+        }
+        Range range = new Range(target, baseVertex, vertexCount, firstIndex, indexCount);
+        target.ranges++;
+        
+        //send data to GPU
+        glBindBuffer(GL_ARRAY_BUFFER, target.vbo);
+        long vertexOffset = (long) baseVertex * format.getStride();
+        if (format.isFloat()) {
+            glBufferSubData(GL_ARRAY_BUFFER, vertexOffset, builder.getVertexData());
+        } else {
+            ByteBuffer packed = format.pack(builder.getVertexData(), vertexCount);
+            glBufferSubData(GL_ARRAY_BUFFER, vertexOffset, packed);
+            memFree(packed);
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        
+        //element buffer binding is state of vertex array
+        GLStateCache stateCache = GLStateCache.getInstance();
+        stateCache.bindVertexArray(target.vao);
+        if (target.indexType == GL_UNSIGNED_SHORT) {
+            ShortBuffer indices = VertexFormat.toShortIndices(builder.getIndexData());
+            glBufferSubData(GL_ELEMENT_ARRAY_BUFFER, range.getIndexOffset(), indices);
+            memFree(indices);
+        } else {
+            glBufferSubData(GL_ELEMENT_ARRAY_BUFFER, range.getIndexOffset(), builder.getIndexData());
+        }
+        stateCache.bindVertexArray(0);
+        return range;
+    }
+    
+    private synchronized void free(Range range) {
+        Buffers owner = range.buffers;
+        if (owner.vao == 0) {
+            //pool was cleared
+            return;
+        }
+        owner.vertices.free(range.baseVertex, range.vertexCount);
+        owner.indices.free(range.firstIndex, range.indexCount);
+        owner.ranges--;
+    }
+    
+    /**
+     * Find buffers of format and index type or create them
+     */
+    private Buffers getBuffers(VertexFormat format, int indexType, int vertexCount, int indexCount) {
+        for (Buffers candidate : buffers) {
+            if (candidate.indexType == indexType && candidate.format.equals(format)) {
+                return candidate;
+            }
+        }
+        int vertexCapacity = Math.max(initialVertices, vertexCount);
+        int indexCapacity = Math.max(initialVertices * INDICES_PER_VERTEX, indexCount);
+        Buffers created = new Buffers(format, indexType, vertexCapacity, indexCapacity);
+        
+        created.vao = glGenVertexArrays();
+        created.vbo = glGenBuffers();
+        created.ebo = glGenBuffers();
+        
+        GLStateCache stateCache = GLStateCache.getInstance();
+        stateCache.bindVertexArray(created.vao);
+        glBindBuffer(GL_ARRAY_BUFFER, created.vbo);
+        glBufferData(GL_ARRAY_BUFFER, (long) vertexCapacity * format.getStride(), GL_STATIC_DRAW);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, created.ebo);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, 
+                (long) indexCapacity * VertexFormat.getIndexSize(indexType), GL_STATIC_DRAW);
+        format.setupAttributes();
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        stateCache.bindVertexArray(0);
+        
+        buffers.add(created);
+        LOG.debug("Geometry buffers created for {}, index size {}, vertices {}, indices {}", 
+                format, VertexFormat.getIndexSize(indexType), vertexCapacity, indexCapacity);
+        return created;
+    }
+    
+    private void growVertices(Buffers target, int vertexCount) {
+        int stride = target.format.getStride();
+        int capacity = target.vertices.getCapacity();
+        int newCapacity = Math.max(capacity * 2, capacity + vertexCount);
+        target.vbo = copyBuffer(target.vbo, (long) capacity * stride, (long) newCapacity * stride);
+        target.vertices.grow(newCapacity);
+        
+        //attribute pointers refer to replaced buffer
+        GLStateCache stateCache = GLStateCache.getInstance();
+        stateCache.bindVertexArray(target.vao);
+        glBindBuffer(GL_ARRAY_BUFFER, target.vbo);
+        target.format.setupAttributes();
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        stateCache.bindVertexArray(0);
+        target.version++;
+        grows++;
+        LOG.debug("Vertex buffer of {} grown to {} vertices", target.format, newCapacity);
+    }
+    
+    private void growIndices(Buffers target, int indexCount) {
+        int indexSize = VertexFormat.getIndexSize(target.indexType);
+        int capacity = target.indices.getCapacity();
+        int newCapacity = Math.max(capacity * 2, capacity + indexCount);
+        target.ebo = copyBuffer(target.ebo, (long) capacity * indexSize, (long) newCapacity * indexSize);
+        target.indices.grow(newCapacity);
+        
+        GLStateCache stateCache = GLStateCache.getInstance();
+        stateCache.bindVertexArray(target.vao);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, target.ebo);
+        stateCache.bindVertexArray(0);
+        target.version++;
+        grows++;
+        LOG.debug("Index buffer of {} grown to {} indices", target.format, newCapacity);
+    }
+    
+    /**
+     * Create bigger buffer with content of given one, given buffer is deleted
+     * @return new buffer
+     */
+    private static int copyBuffer(int buffer, long size, long newSize) {
+        int newBuffer = glGenBuffers();
+        glBindBuffer(GL_COPY_WRITE_BUFFER, newBuffer);
+        glBufferData(GL_COPY_WRITE_BUFFER, newSize, GL_STATIC_DRAW);
+        glBindBuffer(GL_COPY_READ_BUFFER, buffer);
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, 0, size);
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        glDeleteBuffers(buffer);
+        return newBuffer;
+    }
+    
+    /**
+     * Delete all buffers, ranges allocated before become invalid, 
+     * must be called on render thread
+     */
+    public synchronized void clear() {
+        GLStateCache stateCache = GLStateCache.getInstance();
+        buffers.forEach((target) -> {
+            glDeleteVertexArrays(target.vao);
+            stateCache.vertexArrayDeleted(target.vao);
+            glDeleteBuffers(target.vbo);
+            glDeleteBuffers(target.ebo);
+            target.vao = target.vbo = target.ebo = 0;
+        });
+        LOG.debug("Geometry pool cleared, {}", getStats());
+        buffers.clear();
+    }
+    
+    public synchronized String getStats() {
+        int ranges = 0;
+        long vertices = 0;
+        long vertexCapacity = 0;
+        long indices = 0;
+        long indexCapacity = 0;
+        for (Buffers target : buffers) {
+            ranges += target.ranges;
+            vertices += target.vertices.getUsed();
+            vertexCapacity += target.vertices.getCapacity();
+            indices += target.indices.getUsed();
+            indexCapacity += target.indices.getCapacity();
+        }
+        return "buffers " + buffers.size() + ", ranges " + ranges 
+                + ", vertices " + vertices + "/" + vertexCapacity 
+                + ", indices " + indices + "/" + indexCapacity + ", grows " + grows;
+    }
+    
+    /**
+     * Vertex array with vertex and index buffers of one format
+     */
+    private static final class Buffers {
+        
+        final VertexFormat format;
+        final int indexType;
+        final RangeAllocator vertices;
+        final RangeAllocator indices;
+        
+        //OpenGL objects id;
+        int vao;
+        int vbo;
+        int ebo;
+        
+        //incremented when buffers are replaced by growing
+        int version;
+        int ranges;
+
+        Buffers(VertexFormat format, int indexType, int vertexCapacity, int indexCapacity) {
+            this.format = format;
+            this.indexType = indexType;
+            this.vertices = new RangeAllocator(vertexCapacity);
+            this.indices = new RangeAllocator(indexCapacity);
+        }
+    }
+    
+    /**
+     * Geometry of one mesh in pool buffers
+     */
+    public static final class Range {
+        
+        private final Buffers buffers;
+        private final int baseVertex;
+        private final int vertexCount;
+        private final int firstIndex;
+        private final int indexCount;
+        private boolean freed;
+
+        private Range(Buffers buffers, int baseVertex, int vertexCount, int firstIndex, int indexCount) {
+            this.buffers = buffers;
+            this.baseVertex = baseVertex;
+            this.vertexCount = vertexCount;
+            this.firstIndex = firstIndex;
+            this.indexCount = indexCount;
+        }
+        
+        /**
+         * Bind shared vertex array of range
+         */
+        public void bind() {
+            GLStateCache.getInstance().bindVertexArray(buffers.vao);
+        }
+        
+        /**
+         * Draw range with already bound vertex array of pool
+         */
+        public void drawBound() {
+            glDrawElementsBaseVertex(GL_TRIANGLES, indexCount, buffers.indexType, 
+                    getIndexOffset(), baseVertex);
+        }
+        
+        /**
+         * Bind pool buffers and setup vertex attributes (0 - position, 
+         * 1 - normal, 2 - UV) into currently bound vertex array, 
+         * draws must add base vertex of range
+         */
+        public void setupAttributes() {
+            glBindBuffer(GL_ARRAY_BUFFER, buffers.vbo);
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, buffers.ebo);
+            buffers.format.setupAttributes();
+        }
+        
+        public int getVertexArray() {
+            return buffers.vao;
+        }
+        
+        /**
+         * @return version of pool buffers, changed when buffers are replaced 
+         * and vertex arrays set up by {@link #setupAttributes()} are outdated
+         */
+        public int getVersion() {
+            return buffers.version;
+        }
+
+        public int getBaseVertex() {
+            return baseVertex;
+        }
+
+        public int getVertexCount() {
+            return vertexCount;
+        }
+
+        public int getFirstIndex() {
+            return firstIndex;
+        }
+        
+        /**
+         * @return offset of first index in bytes
+         */
+        public long getIndexOffset() {
+            return (long) firstIndex * VertexFormat.getIndexSize(buffers.indexType);
+        }
+
+        public int getIndexCount() {
+            return indexCount;
+        }
+
+        public int getIndexType() {
+            return buffers.indexType;
+        }
+        
+        /**
+         * Return ranges to pool, repeated calls are ignored
+         */
+        public void free() {
+            if (!freed) {
+                freed = true;
+                INSTANCE.free(this);
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of loaded textures with reference counting. Textures without 
+ * references stay resident while total GPU memory fits into budget, 
+ * least recently released are deleted first when budget is exceeded. 
+ * Budget is set in megabytes by system property {@value #BUDGET_PROPERTY}. 
+ * Acquire and release create and delete GL textures, so they must be called 
+ * on render thread, statistics can be read from any thread
+ * @author Volchkov Andrey
+ */
+public class GpuTextureCache {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(GpuTextureCache.class);
+    
+    public static final String BUDGET_PROPERTY = "wljgl.textureBudgetMb";
+    
+    private static final GpuTextureCache INSTANCE = new GpuTextureCache(
+            Long.getLong(BUDGET_PROPERTY, 512L) * 1024L * 1024L);
+    
+    public static GpuTextureCache getInstance() {
+        return INSTANCE;
+    }
+    
+    private final long budgetBytes;
+    private final Map<String, Texture> textures = new HashMap<>();
+    //textures without references in order of release
+    private final LinkedHashMap<String, Texture> unreferenced = new LinkedHashMap<>();
+    private long residentBytes;
+    
+    //metrics
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    GpuTextureCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+    
+    /**
+     * Get texture and add reference to it, 
+     * texture is loaded if it isn't resident, must be called on render thread
+     * @param texFile - image resource
+     * @return texture or null if texture can't be loaded
+     */
+    public synchronized Texture acquire(String texFile) {
+        String texName = texFile.trim();
+        Texture tex = textures.get(texName);
+        if (tex != null) {
+            hits++;
+            if (tex.refCount == 0) {
+                unreferenced.remove(texName);
+            }
+        } else {
+            misses++;
+            try {
+                tex = new Texture(texName);
+                tex.init();
+            } catch (IOException | RuntimeException ex) {
+                LOG.error("Error loading texture " + texName, ex);
+                return null;
+            }
+            textures.put(texName, tex);
+        }
+        tex.refCount++;
+        return tex;
+    }
+    
+    /**
+     * Remove reference to texture, texture without references can be evicted, 
+     * must be called on render thread
+     * @param tex - acquired texture
+     */
+    public synchronized void release(Texture tex) {
+        if (tex.refCount <= 0) {
+            throw new IllegalStateException("Texture " + tex.getName() + " isn't acquired");
+        }
+        tex.refCount--;
+        if (tex.refCount == 0) {
+            unreferenced.put(tex.getName(), tex);
+            evict();
+        }
+    }
+    
+    /**
+     * Account GPU memory of uploaded texture
+     * @param tex - texture
+     * @param bytes - memory of all levels
+     */
+    synchronized void uploaded(Texture tex, long bytes) {
+        if (textures.get(tex.getName()) != tex) {
+            return;
+        }
+        residentBytes += bytes - tex.sizeBytes;
+        tex.sizeBytes = bytes;
+        evict();
+        if (residentBytes > budgetBytes) {
+            LOG.warn("Referenced textures exceed budget: {} of {} bytes", 
+                    residentBytes, budgetBytes);
+        }
+    }
+    
+    /**
+     * Delete least recently released textures until memory fits into budget
+     */
+    private void evict() {
+        Iterator<Texture> it = unreferenced.values().iterator();
+        while (residentBytes > budgetBytes && it.hasNext()) {
+            Texture tex = it.next();
+            it.remove();
+            textures.remove(tex.getName());
+            residentBytes -= tex.sizeBytes;
+            tex.delete();
+            evictions++;
+            LOG.debug("Texture {} evicted", tex.getName());
+        }
+    }
+    
+    /**
+     * Delete all textures, must be called on render thread
+     */
+    public synchronized void clear() {
+        textures.values().forEach(Texture::delete);
+        textures.clear();
+        unreferenced.clear();
+        residentBytes = 0;
+        LOG.debug("Texture cache cleared, {}", getStats());
+    }
+    
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+    
+    public synchronized String getStats() {
+        return "textures " + textures.size() + ", unreferenced " + unreferenced.size() 
+                + ", resident " + residentBytes + " of " + budgetBytes + " bytes" 
+                + ", hits " + hits + ", misses " + misses + ", evictions " + evictions;
+    }
+    
+}
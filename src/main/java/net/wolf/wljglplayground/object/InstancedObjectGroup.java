@@ -0,0 +1,233 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.nio.FloatBuffer;
+import net.wolf.wljglplayground.shader.ProgramGLSL;
+import net.wolf.wljglplayground.util.GLStateCache;
+import org.joml.Matrix3f;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Vector3fc;
+
+import static net.wolf.wljglplayground.object.Mesh3d.FLOAT_SIZE;
+import static net.wolf.wljglplayground.object.Mesh3d.TRIANGLE_VERTEXES;
+import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
+import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glBufferSubData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
+import static org.lwjgl.opengl.GL30.glGenVertexArrays;
+import static org.lwjgl.opengl.GL32.glDrawElementsInstancedBaseVertex;
+import static org.lwjgl.opengl.GL33.glVertexAttribDivisor;
+import static org.lwjgl.system.MemoryUtil.memAllocFloat;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * Group of objects sharing one mesh, drawn by single instanced draw call.
+ * Per instance model and normal matrixes and color material params
+ * are stored in instance buffer, must be drawn 
+ * by objectShaderInst.vert/objectShaderInstM.frag program
+ * @author Volchkov Andrey
+ */
+public class InstancedObjectGroup implements Object3d {
+    
+    //instance attributes locations
+    private static final int MODEL_MATRIX_LOCATION = 3;
+    private static final int NORMAL_MATRIX_LOCATION = 7;
+    private static final int AMBIENT_LOCATION = 10;
+    private static final int DIFFUSE_LOCATION = 11;
+    private static final int SPECULAR_LOCATION = 12;
+    private static final int SHININESS_LOCATION = 13;
+    
+    // mat4 model + mat3 normal + ambient, diffuse, specular + shininess, useBlinn
+    private static final int INSTANCE_STRIDE = 4 * 4 + 3 * 3 + 3 * TRIANGLE_VERTEXES + 2;
+    private static final int NORMAL_MATRIX_OFFSET = 4 * 4;
+    private static final int MATERIAL_OFFSET = NORMAL_MATRIX_OFFSET + 3 * 3;
+    
+    private final AbstractProceduralMesh mesh;
+    private final int capacity;
+    private final FloatBuffer instanceData;
+    
+    private final Matrix4f modelScratch = new Matrix4f();
+    private final Matrix3f normalScratch = new Matrix3f();
+    
+    private int count;
+    private boolean dirty;
+    
+    //OpenGL objects id;
+    private int vao;
+    private int instanceVbo;
+    //version of pool buffers referenced by vertex array
+    private int geometryVersion;
+
+    /**
+     * @param mesh - shared mesh, must be initialized before group init
+     * @param capacity - max count of instances
+     */
+    public InstancedObjectGroup(AbstractProceduralMesh mesh, int capacity) {
+        this.mesh = mesh;
+        this.capacity = capacity;
+        this.instanceData = memAllocFloat(capacity * INSTANCE_STRIDE);
+    }
+    
+    /**
+     * Add instance
+     * @param position - position of instance
+     * @param material - color material of instance
+     * @return index of instance
+     */
+    public int add(Vector3fc position, ColorMaterial material) {
+        return add(modelScratch.translation(position), material);
+    }
+    
+    /**
+     * Add instance
+     * @param modelMatrix - model matrix of instance
+     * @param material - color material of instance
+     * @return index of instance
+     */
+    public int add(Matrix4fc modelMatrix, ColorMaterial material) {
+        if (count == capacity) {
+            throw new IllegalStateException("Instanced group is full, capacity " + capacity);
+        }
+        int index = count++;
+        setModelMatrix(index, modelMatrix);
+        setMaterial(index, material);
+        return index;
+    }
+    
+    public void setModelMatrix(int index, Matrix4fc modelMatrix) {
+        int offset = index * INSTANCE_STRIDE;
+        modelMatrix.get(offset, instanceData);
+        modelMatrix.normal(normalScratch)
+                .get(offset + NORMAL_MATRIX_OFFSET, instanceData);
+        dirty = true;
+    }
+    
+    public void setMaterial(int index, ColorMaterial material) {
+        int offset = index * INSTANCE_STRIDE + MATERIAL_OFFSET;
+        material.getAmbient().get(offset, instanceData);
+        material.getDiffuse().get(offset + TRIANGLE_VERTEXES, instanceData);
+        material.getSpecular().get(offset + TRIANGLE_VERTEXES * 2, instanceData);
+        instanceData.put(offset + TRIANGLE_VERTEXES * 3, material.getShininess());
+        instanceData.put(offset + TRIANGLE_VERTEXES * 3 + 1, material.getUseBlinn());
+        dirty = true;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void init() {
+        vao = glGenVertexArrays();
+        instanceVbo = glGenBuffers();
+        
+        GLStateCache stateCache = GLStateCache.getInstance();
+        stateCache.bindVertexArray(vao);
+        //per vertex data from shared buffers of mesh
+        mesh.geometry.setupAttributes();
+        geometryVersion = mesh.geometry.getVersion();
+        
+        //per instance data
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVbo);
+        glBufferData(GL_ARRAY_BUFFER, (long) capacity * INSTANCE_STRIDE * FLOAT_SIZE, GL_DYNAMIC_DRAW);
+        
+        int stride = INSTANCE_STRIDE * FLOAT_SIZE;
+        //mat4 takes 4 locations, one per column
+        for (int i = 0; i < 4; ++i) {
+            instanceAttribute(MODEL_MATRIX_LOCATION + i, 4, stride, i * 4);
+        }
+        //mat3 takes 3 locations
+        for (int i = 0; i < 3; ++i) {
+            instanceAttribute(NORMAL_MATRIX_LOCATION + i, 3, stride, NORMAL_MATRIX_OFFSET + i * 3);
+        }
+        instanceAttribute(AMBIENT_LOCATION, 3, stride, MATERIAL_OFFSET);
+        instanceAttribute(DIFFUSE_LOCATION, 3, stride, MATERIAL_OFFSET + TRIANGLE_VERTEXES);
+        instanceAttribute(SPECULAR_LOCATION, 3, stride, MATERIAL_OFFSET + TRIANGLE_VERTEXES * 2);
+        instanceAttribute(SHININESS_LOCATION, 2, stride, MATERIAL_OFFSET + TRIANGLE_VERTEXES * 3);
+        
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        stateCache.bindVertexArray(0);
+        dirty = true;
+    }
+    
+    private void instanceAttribute(int location, int size, int stride, int floatOffset) {
+        glVertexAttribPointer(location, size, GL_FLOAT, false, stride, floatOffset * FLOAT_SIZE);
+        glEnableVertexAttribArray(location);
+        glVertexAttribDivisor(location, 1);
+    }
+
+    /**
+     * Draw all instances by one draw call
+     * @param program - instanced GLSL program
+     */
+    @Override
+    public void draw(ProgramGLSL program) {
+        if (count == 0) {
+            return;
+        }
+        if (dirty) {
+            instanceData.limit(count * INSTANCE_STRIDE);
+            glBindBuffer(GL_ARRAY_BUFFER, instanceVbo);
+            glBufferSubData(GL_ARRAY_BUFFER, 0, instanceData);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+            instanceData.clear();
+            dirty = false;
+        }
+        GeometryPool.Range geometry = mesh.geometry;
+        GLStateCache.getInstance().bindVertexArray(vao);
+        if (geometryVersion != geometry.getVersion()) {
+            //pool buffers were replaced by growing
+            geometry.setupAttributes();
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+            geometryVersion = geometry.getVersion();
+        }
+        glDrawElementsInstancedBaseVertex(GL_TRIANGLES, geometry.getIndexCount(), geometry.getIndexType(), 
+                geometry.getIndexOffset(), count, geometry.getBaseVertex());
+    }
+
+    @Override
+    public void delete() {
+        if (vao != 0) {
+            glDeleteVertexArrays(vao);
+            GLStateCache.getInstance().vertexArrayDeleted(vao);
+        }
+        if (instanceVbo != 0) {
+            glDeleteBuffers(instanceVbo);
+        }
+        vao = instanceVbo = 0;
+        memFree(instanceData);
+        mesh.delete();
+    }
+    
+}
@@ -24,6 +24,9 @@
 package net.wolf.wljglplayground.object;
 
 import net.wolf.wljglplayground.shader.ProgramGLSL;
+import net.wolf.wljglplayground.shader.UniformBlock;
+import net.wolf.wljglplayground.shader.UniformBufferGLSL;
+import net.wolf.wljglplayground.shader.UniformHandle;
 import net.wolf.wljglplayground.util.ColorUtils;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
@@ -42,6 +45,32 @@ public class Light3d implements Object3d {
     private final Vector3f diffuse;
     private final Vector3f specular;
     private final Matrix4f modelMatrix = new Matrix4f();
+    //world center of light mesh bounds
+    private final Vector3f boundsCenter = new Vector3f();
+    
+    //material of light mesh for render queue
+    private final Material colorMaterial = new Material() {
+        //uniform resolved for last applied program
+        private ProgramGLSL uniformProgram;
+        private UniformHandle colorUniform;
+        
+        @Override
+        public void apply(ProgramGLSL program) {
+            if (program != uniformProgram) {
+                colorUniform = program.getUniform("lightColor");
+                uniformProgram = program;
+            }
+            program.setParam(colorUniform, color);
+        }
+
+        @Override
+        public void use() {
+        }
+
+        @Override
+        public void delete() {
+        }
+    };
 
     public Light3d(Mesh3d mesh, Vector3f position,
             Vector3f color, float ambient, float diffuse, float specular) {
@@ -74,6 +103,19 @@ public class Light3d implements Object3d {
         program.setParam("modelMatrix", modelMatrix);
         mesh.draw();
     }
+
+    @Override
+    public void submit(RenderQueue queue, ProgramGLSL program) {
+        modelMatrix.translation(position);
+        queue.submit(program, colorMaterial, mesh, modelMatrix, null);
+    }
+    
+    @Override
+    public boolean isVisible(Camera camera) {
+        BoundingVolume bounds = mesh.getBounds();
+        position.add(bounds.getCenter(), boundsCenter);
+        return camera.isVisible(boundsCenter, bounds.getRadius());
+    }
     
     public void apply(final ProgramGLSL program) {
         program.setParam("light.position", position);
@@ -81,6 +123,17 @@ public class Light3d implements Object3d {
         program.setParam("light.diffuse", diffuse);
         program.setParam("light.specular", specular);
     }
+    
+    /**
+     * Write light data into light uniform block
+     * @param uniforms - uniform buffer with {@link UniformBlock#LIGHT} block
+     */
+    public void apply(final UniformBufferGLSL uniforms) {
+        uniforms.setParam(UniformBlock.LIGHT, UniformBlock.LIGHT_POSITION, position)
+                .setParam(UniformBlock.LIGHT, UniformBlock.LIGHT_AMBIENT, ambient)
+                .setParam(UniformBlock.LIGHT, UniformBlock.LIGHT_DIFFUSE, diffuse)
+                .setParam(UniformBlock.LIGHT, UniformBlock.LIGHT_SPECULAR, specular);
+    }
 
     @Override
     public void delete() {
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chain of meshes with decreasing detail, level is chosen by 
+ * {@link RenderQueue} from projected screen size of object. 
+ * Direct {@link #draw()} uses the most detailed level
+ * @author Volchkov Andrey
+ */
+public class LodMesh implements Mesh3d {
+    
+    //min screen size of sphere levels, fraction of viewport height covered by object
+    private static final float[] SPHERE_SCREEN_SIZES = {0.25f, 0.1f, 0.04f};
+    private static final int MIN_SPHERE_LNG = 6;
+    private static final int MIN_SPHERE_LAT = 4;
+    
+    private final Mesh3d[] levels;
+    private final float[] screenSizes;
+
+    /**
+     * @param levels - initialized meshes from the most detailed
+     * @param screenSizes - min screen size of every level except the last one, 
+     * screen size is fraction of viewport height covered by object
+     */
+    public LodMesh(Mesh3d[] levels, float[] screenSizes) {
+        if (levels.length == 0 || screenSizes.length < levels.length - 1) {
+            throw new IllegalArgumentException("Screen size must be set for every level but last");
+        }
+        this.levels = levels;
+        this.screenSizes = screenSizes;
+    }
+    
+    /**
+     * Create LOD chain of sphere shared by {@link MeshCache}, 
+     * tessellation is halved on every level
+     * @param radius - radius of sphere
+     * @param lngC - longitude segments of the most detailed level
+     * @param latC - latitude segments of the most detailed level
+     * @return initialized LOD mesh
+     */
+    public static LodMesh sphere(float radius, int lngC, int latC) {
+        MeshCache cache = MeshCache.getInstance();
+        List<Mesh3d> levels = new ArrayList<>();
+        levels.add(cache.acquire(new SphereMesh(radius, lngC, latC)));
+        int lng = lngC;
+        int lat = latC;
+        while (levels.size() <= SPHERE_SCREEN_SIZES.length 
+                && (lng > MIN_SPHERE_LNG || lat > MIN_SPHERE_LAT)) {
+            lng = Math.max(MIN_SPHERE_LNG, lng / 2);
+            lat = Math.max(MIN_SPHERE_LAT, lat / 2);
+            levels.add(cache.acquire(new SphereMesh(radius, lng, lat)));
+        }
+        return new LodMesh(levels.toArray(new Mesh3d[levels.size()]), SPHERE_SCREEN_SIZES);
+    }
+    
+    /**
+     * @param screenSize - fraction of viewport height covered by object
+     * @return level for drawing
+     */
+    public Mesh3d select(float screenSize) {
+        int last = levels.length - 1;
+        for (int level = 0; level < last; ++level) {
+            if (screenSize >= screenSizes[level]) {
+                return levels[level];
+            }
+        }
+        return levels[last];
+    }
+    
+    public int getLevelCount() {
+        return levels.length;
+    }
+    
+    public Mesh3d getLevel(int level) {
+        return levels[level];
+    }
+
+    /**
+     * Levels are initialized when they are created or acquired from {@link MeshCache}
+     */
+    @Override
+    public void init() {
+    }
+
+    @Override
+    public void draw() {
+        levels[0].draw();
+    }
+
+    @Override
+    public void bind() {
+        levels[0].bind();
+    }
+
+    @Override
+    public void drawBound() {
+        levels[0].drawBound();
+    }
+
+    @Override
+    public int getSortKey() {
+        return levels[0].getSortKey();
+    }
+
+    /**
+     * @return bounds of the most detailed level
+     */
+    @Override
+    public BoundingVolume getBounds() {
+        return levels[0].getBounds();
+    }
+
+    @Override
+    public void delete() {
+        for (Mesh3d level : levels) {
+            level.delete();
+        }
+    }
+    
+}
@@ -35,6 +35,13 @@ public interface Material extends Deletable {
     public void apply(ProgramGLSL program);
     
     public void use();    
+    
+    /**
+     * @return key for grouping draws with same GL state (texture set)
+     */
+    public default int getSortKey() {
+        return 0;
+    }
         
 }
 
@@ -40,4 +40,25 @@ public interface Mesh3d extends Deletable {
     
     void draw();
     
+    /**
+     * Bind vertex array of mesh for {@link #drawBound()}
+     */
+    void bind();
+    
+    /**
+     * Draw mesh with already bound vertex array, 
+     * used for drawing many objects with same mesh without rebinding
+     */
+    void drawBound();
+    
+    /**
+     * @return key for grouping draws with same mesh
+     */
+    int getSortKey();
+    
+    /**
+     * @return bounding volume of mesh in local space, available after {@link #init()}
+     */
+    BoundingVolume getBounds();
+    
 }
@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import static net.wolf.wljglplayground.object.Mesh3d.TRIANGLE_VERTEXES;
+import static net.wolf.wljglplayground.object.Mesh3d.UV_VERTEXES;
+import net.wolf.wljglplayground.util.Deletable;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Builder of mesh data in off-heap buffers: vertices are interleaved 
+ * (position, normal, UV) and written by primitive setters without 
+ * intermediate vector objects
+ * @author Volchkov Andrey
+ */
+public class MeshBuilder implements Deletable {
+    
+    //floats of interleaved vertex: position + normal + UV
+    public static final int STRIDE = TRIANGLE_VERTEXES + TRIANGLE_VERTEXES + UV_VERTEXES;
+    private static final int NORMAL_OFFSET = TRIANGLE_VERTEXES;
+    private static final int UV_OFFSET = TRIANGLE_VERTEXES * 2;
+    
+    private FloatBuffer vertices;
+    private IntBuffer indices;
+    private int vertexCount;
+    private int indexCount;
+    
+    /**
+     * Allocate buffers for mesh data, previous data is freed
+     * @param vertexCount - count of vertices
+     * @param indexCount - count of indices
+     * @return this builder
+     */
+    public MeshBuilder begin(int vertexCount, int indexCount) {
+        delete();
+        this.vertexCount = vertexCount;
+        this.indexCount = indexCount;
+        vertices = MemoryUtil.memCallocFloat(vertexCount * STRIDE);
+        indices = MemoryUtil.memAllocInt(indexCount);
+        return this;
+    }
+    
+    public MeshBuilder position(int vertex, float x, float y, float z) {
+        int offset = vertex * STRIDE;
+        vertices.put(offset, x)
+                .put(offset + 1, y)
+                .put(offset + 2, z);
+        return this;
+    }
+    
+    public MeshBuilder normal(int vertex, float x, float y, float z) {
+        int offset = vertex * STRIDE + NORMAL_OFFSET;
+        vertices.put(offset, x)
+                .put(offset + 1, y)
+                .put(offset + 2, z);
+        return this;
+    }
+    
+    public MeshBuilder uv(int vertex, float u, float v) {
+        int offset = vertex * STRIDE + UV_OFFSET;
+        vertices.put(offset, u)
+                .put(offset + 1, v);
+        return this;
+    }
+    
+    /**
+     * Set all attributes of vertex
+     */
+    public MeshBuilder vertex(int vertex, float x, float y, float z, 
+            float nx, float ny, float nz, float u, float v) {
+        int offset = vertex * STRIDE;
+        vertices.put(offset, x)
+                .put(offset + 1, y)
+                .put(offset + 2, z)
+                .put(offset + 3, nx)
+                .put(offset + 4, ny)
+                .put(offset + 5, nz)
+                .put(offset + 6, u)
+                .put(offset + 7, v);
+        return this;
+    }
+    
+    public MeshBuilder index(int index, int vertex) {
+        indices.put(index, vertex);
+        return this;
+    }
+    
+    /**
+     * Set three indices of triangle
+     * @param triangle - number of triangle
+     */
+    public MeshBuilder triangle(int triangle, int v0, int v1, int v2) {
+        int offset = triangle * 3;
+        indices.put(offset, v0)
+                .put(offset + 1, v1)
+                .put(offset + 2, v2);
+        return this;
+    }
+    
+    /**
+     * Bulk copy of indices from start of index buffer
+     * @param src - indices
+     * @return this builder
+     */
+    public MeshBuilder indices(int[] src) {
+        indices.clear();
+        indices.put(src, 0, Math.min(src.length, indexCount));
+        indices.clear();
+        return this;
+    }
+    
+    /**
+     * Replace mesh data, e.g. by optimized one
+     * @param vertexData - interleaved vertices, {@link #STRIDE} floats per vertex
+     * @param vertexCount - count of vertices
+     * @param indexData - indices
+     * @param indexCount - count of indices
+     * @return this builder
+     */
+    public MeshBuilder set(float[] vertexData, int vertexCount, int[] indexData, int indexCount) {
+        if (vertices == null || vertices.capacity() < vertexCount * STRIDE 
+                || indices.capacity() < indexCount) {
+            begin(vertexCount, indexCount);
+        }
+        this.vertexCount = vertexCount;
+        this.indexCount = indexCount;
+        vertices.clear();
+        vertices.put(vertexData, 0, vertexCount * STRIDE).clear();
+        indices.clear();
+        indices.put(indexData, 0, indexCount).clear();
+        return this;
+    }
+    
+    public float getX(int vertex) {
+        return vertices.get(vertex * STRIDE);
+    }
+    
+    public float getY(int vertex) {
+        return vertices.get(vertex * STRIDE + 1);
+    }
+    
+    public float getZ(int vertex) {
+        return vertices.get(vertex * STRIDE + 2);
+    }
+    
+    public int getIndex(int index) {
+        return indices.get(index);
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getIndexCount() {
+        return indexCount;
+    }
+    
+    /**
+     * @return interleaved vertices, valid until builder is deleted
+     */
+    public FloatBuffer getVertexData() {
+        FloatBuffer data = vertices.duplicate();
+        data.clear().limit(vertexCount * STRIDE);
+        return data;
+    }
+    
+    /**
+     * @return indices, valid until builder is deleted
+     */
+    public IntBuffer getIndexData() {
+        IntBuffer data = indices.duplicate();
+        data.clear().limit(indexCount);
+        return data;
+    }
+    
+    /**
+     * @return bounds of vertex positions
+     */
+    public BoundingVolume getBounds() {
+        return BoundingVolume.of(vertices, STRIDE, vertexCount);
+    }
+
+    @Override
+    public void delete() {
+        if (vertices != null) {
+            MemoryUtil.memFree(vertices);
+            vertices = null;
+        }
+        if (indices != null) {
+            MemoryUtil.memFree(indices);
+            indices = null;
+        }
+        vertexCount = indexCount = 0;
+    }
+    
+}
@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of procedural meshes with reference counting, meshes with 
+ * equal type, generation parameters and vertex format share one set of GL buffers. 
+ * Every owner deleting mesh (object, instanced group) acquires own reference, 
+ * shared mesh is deleted when last reference is released by {@link Mesh3d#delete()}
+ * @author Volchkov Andrey
+ */
+public class MeshCache {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(MeshCache.class);
+    
+    private static final MeshCache INSTANCE = new MeshCache();
+    
+    public static MeshCache getInstance() {
+        return INSTANCE;
+    }
+    
+    private final Map<String, AbstractProceduralMesh> meshes = new HashMap<>();
+    
+    //metrics
+    private long hits;
+    private long misses;
+
+    MeshCache() {
+    }
+    
+    /**
+     * Get shared mesh with same parameters or initialize given one, 
+     * every acquire must be matched by one {@link Mesh3d#delete()}
+     * @param <T> - type of mesh
+     * @param mesh - not initialized mesh describing geometry
+     * @return initialized shared mesh, given mesh if it can't be shared
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends AbstractProceduralMesh> T acquire(T mesh) {
+        String params = mesh.getCacheKey();
+        if (params == null) {
+            mesh.init();
+            return mesh;
+        }
+        String key = mesh.getClass().getName() + ':' + params 
+                + ':' + mesh.getVertexFormat().hashCode();
+        AbstractProceduralMesh shared = meshes.get(key);
+        if (shared != null) {
+            hits++;
+        } else {
+            misses++;
+            mesh.init();
+            mesh.cacheKey = key;
+            meshes.put(key, mesh);
+            shared = mesh;
+        }
+        shared.refCount++;
+        return (T) shared;
+    }
+    
+    /**
+     * Remove reference to mesh, mesh without references is deleted
+     * @param mesh - shared mesh
+     */
+    synchronized void release(AbstractProceduralMesh mesh) {
+        if (mesh.refCount <= 0) {
+            throw new IllegalStateException("Mesh " + mesh.cacheKey + " isn't acquired");
+        }
+        mesh.refCount--;
+        if (mesh.refCount == 0) {
+            meshes.remove(mesh.cacheKey);
+            mesh.deleteBuffers();
+            LOG.debug("Mesh {} deleted", mesh.cacheKey);
+        }
+    }
+    
+    /**
+     * Delete all meshes, must be called on render thread
+     */
+    public synchronized void clear() {
+        meshes.values().forEach((mesh) -> {
+            mesh.refCount = 0;
+            mesh.deleteBuffers();
+        });
+        meshes.clear();
+        LOG.debug("Mesh cache cleared, {}", getStats());
+    }
+
+    public synchronized int size() {
+        return meshes.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+    
+    public synchronized String getStats() {
+        return "meshes " + meshes.size() + ", hits " + hits + ", misses " + misses;
+    }
+    
+}
@@ -0,0 +1,376 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Optimizer of indexed triangle meshes: welds equal vertices, removes 
+ * degenerate triangles, reorders triangles for post-transform vertex cache 
+ * (Forsyth's linear-speed algorithm) and vertices in order of first use 
+ * for fetch locality. Efficiency is reported as ACMR (average cache miss ratio, 
+ * transformed vertices per triangle) of simulated FIFO cache. 
+ * Optimization is disabled by system property {@value #OPTIMIZE_PROPERTY} = false
+ * @author Volchkov Andrey
+ */
+public class MeshOptimizer {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(MeshOptimizer.class);
+    
+    public static final String OPTIMIZE_PROPERTY = "wljgl.optimizeMeshes";
+    
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(
+            System.getProperty(OPTIMIZE_PROPERTY));
+    
+    //size of simulated FIFO cache for ACMR
+    public static final int ACMR_CACHE_SIZE = 16;
+    
+    //parameters of Forsyth's vertex scores for LRU cache of 32 entries
+    private static final int CACHE_SIZE = 32;
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+
+    private MeshOptimizer() {
+    }
+    
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+    
+    /**
+     * Optimize mesh data of builder in place
+     * @param builder - builder with generated mesh
+     * @param name - name of mesh for report
+     */
+    public static void optimize(MeshBuilder builder, String name) {
+        int vertexCount = builder.getVertexCount();
+        int indexCount = builder.getIndexCount() / 3 * 3;
+        int triangleCount = indexCount / 3;
+        float[] vertices = new float[vertexCount * MeshBuilder.STRIDE];
+        builder.getVertexData().get(vertices);
+        int[] indices = new int[indexCount];
+        builder.getIndexData().get(indices, 0, indexCount);
+        float acmrBefore = acmr(indices, indexCount, ACMR_CACHE_SIZE);
+        
+        int[] remap = weld(vertices, vertexCount);
+        for (int i = 0; i < indexCount; ++i) {
+            indices[i] = remap[indices[i]];
+        }
+        int optimizedCount = removeDegenerate(indices, indexCount);
+        int[] ordered = reorderTriangles(indices, optimizedCount, vertexCount);
+        
+        //number vertices in order of first use, unused are dropped
+        int[] newIndex = new int[vertexCount];
+        Arrays.fill(newIndex, -1);
+        int usedCount = 0;
+        for (int i = 0; i < optimizedCount; ++i) {
+            int vertex = ordered[i];
+            if (newIndex[vertex] < 0) {
+                newIndex[vertex] = usedCount++;
+            }
+            ordered[i] = newIndex[vertex];
+        }
+        float[] reordered = new float[usedCount * MeshBuilder.STRIDE];
+        for (int vertex = 0; vertex < vertexCount; ++vertex) {
+            if (newIndex[vertex] >= 0) {
+                System.arraycopy(vertices, vertex * MeshBuilder.STRIDE, 
+                        reordered, newIndex[vertex] * MeshBuilder.STRIDE, MeshBuilder.STRIDE);
+            }
+        }
+        builder.set(reordered, usedCount, ordered, optimizedCount);
+        
+        LOG.debug("Mesh {} optimized: vertices {} -> {}, triangles {} -> {}, ACMR {} -> {}", 
+                name, vertexCount, usedCount, triangleCount, optimizedCount / 3,
+                String.format("%.3f", acmrBefore), 
+                String.format("%.3f", acmr(ordered, optimizedCount, ACMR_CACHE_SIZE)));
+    }
+    
+    /**
+     * Find equal vertices by all attributes
+     * @return index of first equal vertex for every vertex
+     */
+    static int[] weld(float[] vertices, int vertexCount) {
+        int[] remap = new int[vertexCount];
+        Map<VertexKey, Integer> unique = new HashMap<>(vertexCount * 2);
+        for (int vertex = 0; vertex < vertexCount; ++vertex) {
+            Integer first = unique.putIfAbsent(new VertexKey(vertices, vertex), vertex);
+            remap[vertex] = first == null ? vertex : first;
+        }
+        return remap;
+    }
+    
+    /**
+     * Remove triangles with repeated vertex
+     * @return count of remaining indices
+     */
+    static int removeDegenerate(int[] indices, int indexCount) {
+        int count = 0;
+        for (int i = 0; i < indexCount; i += 3) {
+            int v0 = indices[i];
+            int v1 = indices[i + 1];
+            int v2 = indices[i + 2];
+            if (v0 != v1 && v1 != v2 && v0 != v2) {
+                indices[count++] = v0;
+                indices[count++] = v1;
+                indices[count++] = v2;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Average count of vertex transforms per triangle with FIFO cache, 
+     * 0.5 is ideal for big regular grid, 3 is worst
+     * @param indices - triangle indices
+     * @param indexCount - count of indices
+     * @param cacheSize - entries of FIFO cache
+     * @return ACMR
+     */
+    public static float acmr(int[] indices, int indexCount, int cacheSize) {
+        if (indexCount < 3) {
+            return 0.f;
+        }
+        int[] cache = new int[cacheSize];
+        Arrays.fill(cache, -1);
+        int head = 0;
+        int misses = 0;
+        for (int i = 0; i < indexCount; ++i) {
+            int vertex = indices[i];
+            boolean hit = false;
+            for (int entry : cache) {
+                if (entry == vertex) {
+                    hit = true;
+                    break;
+                }
+            }
+            if (!hit) {
+                misses++;
+                cache[head] = vertex;
+                head = (head + 1) % cacheSize;
+            }
+        }
+        return (float) misses / (indexCount / 3);
+    }
+    
+    /**
+     * Forsyth's linear-speed vertex cache optimization: greedily emit 
+     * triangle with best score, score of vertex grows with position in 
+     * simulated LRU cache and with few remaining triangles
+     * @return reordered indices
+     */
+    static int[] reorderTriangles(int[] indices, int indexCount, int vertexCount) {
+        int triangleCount = indexCount / 3;
+        int[] result = new int[indexCount];
+        if (triangleCount == 0) {
+            return result;
+        }
+        
+        //triangles of every vertex, not emitted are kept at start of vertex list
+        int[] remaining = new int[vertexCount];
+        for (int i = 0; i < indexCount; ++i) {
+            remaining[indices[i]]++;
+        }
+        int[] trianglesStart = new int[vertexCount + 1];
+        for (int vertex = 0; vertex < vertexCount; ++vertex) {
+            trianglesStart[vertex + 1] = trianglesStart[vertex] + remaining[vertex];
+        }
+        int[] vertexTriangles = new int[indexCount];
+        int[] fill = Arrays.copyOf(trianglesStart, vertexCount);
+        for (int i = 0; i < indexCount; ++i) {
+            vertexTriangles[fill[indices[i]]++] = i / 3;
+        }
+        
+        int[] cachePosition = new int[vertexCount];
+        Arrays.fill(cachePosition, -1);
+        float[] vertexScore = new float[vertexCount];
+        for (int vertex = 0; vertex < vertexCount; ++vertex) {
+            vertexScore[vertex] = score(-1, remaining[vertex]);
+        }
+        float[] triangleScore = new float[triangleCount];
+        boolean[] emitted = new boolean[triangleCount];
+        for (int triangle = 0; triangle < triangleCount; ++triangle) {
+            triangleScore[triangle] = vertexScore[indices[triangle * 3]] 
+                    + vertexScore[indices[triangle * 3 + 1]] 
+                    + vertexScore[indices[triangle * 3 + 2]];
+        }
+        
+        //LRU cache with room for vertices of new triangle
+        int[] cache = new int[CACHE_SIZE + 3];
+        int cacheCount = 0;
+        int[] newCache = new int[CACHE_SIZE + 3];
+        //cursor of linear search for best triangle when cache gives nothing
+        int scan = 0;
+        int best = -1;
+        
+        for (int out = 0; out < triangleCount; ++out) {
+            if (best < 0) {
+                float bestScore = -1.f;
+                while (scan < triangleCount && emitted[scan]) {
+                    scan++;
+                }
+                for (int triangle = scan; triangle < triangleCount; ++triangle) {
+                    if (!emitted[triangle] && triangleScore[triangle] > bestScore) {
+                        bestScore = triangleScore[triangle];
+                        best = triangle;
+                    }
+                }
+            }
+            int triangle = best;
+            emitted[triangle] = true;
+            
+            //emit triangle and put its vertices at front of cache
+            int newCount = 0;
+            for (int k = 0; k < 3; ++k) {
+                int vertex = indices[triangle * 3 + k];
+                result[out * 3 + k] = vertex;
+                newCache[newCount++] = vertex;
+                //remove triangle from list of vertex
+                int start = trianglesStart[vertex];
+                int end = start + remaining[vertex];
+                for (int t = start; t < end; ++t) {
+                    if (vertexTriangles[t] == triangle) {
+                        vertexTriangles[t] = vertexTriangles[end - 1];
+                        vertexTriangles[end - 1] = triangle;
+                        break;
+                    }
+                }
+                remaining[vertex]--;
+            }
+            for (int c = 0; c < cacheCount; ++c) {
+                int vertex = cache[c];
+                if (vertex != newCache[0] && vertex != newCache[1] && vertex != newCache[2]) {
+                    newCache[newCount++] = vertex;
+                }
+            }
+            int[] swap = cache;
+            cache = newCache;
+            newCache = swap;
+            cacheCount = newCount;
+            
+            //update scores of cached vertices and their triangles, 
+            //vertices out of cache get score without cache position
+            for (int c = 0; c < cacheCount; ++c) {
+                int vertex = cache[c];
+                cachePosition[vertex] = c < CACHE_SIZE ? c : -1;
+                float score = score(cachePosition[vertex], remaining[vertex]);
+                float delta = score - vertexScore[vertex];
+                vertexScore[vertex] = score;
+                int start = trianglesStart[vertex];
+                int end = start + remaining[vertex];
+                for (int t = start; t < end; ++t) {
+                    triangleScore[vertexTriangles[t]] += delta;
+                }
+            }
+            if (cacheCount > CACHE_SIZE) {
+                cacheCount = CACHE_SIZE;
+            }
+            
+            //best triangle among triangles of cached vertices
+            best = -1;
+            float bestScore = -1.f;
+            for (int c = 0; c < cacheCount; ++c) {
+                int vertex = cache[c];
+                int start = trianglesStart[vertex];
+                int end = start + remaining[vertex];
+                for (int t = start; t < end; ++t) {
+                    int candidate = vertexTriangles[t];
+                    if (triangleScore[candidate] > bestScore) {
+                        bestScore = triangleScore[candidate];
+                        best = candidate;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Score of vertex by position in LRU cache and count of remaining triangles
+     */
+    private static float score(int cachePosition, int remainingTriangles) {
+        if (remainingTriangles == 0) {
+            return -1.f;
+        }
+        float score = 0.f;
+        if (cachePosition >= 0) {
+            if (cachePosition < 3) {
+                //vertices of last triangle get fixed score to avoid strips
+                score = LAST_TRIANGLE_SCORE;
+            } else {
+                float scale = 1.f / (CACHE_SIZE - 3);
+                score = (float) Math.pow(1.f - (cachePosition - 3) * scale, CACHE_DECAY_POWER);
+            }
+        }
+        return score + VALENCE_BOOST_SCALE 
+                * (float) Math.pow(remainingTriangles, -VALENCE_BOOST_POWER);
+    }
+    
+    /**
+     * Key of vertex by bits of all attributes
+     */
+    private static final class VertexKey {
+        
+        private final float[] vertices;
+        private final int offset;
+        private final int hash;
+
+        VertexKey(float[] vertices, int vertex) {
+            this.vertices = vertices;
+            this.offset = vertex * MeshBuilder.STRIDE;
+            int h = 1;
+            for (int i = 0; i < MeshBuilder.STRIDE; ++i) {
+                h = 31 * h + Float.floatToIntBits(vertices[offset + i]);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof VertexKey)) {
+                return false;
+            }
+            VertexKey other = (VertexKey) obj;
+            for (int i = 0; i < MeshBuilder.STRIDE; ++i) {
+                if (Float.floatToIntBits(vertices[offset + i]) 
+                        != Float.floatToIntBits(other.vertices[other.offset + i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,513 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import net.wolf.wljglplayground.shader.ProgramGLSL;
+import net.wolf.wljglplayground.util.Deletable;
+import net.wolf.wljglplayground.util.GLStateCache;
+import org.joml.Matrix3fc;
+import org.joml.Matrix4fc;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
+import static org.lwjgl.opengl.GL11.glDeleteTextures;
+import static org.lwjgl.opengl.GL11.glGenTextures;
+import static org.lwjgl.opengl.GL11.glGetInteger;
+import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
+import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
+import static org.lwjgl.opengl.GL15.GL_STREAM_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL15.glUnmapBuffer;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL30.GL_MAP_INVALIDATE_BUFFER_BIT;
+import static org.lwjgl.opengl.GL30.GL_MAP_WRITE_BIT;
+import static org.lwjgl.opengl.GL30.GL_RGBA32F;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
+import static org.lwjgl.opengl.GL30.glGenVertexArrays;
+import static org.lwjgl.opengl.GL30.glMapBufferRange;
+import static org.lwjgl.opengl.GL30.glVertexAttribI1ui;
+import static org.lwjgl.opengl.GL30.glVertexAttribIPointer;
+import static org.lwjgl.opengl.GL31.GL_MAX_TEXTURE_BUFFER_SIZE;
+import static org.lwjgl.opengl.GL31.GL_TEXTURE_BUFFER;
+import static org.lwjgl.opengl.GL31.glTexBuffer;
+import static org.lwjgl.opengl.GL32.glDrawElementsBaseVertex;
+import static org.lwjgl.opengl.GL33.glVertexAttribDivisor;
+import static org.lwjgl.opengl.GL40.GL_DRAW_INDIRECT_BUFFER;
+import static org.lwjgl.opengl.GL43.glMultiDrawElementsIndirect;
+import static org.lwjgl.system.MemoryUtil.memAddress;
+import static org.lwjgl.system.MemoryUtil.memAllocFloat;
+import static org.lwjgl.system.MemoryUtil.memAllocInt;
+import static org.lwjgl.system.MemoryUtil.memCopy;
+import static org.lwjgl.system.MemoryUtil.memFloatBuffer;
+import static org.lwjgl.system.MemoryUtil.memFree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Batch of color material objects drawn with few draw calls. Per-draw data 
+ * (model matrix, normal matrix, material index) is written into mapped buffer 
+ * read by shader as buffer texture, materials are kept in second buffer texture. 
+ * Draws of one {@link GeometryPool} vertex array go out as one 
+ * glMultiDrawElementsIndirect when context supports it (GL 4.3 or 
+ * ARB_multi_draw_indirect with ARB_base_instance), else as loop of 
+ * glDrawElementsBaseVertex. Shader gets index of draw from attribute 3, 
+ * instanced attribute offset by base instance of indirect command 
+ * or constant attribute value set before every draw of loop. 
+ * Usage per frame: {@link #begin()}, {@link #add(Simple3dObject)} for visible objects, 
+ * {@link #flush(ProgramGLSL)} with program using objectShaderMdi.vert
+ * @author Volchkov Andrey
+ */
+public class MultiDrawBatch implements Deletable {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(MultiDrawBatch.class);
+    
+    //false disables indirect drawing even if it is supported
+    public static final String INDIRECT_PROPERTY = "wljgl.multiDrawIndirect";
+    
+    private static final int DRAW_INDEX_LOCATION = 3;
+    private static final int DRAW_DATA_UNIT = 0;
+    private static final int MATERIAL_UNIT = 1;
+    
+    //mat4 model + mat3 normal as 3 vec4 columns, material index in w of first column
+    private static final int DRAW_TEXELS = 7;
+    private static final int DRAW_STRIDE = DRAW_TEXELS * 4;
+    private static final int NORMAL_MATRIX_OFFSET = 4 * 4;
+    //ambient + shininess, diffuse + useBlinn, specular
+    private static final int MATERIAL_STRIDE = 3 * 4;
+    //count, instanceCount, firstIndex, baseVertex, baseInstance
+    private static final int COMMAND_SIZE = 5;
+    private static final int INT_SIZE = 4;
+    
+    private final int capacity;
+    private boolean indirect;
+    
+    //per draw data of frame
+    private final GeometryPool.Range[] ranges;
+    private final int[] drawGroups;
+    private FloatBuffer drawData;
+    private final IntBuffer commands;
+    private int count;
+    
+    //draws of one pool vertex array
+    private final List<Group> groups = new ArrayList<>();
+    
+    private final Map<ColorMaterial, Integer> materialIndexes = new IdentityHashMap<>();
+    private final List<ColorMaterial> materials = new ArrayList<>();
+    private boolean materialsDirty;
+    
+    //statistics of last flush
+    private int drawCalls;
+    
+    //OpenGL objects id;
+    private int drawDataBuffer;
+    private int drawDataTexture;
+    private int materialBuffer;
+    private int materialTexture;
+    private int indirectBuffer;
+    private int drawIndexBuffer;
+
+    /**
+     * @param capacity - max count of draws per frame
+     */
+    public MultiDrawBatch(int capacity) {
+        this.capacity = capacity;
+        this.ranges = new GeometryPool.Range[capacity];
+        this.drawGroups = new int[capacity];
+        this.commands = memAllocInt(capacity * COMMAND_SIZE);
+    }
+    
+    /**
+     * @return true if indirect drawing is supported by current context
+     */
+    public static boolean isIndirectSupported() {
+        GLCapabilities caps = GL.getCapabilities();
+        return caps.OpenGL43 || (caps.GL_ARB_multi_draw_indirect && caps.GL_ARB_base_instance);
+    }
+    
+    /**
+     * Create buffers, must be called on render thread
+     * @param allowIndirect - use indirect drawing when it is supported, 
+     * false forces loop of draw calls
+     */
+    public void init(boolean allowIndirect) {
+        int maxTexels = glGetInteger(GL_MAX_TEXTURE_BUFFER_SIZE);
+        if ((long) capacity * DRAW_TEXELS > maxTexels) {
+            throw new IllegalStateException("Batch capacity " + capacity 
+                    + " exceeds buffer texture size " + maxTexels);
+        }
+        indirect = allowIndirect && isIndirectSupported()
+                && Boolean.parseBoolean(System.getProperty(INDIRECT_PROPERTY, "true"));
+        
+        drawDataBuffer = glGenBuffers();
+        glBindBuffer(GL_TEXTURE_BUFFER, drawDataBuffer);
+        glBufferData(GL_TEXTURE_BUFFER, (long) capacity * DRAW_STRIDE * Float.BYTES, GL_STREAM_DRAW);
+        materialBuffer = glGenBuffers();
+        glBindBuffer(GL_TEXTURE_BUFFER, materialBuffer);
+        glBufferData(GL_TEXTURE_BUFFER, MATERIAL_STRIDE * Float.BYTES, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_TEXTURE_BUFFER, 0);
+        
+        GLStateCache stateCache = GLStateCache.getInstance();
+        drawDataTexture = glGenTextures();
+        stateCache.bindTexture(GL_TEXTURE_BUFFER, drawDataTexture);
+        glTexBuffer(GL_TEXTURE_BUFFER, GL_RGBA32F, drawDataBuffer);
+        materialTexture = glGenTextures();
+        stateCache.bindTexture(GL_TEXTURE_BUFFER, materialTexture);
+        glTexBuffer(GL_TEXTURE_BUFFER, GL_RGBA32F, materialBuffer);
+        stateCache.bindTexture(GL_TEXTURE_BUFFER, 0);
+        
+        if (indirect) {
+            indirectBuffer = glGenBuffers();
+            glBindBuffer(GL_DRAW_INDIRECT_BUFFER, indirectBuffer);
+            glBufferData(GL_DRAW_INDIRECT_BUFFER, (long) capacity * COMMAND_SIZE * INT_SIZE, GL_STREAM_DRAW);
+            glBindBuffer(GL_DRAW_INDIRECT_BUFFER, 0);
+            
+            //instanced attribute with values 0..capacity, offset by base instance
+            IntBuffer drawIndexes = memAllocInt(capacity);
+            for (int i = 0; i < capacity; ++i) {
+                drawIndexes.put(i, i);
+            }
+            drawIndexBuffer = glGenBuffers();
+            glBindBuffer(GL_ARRAY_BUFFER, drawIndexBuffer);
+            glBufferData(GL_ARRAY_BUFFER, drawIndexes, GL_STATIC_DRAW);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+            memFree(drawIndexes);
+        }
+        LOG.info("Multi draw batch: capacity {}, indirect {}", capacity, indirect);
+    }
+    
+    /**
+     * Register material for drawing by batch, materials of added objects 
+     * are registered automatically
+     * @param material - color material
+     * @return index of material in material buffer
+     */
+    public int addMaterial(ColorMaterial material) {
+        Integer index = materialIndexes.get(material);
+        if (index == null) {
+            index = materials.size();
+            materials.add(material);
+            materialIndexes.put(material, index);
+            materialsDirty = true;
+        }
+        return index;
+    }
+    
+    /**
+     * Start frame, per draw buffer is orphaned and mapped for writing
+     */
+    public void begin() {
+        count = 0;
+        groups.forEach((group) -> group.count = 0);
+        
+        long size = (long) capacity * DRAW_STRIDE * Float.BYTES;
+        glBindBuffer(GL_TEXTURE_BUFFER, drawDataBuffer);
+        ByteBuffer mapped = glMapBufferRange(GL_TEXTURE_BUFFER, 0, size, 
+                GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT);
+        glBindBuffer(GL_TEXTURE_BUFFER, 0);
+        if (mapped == null) {
+            throw new IllegalStateException("Can't map draw data buffer of size " + size);
+        }
+        drawData = memFloatBuffer(memAddress(mapped), capacity * DRAW_STRIDE);
+    }
+    
+    /**
+     * Add object into frame
+     * @param object - object with procedural mesh and color material
+     */
+    public void add(Simple3dObject object) {
+        Mesh3d mesh = object.getMesh();
+        if (!(mesh instanceof AbstractProceduralMesh)) {
+            throw new IllegalArgumentException("Batch draws only procedural meshes " + mesh);
+        }
+        Material material = object.getMaterial();
+        if (!(material instanceof ColorMaterial)) {
+            throw new IllegalArgumentException("Batch draws only color materials " + material);
+        }
+        add((AbstractProceduralMesh) mesh, object.getModelMatrix(), object.getNormalMatrix(), 
+                addMaterial((ColorMaterial) material));
+    }
+    
+    /**
+     * Add draw into frame
+     * @param mesh - initialized procedural mesh
+     * @param modelMatrix - model matrix
+     * @param normalMatrix - normal matrix
+     * @param material - index of registered material
+     */
+    public void add(AbstractProceduralMesh mesh, Matrix4fc modelMatrix, Matrix3fc normalMatrix, int material) {
+        if (count == capacity) {
+            throw new IllegalStateException("Multi draw batch is full, capacity " + capacity);
+        }
+        GeometryPool.Range range = mesh.geometry;
+        int groupIndex = getGroup(range);
+        
+        int offset = count * DRAW_STRIDE;
+        modelMatrix.get(offset, drawData);
+        offset += NORMAL_MATRIX_OFFSET;
+        drawData.put(offset, normalMatrix.m00())
+                .put(offset + 1, normalMatrix.m01())
+                .put(offset + 2, normalMatrix.m02())
+                .put(offset + 3, material)
+                .put(offset + 4, normalMatrix.m10())
+                .put(offset + 5, normalMatrix.m11())
+                .put(offset + 6, normalMatrix.m12())
+                .put(offset + 8, normalMatrix.m20())
+                .put(offset + 9, normalMatrix.m21())
+                .put(offset + 10, normalMatrix.m22());
+        
+        ranges[count] = range;
+        drawGroups[count] = groupIndex;
+        Group group = groups.get(groupIndex);
+        group.range = range;
+        group.count++;
+        count++;
+    }
+    
+    /**
+     * Find group of vertex array of range or create it
+     */
+    private int getGroup(GeometryPool.Range range) {
+        int vertexArray = range.getVertexArray();
+        for (int i = 0; i < groups.size(); ++i) {
+            if (groups.get(i).poolVertexArray == vertexArray) {
+                return i;
+            }
+        }
+        Group group = new Group(vertexArray, range.getIndexType());
+        group.vao = glGenVertexArrays();
+        groups.add(group);
+        return groups.size() - 1;
+    }
+    
+    /**
+     * Draw all added objects
+     * @param program - program with objectShaderMdi.vert, must be in use
+     */
+    public void flush(ProgramGLSL program) {
+        glBindBuffer(GL_TEXTURE_BUFFER, drawDataBuffer);
+        glUnmapBuffer(GL_TEXTURE_BUFFER);
+        glBindBuffer(GL_TEXTURE_BUFFER, 0);
+        drawData = null;
+        if (materialsDirty) {
+            uploadMaterials();
+        }
+        drawCalls = 0;
+        if (count == 0) {
+            return;
+        }
+        
+        GLStateCache stateCache = GLStateCache.getInstance();
+        program.setParam("drawData", DRAW_DATA_UNIT);
+        program.setParam("materialData", MATERIAL_UNIT);
+        stateCache.bindTexture(DRAW_DATA_UNIT, GL_TEXTURE_BUFFER, drawDataTexture);
+        stateCache.bindTexture(MATERIAL_UNIT, GL_TEXTURE_BUFFER, materialTexture);
+        
+        writeCommands();
+        if (indirect) {
+            glBindBuffer(GL_DRAW_INDIRECT_BUFFER, indirectBuffer);
+            int size = count * COMMAND_SIZE * INT_SIZE;
+            ByteBuffer mapped = glMapBufferRange(GL_DRAW_INDIRECT_BUFFER, 0, size, 
+                    GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT);
+            if (mapped == null) {
+                glBindBuffer(GL_DRAW_INDIRECT_BUFFER, 0);
+                throw new IllegalStateException("Can't map indirect buffer of size " + size);
+            }
+            memCopy(memAddress(commands), memAddress(mapped), size);
+            glUnmapBuffer(GL_DRAW_INDIRECT_BUFFER);
+        }
+        
+        for (Group group : groups) {
+            if (group.count == 0) {
+                continue;
+            }
+            bindGroup(group);
+            int indexType = group.indexType;
+            if (indirect) {
+                glMultiDrawElementsIndirect(GL_TRIANGLES, indexType, 
+                        (long) group.firstDraw * COMMAND_SIZE * INT_SIZE, group.count, 0);
+                drawCalls++;
+            } else {
+                int indexSize = VertexFormat.getIndexSize(indexType);
+                int end = group.firstDraw + group.count;
+                for (int i = group.firstDraw; i < end; ++i) {
+                    int command = i * COMMAND_SIZE;
+                    glVertexAttribI1ui(DRAW_INDEX_LOCATION, commands.get(command + 4));
+                    glDrawElementsBaseVertex(GL_TRIANGLES, commands.get(command), indexType, 
+                            (long) commands.get(command + 2) * indexSize, commands.get(command + 3));
+                }
+                drawCalls += group.count;
+            }
+        }
+        if (indirect) {
+            glBindBuffer(GL_DRAW_INDIRECT_BUFFER, 0);
+        }
+        //don't hold meshes between frames
+        Arrays.fill(ranges, 0, count, null);
+        groups.forEach((group) -> group.range = null);
+    }
+    
+    /**
+     * Write commands grouped by vertex array, base instance is index of draw data
+     */
+    private void writeCommands() {
+        int first = 0;
+        for (Group group : groups) {
+            group.firstDraw = first;
+            group.cursor = first;
+            first += group.count;
+        }
+        for (int i = 0; i < count; ++i) {
+            Group group = groups.get(drawGroups[i]);
+            GeometryPool.Range range = ranges[i];
+            int command = group.cursor * COMMAND_SIZE;
+            commands.put(command, range.getIndexCount())
+                    .put(command + 1, 1)
+                    .put(command + 2, range.getFirstIndex())
+                    .put(command + 3, range.getBaseVertex())
+                    .put(command + 4, i);
+            group.cursor++;
+        }
+    }
+    
+    /**
+     * Bind vertex array of group, set it up when pool buffers were replaced
+     */
+    private void bindGroup(Group group) {
+        GeometryPool.Range range = group.range;
+        GLStateCache.getInstance().bindVertexArray(group.vao);
+        if (group.geometryVersion != range.getVersion()) {
+            range.setupAttributes();
+            if (indirect) {
+                glBindBuffer(GL_ARRAY_BUFFER, drawIndexBuffer);
+                glVertexAttribIPointer(DRAW_INDEX_LOCATION, 1, GL_UNSIGNED_INT, 0, 0L);
+                glEnableVertexAttribArray(DRAW_INDEX_LOCATION);
+                glVertexAttribDivisor(DRAW_INDEX_LOCATION, 1);
+            }
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+            group.geometryVersion = range.getVersion();
+        }
+    }
+    
+    private void uploadMaterials() {
+        FloatBuffer data = memAllocFloat(materials.size() * MATERIAL_STRIDE);
+        for (int i = 0; i < materials.size(); ++i) {
+            ColorMaterial material = materials.get(i);
+            int offset = i * MATERIAL_STRIDE;
+            material.getAmbient().get(offset, data);
+            data.put(offset + 3, material.getShininess());
+            material.getDiffuse().get(offset + 4, data);
+            data.put(offset + 7, material.getUseBlinn());
+            material.getSpecular().get(offset + 8, data);
+            data.put(offset + 11, 0.f);
+        }
+        glBindBuffer(GL_TEXTURE_BUFFER, materialBuffer);
+        glBufferData(GL_TEXTURE_BUFFER, data, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_TEXTURE_BUFFER, 0);
+        memFree(data);
+        materialsDirty = false;
+    }
+
+    public boolean isIndirect() {
+        return indirect;
+    }
+
+    public int size() {
+        return count;
+    }
+    
+    /**
+     * @return count of GL draw calls issued by last flush
+     */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    @Override
+    public void delete() {
+        GLStateCache stateCache = GLStateCache.getInstance();
+        if (drawData != null) {
+            glBindBuffer(GL_TEXTURE_BUFFER, drawDataBuffer);
+            glUnmapBuffer(GL_TEXTURE_BUFFER);
+            glBindBuffer(GL_TEXTURE_BUFFER, 0);
+            drawData = null;
+        }
+        for (Group group : groups) {
+            glDeleteVertexArrays(group.vao);
+            stateCache.vertexArrayDeleted(group.vao);
+        }
+        groups.clear();
+        for (int texture : new int[] {drawDataTexture, materialTexture}) {
+            if (texture != 0) {
+                glDeleteTextures(texture);
+                stateCache.textureDeleted(texture);
+            }
+        }
+        for (int buffer : new int[] {drawDataBuffer, materialBuffer, indirectBuffer, drawIndexBuffer}) {
+            if (buffer != 0) {
+                glDeleteBuffers(buffer);
+            }
+        }
+        drawDataTexture = materialTexture = 0;
+        drawDataBuffer = materialBuffer = indirectBuffer = drawIndexBuffer = 0;
+        memFree(commands);
+    }
+    
+    /**
+     * Draws sharing vertex array of pool, drawn by own vertex array 
+     * with draw index attribute
+     */
+    private static final class Group {
+        
+        final int poolVertexArray;
+        final int indexType;
+        int vao;
+        int geometryVersion = -1;
+        
+        //any range of frame for setup of attributes
+        GeometryPool.Range range;
+        //draws of frame
+        int count;
+        int firstDraw;
+        int cursor;
+
+        Group(int poolVertexArray, int indexType) {
+            this.poolVertexArray = poolVertexArray;
+            this.indexType = indexType;
+        }
+    }
+    
+}
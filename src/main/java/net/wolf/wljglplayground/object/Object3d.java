@@ -35,5 +35,25 @@ public interface Object3d extends Deletable {
     void init();
     
     void draw(ProgramGLSL program);
+    
+    /**
+     * Submit draw packet of this object into render queue, 
+     * by default object is drawn by {@link #draw(ProgramGLSL)} in order of program
+     * @param queue - render queue of frame
+     * @param program - GLSL program for drawing
+     */
+    default void submit(RenderQueue queue, ProgramGLSL program) {
+        queue.submit(program, this);
+    }
+    
+    /**
+     * Check that object can be seen by camera, 
+     * invisible objects are skipped before any uniform upload
+     * @param camera - camera with actual frustum
+     * @return false if object is outside of camera frustum
+     */
+    default boolean isVisible(Camera camera) {
+        return true;
+    }
         
 }
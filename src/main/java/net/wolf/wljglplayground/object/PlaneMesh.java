@@ -31,7 +31,7 @@ import org.joml.Vector3f;
  *
  * @author Volchkov Andrey
  */
-public class PlaneMesh extends AbstractProceduralMesh {
+public class PlaneMesh extends AbstractArrayMesh {
 
     private final float length;
     private final float width;
@@ -45,7 +45,11 @@ public class PlaneMesh extends AbstractProceduralMesh {
         this.length = length;
         this.width = width;
     }
-    
+
+    @Override
+    protected String getCacheKey() {
+        return length + ":" + width;
+    }
 
     @Override
     protected Vector3f[] generateVertices() {
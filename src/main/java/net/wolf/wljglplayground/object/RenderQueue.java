@@ -0,0 +1,301 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.util.Arrays;
+import java.util.Objects;
+import net.wolf.wljglplayground.shader.ProgramGLSL;
+import net.wolf.wljglplayground.shader.UniformHandle;
+import org.joml.Matrix3fc;
+import org.joml.Matrix4fc;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+/**
+ * Queue of draw packets, sorted every frame by 64-bit key 
+ * (program, material, mesh, depth) and drawn with changing 
+ * GL state only when it's really changed.
+ * <p>
+ * Usage per frame: {@link #begin(Camera)}, 
+ * {@link Object3d#submit(RenderQueue, ProgramGLSL)} for every object, 
+ * {@link #flush()}. 
+ * Level of {@link LodMesh} is chosen on submit from projected size of object
+ * @author Volchkov Andrey
+ */
+public class RenderQueue {
+    
+    //key layout from high to low bits: program | material | mesh | depth | packet index
+    private static final int INDEX_BITS = 20;
+    private static final int DEPTH_BITS = 12;
+    private static final int MESH_BITS = 12;
+    private static final int MATERIAL_BITS = 12;
+    private static final int PROGRAM_BITS = 8;
+    
+    private static final int DEPTH_SHIFT = INDEX_BITS;
+    private static final int MESH_SHIFT = DEPTH_SHIFT + DEPTH_BITS;
+    private static final int MATERIAL_SHIFT = MESH_SHIFT + MESH_BITS;
+    private static final int PROGRAM_SHIFT = MATERIAL_SHIFT + MATERIAL_BITS;
+    
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+    private static final int MAX_DEPTH = (1 << DEPTH_BITS) - 1;
+    private static final int MAX_PACKETS = 1 << INDEX_BITS;
+    
+    //packets data
+    private long[] keys;
+    private ProgramGLSL[] programs;
+    private Material[] materials;
+    private Mesh3d[] meshes;
+    private Matrix4fc[] modelMatrixes;
+    private Matrix3fc[] normalMatrixes;
+    //objects drawing themselves, null for mesh packets
+    private Object3d[] objects;
+    private int count;
+    
+    //camera position for depth of packets
+    private final Vector3f eye = new Vector3f();
+    private final float depthScale;
+    //projection scale of camera for LOD selection, 0 - LOD is disabled
+    private float lodScale;
+    
+    //statistics of last flush
+    private int programChanges;
+    private int materialChanges;
+    private int meshChanges;
+
+    /**
+     * @param maxDistance - max distance from camera used for depth sorting, 
+     * usually far plane of camera
+     */
+    public RenderQueue(float maxDistance) {
+        this.depthScale = MAX_DEPTH / maxDistance;
+        allocate(256);
+    }
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        programs = new ProgramGLSL[capacity];
+        materials = new Material[capacity];
+        meshes = new Mesh3d[capacity];
+        modelMatrixes = new Matrix4fc[capacity];
+        normalMatrixes = new Matrix3fc[capacity];
+        objects = new Object3d[capacity];
+    }
+    
+    private void grow() {
+        if (keys.length == MAX_PACKETS) {
+            throw new IllegalStateException("Render queue is full, max packets " + MAX_PACKETS);
+        }
+        int capacity = Math.min(keys.length * 2, MAX_PACKETS);
+        keys = Arrays.copyOf(keys, capacity);
+        programs = Arrays.copyOf(programs, capacity);
+        materials = Arrays.copyOf(materials, capacity);
+        meshes = Arrays.copyOf(meshes, capacity);
+        modelMatrixes = Arrays.copyOf(modelMatrixes, capacity);
+        normalMatrixes = Arrays.copyOf(normalMatrixes, capacity);
+        objects = Arrays.copyOf(objects, capacity);
+    }
+    
+    /**
+     * Start collecting packets of new frame, LOD meshes are drawn with the most detailed level
+     * @param eyePosition - camera position
+     */
+    public void begin(Vector3fc eyePosition) {
+        eye.set(eyePosition);
+        lodScale = 0.f;
+        count = 0;
+    }
+    
+    /**
+     * Start collecting packets of new frame with LOD selection
+     * @param camera - camera of frame
+     */
+    public void begin(Camera camera) {
+        begin(camera.getPosition());
+        lodScale = camera.getProjectionScale();
+    }
+    
+    /**
+     * Add draw packet
+     * @param program - GLSL program
+     * @param material - material, can be null
+     * @param mesh - mesh for drawing
+     * @param modelMatrix - model matrix of object
+     * @param normalMatrix - normal matrix of object, can be null
+     */
+    public void submit(ProgramGLSL program, Material material, Mesh3d mesh,
+            Matrix4fc modelMatrix, Matrix3fc normalMatrix) {
+        if (count == keys.length) {
+            grow();
+        }
+        
+        float dx = modelMatrix.m30() - eye.x;
+        float dy = modelMatrix.m31() - eye.y;
+        float dz = modelMatrix.m32() - eye.z;
+        float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        int depth = Math.min((int) (distance * depthScale), MAX_DEPTH);
+        if (lodScale > 0.f && mesh instanceof LodMesh) {
+            mesh = ((LodMesh) mesh).select(getScreenSize(mesh, modelMatrix, distance));
+        }
+        int materialKey = Objects.isNull(material) ? 0 : material.getSortKey();
+        
+        keys[count] = (long) (program.getProgramId() & ((1 << PROGRAM_BITS) - 1)) << PROGRAM_SHIFT
+                | (long) (materialKey & ((1 << MATERIAL_BITS) - 1)) << MATERIAL_SHIFT
+                | (long) (mesh.getSortKey() & ((1 << MESH_BITS) - 1)) << MESH_SHIFT
+                | (long) depth << DEPTH_SHIFT
+                | count;
+        programs[count] = program;
+        materials[count] = material;
+        meshes[count] = mesh;
+        modelMatrixes[count] = modelMatrix;
+        normalMatrixes[count] = normalMatrix;
+        objects[count] = null;
+        count++;
+    }
+    
+    /**
+     * Add packet of object which draws itself by {@link Object3d#draw(ProgramGLSL)} 
+     * (instanced group ...), it is sorted only by program
+     * @param program - GLSL program
+     * @param object - object for drawing
+     */
+    public void submit(ProgramGLSL program, Object3d object) {
+        if (count == keys.length) {
+            grow();
+        }
+        keys[count] = (long) (program.getProgramId() & ((1 << PROGRAM_BITS) - 1)) << PROGRAM_SHIFT
+                | count;
+        programs[count] = program;
+        materials[count] = null;
+        meshes[count] = null;
+        modelMatrixes[count] = null;
+        normalMatrixes[count] = null;
+        objects[count] = object;
+        count++;
+    }
+    
+    /**
+     * @return fraction of viewport height covered by bounding sphere of mesh
+     */
+    private float getScreenSize(Mesh3d mesh, Matrix4fc modelMatrix, float distance) {
+        if (distance <= 0.f) {
+            return Float.MAX_VALUE;
+        }
+        //radius is scaled by largest axis scale
+        float scale = Math.max(modelMatrix.m00() * modelMatrix.m00() 
+                + modelMatrix.m01() * modelMatrix.m01() + modelMatrix.m02() * modelMatrix.m02(),
+                Math.max(modelMatrix.m10() * modelMatrix.m10() 
+                + modelMatrix.m11() * modelMatrix.m11() + modelMatrix.m12() * modelMatrix.m12(),
+                modelMatrix.m20() * modelMatrix.m20() 
+                + modelMatrix.m21() * modelMatrix.m21() + modelMatrix.m22() * modelMatrix.m22()));
+        return mesh.getBounds().getRadius() * (float) Math.sqrt(scale) * lodScale / distance;
+    }
+    
+    /**
+     * Sort and draw all packets of frame
+     */
+    public void flush() {
+        Arrays.sort(keys, 0, count);
+        
+        programChanges = materialChanges = meshChanges = 0;
+        ProgramGLSL currProgram = null;
+        Material currMaterial = null;
+        Mesh3d currMesh = null;
+        UniformHandle modelMatrixUniform = null;
+        UniformHandle normalMatrixUniform = null;
+        
+        for (int i = 0; i < count; ++i) {
+            int index = (int) (keys[i] & INDEX_MASK);
+            
+            ProgramGLSL program = programs[index];
+            if (program != currProgram) {
+                program.use();
+                modelMatrixUniform = program.getUniform("modelMatrix");
+                normalMatrixUniform = program.getUniform("normalMatrix");
+                currProgram = program;
+                //material uniforms must be set for new program
+                currMaterial = null;
+                programChanges++;
+            }
+            
+            Object3d object = objects[index];
+            if (Objects.nonNull(object)) {
+                object.draw(program);
+                //object sets own material and vertex array
+                currMaterial = null;
+                currMesh = null;
+                continue;
+            }
+            
+            Material material = materials[index];
+            if (material != currMaterial) {
+                if (Objects.nonNull(material)) {
+                    material.apply(program);
+                    material.use();
+                }
+                currMaterial = material;
+                materialChanges++;
+            }
+            
+            Mesh3d mesh = meshes[index];
+            if (mesh != currMesh) {
+                mesh.bind();
+                currMesh = mesh;
+                meshChanges++;
+            }
+            
+            program.setParam(modelMatrixUniform, modelMatrixes[index]);
+            if (Objects.nonNull(normalMatrixes[index])) {
+                program.setParam(normalMatrixUniform, normalMatrixes[index]);
+            }
+            mesh.drawBound();
+        }
+        //don't hold objects between frames
+        Arrays.fill(programs, 0, count, null);
+        Arrays.fill(materials, 0, count, null);
+        Arrays.fill(meshes, 0, count, null);
+        Arrays.fill(modelMatrixes, 0, count, null);
+        Arrays.fill(normalMatrixes, 0, count, null);
+        Arrays.fill(objects, 0, count, null);
+    }
+
+    /**
+     * @return count of packets in last frame
+     */
+    public int size() {
+        return count;
+    }
+
+    public int getProgramChanges() {
+        return programChanges;
+    }
+
+    public int getMaterialChanges() {
+        return materialChanges;
+    }
+
+    public int getMeshChanges() {
+        return meshChanges;
+    }
+    
+}
@@ -0,0 +1,354 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.joml.FrustumIntersection;
+import org.joml.Intersectionf;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+/**
+ * Loose octree over world bounds of objects.
+ * Every node has loose bounds twice bigger than its cell, so an object 
+ * is stored in the deepest node where its bounding sphere fits and 
+ * never has to be split between children. 
+ * Objects update own position in tree when they are moved.
+ * @author Volchkov Andrey
+ */
+public class SceneOctree {
+    
+    //loose bounds = cell half size * LOOSENESS
+    private static final float LOOSENESS = 2.0f;
+    
+    private final Node root;
+    //objects which don't fit into root, they are always tested one by one
+    private final Node outside;
+    private final int maxDepth;
+    
+    //scratch for queries
+    private final Vector3f nodeMin = new Vector3f();
+    private final Vector3f nodeMax = new Vector3f();
+    private final Vector2f rayNearFar = new Vector2f();
+    private final Pick pick = new Pick();
+
+    /**
+     * Create octree
+     * @param center - center of world
+     * @param halfSize - half size of world cube, objects outside of it are kept in root
+     * @param maxDepth - maximal depth of tree
+     */
+    public SceneOctree(Vector3fc center, float halfSize, int maxDepth) {
+        this.root = new Node(null, center.x(), center.y(), center.z(), halfSize, 0);
+        this.outside = new Node(null, center.x(), center.y(), center.z(), halfSize, 0);
+        this.maxDepth = maxDepth;
+    }
+    
+    /**
+     * Insert object into tree
+     * @param object - object, it must not be in other tree
+     */
+    public void insert(Simple3dObject object) {
+        if (object.octree != null) {
+            throw new IllegalArgumentException("Object is already in octree");
+        }
+        object.octree = this;
+        insert(findNode(object, true), object);
+    }
+    
+    /**
+     * Remove object from tree
+     * @param object - object of this tree
+     */
+    public void remove(Simple3dObject object) {
+        if (object.octree != this) {
+            throw new IllegalArgumentException("Object is not in this octree");
+        }
+        remove(object.octreeNode, object);
+        object.octree = null;
+    }
+    
+    /**
+     * Move object into node matching its new bounds, 
+     * called by object on every transform change
+     */
+    void update(Simple3dObject object) {
+        Node current = object.octreeNode;
+        if (findNode(object, false) == current) {
+            return;
+        }
+        //target is searched after removing, pruning must not detach it
+        remove(current, object);
+        insert(findNode(object, true), object);
+    }
+    
+    /**
+     * @return count of objects in tree
+     */
+    public int size() {
+        return root.count + outside.count;
+    }
+    
+    /**
+     * Collect objects inside of camera frustum. Nodes fully inside of 
+     * frustum are collected without testing of their objects
+     * @param camera - camera with actual frustum
+     * @param result - list for visible objects, it isn't cleared
+     * @return count of added objects
+     */
+    public int queryVisible(Camera camera, List<? super Simple3dObject> result) {
+        int before = result.size();
+        testObjects(outside, camera, result);
+        queryVisible(root, camera.getFrustum(), camera, result);
+        return result.size() - before;
+    }
+    
+    private void queryVisible(Node node, FrustumIntersection frustum, 
+            Camera camera, List<? super Simple3dObject> result) {
+        if (node.count == 0) {
+            return;
+        }
+        node.looseBounds(nodeMin, nodeMax);
+        int intersect = frustum.intersectAab(nodeMin, nodeMax);
+        if (intersect == FrustumIntersection.INSIDE) {
+            collectAll(node, result);
+            return;
+        }
+        if (intersect != FrustumIntersection.INTERSECT) {
+            //outside, result is index of culling plane
+            return;
+        }
+        testObjects(node, camera, result);
+        if (node.children != null) {
+            for (Node child : node.children) {
+                if (child != null) {
+                    queryVisible(child, frustum, camera, result);
+                }
+            }
+        }
+    }
+    
+    private void testObjects(Node node, Camera camera, List<? super Simple3dObject> result) {
+        List<Simple3dObject> objects = node.objects;
+        for (int i = 0, size = objects.size(); i < size; ++i) {
+            Simple3dObject object = objects.get(i);
+            if (object.isVisible(camera)) {
+                result.add(object);
+            }
+        }
+    }
+    
+    private void collectAll(Node node, List<? super Simple3dObject> result) {
+        if (node.count == 0) {
+            return;
+        }
+        result.addAll(node.objects);
+        if (node.children != null) {
+            for (Node child : node.children) {
+                if (child != null) {
+                    collectAll(child, result);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Find nearest object hit by ray
+     * @param origin - origin of ray
+     * @param direction - direction of ray
+     * @return nearest object or null if ray hits nothing
+     */
+    public Simple3dObject pick(Vector3fc origin, Vector3fc direction) {
+        pick.object = null;
+        pick.distance = Float.POSITIVE_INFINITY;
+        pickObjects(outside, origin, direction, pick);
+        pick(root, origin, direction, pick);
+        Simple3dObject result = pick.object;
+        pick.object = null;
+        return result;
+    }
+    
+    private void pick(Node node, Vector3fc origin, Vector3fc direction, Pick pick) {
+        if (node.count == 0) {
+            return;
+        }
+        node.looseBounds(nodeMin, nodeMax);
+        if (!Intersectionf.intersectRayAab(origin, direction, nodeMin, nodeMax, rayNearFar)
+                || rayNearFar.x > pick.distance) {
+            return;
+        }
+        pickObjects(node, origin, direction, pick);
+        if (node.children != null) {
+            for (Node child : node.children) {
+                if (child != null) {
+                    pick(child, origin, direction, pick);
+                }
+            }
+        }
+    }
+    
+    private void pickObjects(Node node, Vector3fc origin, Vector3fc direction, Pick pick) {
+        List<Simple3dObject> objects = node.objects;
+        for (int i = 0, size = objects.size(); i < size; ++i) {
+            Simple3dObject object = objects.get(i);
+            if (Intersectionf.intersectRayAab(origin, direction, 
+                    object.getBoundsMin(), object.getBoundsMax(), rayNearFar)) {
+                float distance = Math.max(rayNearFar.x, 0.0f);
+                if (distance < pick.distance) {
+                    pick.distance = distance;
+                    pick.object = object;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Find deepest node where bounding sphere of object fits
+     * @param create - create missing nodes on the way
+     * @return target node, null if it doesn't exist and create is false
+     */
+    private Node findNode(Simple3dObject object, boolean create) {
+        Vector3fc center = object.getBoundsCenter();
+        float radius = object.getBoundsRadius();
+        Node node = root;
+        if (!node.contains(center, radius)) {
+            return outside;
+        }
+        //center in loose margin of root fits into no child
+        while (node.depth < maxDepth && node.cellContains(center)) {
+            float childHalf = node.halfSize * 0.5f;
+            //loose child bounds have extra childHalf around the cell
+            if (radius > childHalf * (LOOSENESS - 1.0f)) {
+                break;
+            }
+            int index = node.childIndex(center);
+            if (!create && (node.children == null || node.children[index] == null)) {
+                return null;
+            }
+            node = node.child(index);
+        }
+        return node;
+    }
+    
+    private void insert(Node node, Simple3dObject object) {
+        node.objects.add(object);
+        object.octreeNode = node;
+        for (Node n = node; n != null; n = n.parent) {
+            n.count++;
+        }
+    }
+    
+    private void remove(Node node, Simple3dObject object) {
+        node.objects.remove(object);
+        object.octreeNode = null;
+        for (Node n = node; n != null; n = n.parent) {
+            n.count--;
+        }
+        //drop empty branches
+        while (node.parent != null && node.count == 0) {
+            node.parent.children[node.index] = null;
+            node = node.parent;
+        }
+    }
+    
+    /**
+     * Nearest hit of ray picking
+     */
+    private static final class Pick {
+        private Simple3dObject object;
+        private float distance = Float.POSITIVE_INFINITY;
+    }
+    
+    /**
+     * Node of tree
+     */
+    static final class Node {
+        private final Node parent;
+        private final float x;
+        private final float y;
+        private final float z;
+        private final float halfSize;
+        private final int depth;
+        //index in children of parent
+        private int index;
+        private Node[] children;
+        private final List<Simple3dObject> objects = new ArrayList<>(2);
+        //count of objects in subtree
+        private int count;
+
+        private Node(Node parent, float x, float y, float z, float halfSize, int depth) {
+            this.parent = parent;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.halfSize = halfSize;
+            this.depth = depth;
+        }
+        
+        private int childIndex(Vector3fc point) {
+            return (point.x() >= x ? 1 : 0) 
+                    | (point.y() >= y ? 2 : 0) 
+                    | (point.z() >= z ? 4 : 0);
+        }
+        
+        private Node child(int i) {
+            if (children == null) {
+                children = new Node[8];
+            }
+            if (children[i] == null) {
+                float h = halfSize * 0.5f;
+                Node child = new Node(this, 
+                        x + ((i & 1) != 0 ? h : -h), 
+                        y + ((i & 2) != 0 ? h : -h), 
+                        z + ((i & 4) != 0 ? h : -h), 
+                        h, depth + 1);
+                child.index = i;
+                children[i] = child;
+            }
+            return children[i];
+        }
+        
+        private boolean cellContains(Vector3fc point) {
+            return Math.abs(point.x() - x) <= halfSize 
+                    && Math.abs(point.y() - y) <= halfSize 
+                    && Math.abs(point.z() - z) <= halfSize;
+        }
+        
+        private boolean contains(Vector3fc center, float radius) {
+            float loose = halfSize * LOOSENESS - radius;
+            return Math.abs(center.x() - x) <= loose 
+                    && Math.abs(center.y() - y) <= loose 
+                    && Math.abs(center.z() - z) <= loose;
+        }
+        
+        private void looseBounds(Vector3f min, Vector3f max) {
+            float loose = halfSize * LOOSENESS;
+            min.set(x - loose, y - loose, z - loose);
+            max.set(x + loose, y + loose, z + loose);
+        }
+    }
+    
+}
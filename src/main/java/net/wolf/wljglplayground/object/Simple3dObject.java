@@ -25,10 +25,14 @@ package net.wolf.wljglplayground.object;
 
 import java.util.Objects;
 import net.wolf.wljglplayground.shader.ProgramGLSL;
+import net.wolf.wljglplayground.shader.UniformHandle;
 import org.joml.Matrix3f;
+import org.joml.Matrix3fc;
 import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 
 /**
  *
@@ -39,6 +43,28 @@ public class Simple3dObject implements Object3d {
     private final Mesh3d mesh;
     private final Matrix4f modelMatrix;
     private final Material material;
+    
+    //cached inverse transpose of model matrix
+    private final Matrix3f normalMatrix = new Matrix3f();
+    private boolean normalDirty = true;
+    //model matrix has only rotation and translation
+    private boolean rigid;
+    
+    //world bounds, recomputed only when model matrix was changed
+    private final Vector3f boundsCenter = new Vector3f();
+    private final Vector3f boundsMin = new Vector3f();
+    private final Vector3f boundsMax = new Vector3f();
+    private float boundsRadius;
+    private boolean boundsDirty = true;
+    
+    //scene index and its node containing this object
+    SceneOctree octree;
+    SceneOctree.Node octreeNode;
+    
+    //uniforms resolved for last drawing program
+    private ProgramGLSL uniformsProgram;
+    private UniformHandle modelMatrixUniform;
+    private UniformHandle normalMatrixUniform;
 
     public Simple3dObject(Mesh3d mesh, Vector3f position, Material material) {
         this.mesh = mesh;
@@ -46,12 +72,30 @@ public class Simple3dObject implements Object3d {
                 .identity()
                 .translate(position);
         this.material = material;
+        this.rigid = true;
     }
 
     public Simple3dObject(Mesh3d mesh, Matrix4f modelMatrix, Material material) {
         this.mesh = mesh;
         this.modelMatrix = new Matrix4f(modelMatrix);
         this.material = material;
+        this.rigid = isRigid(modelMatrix);
+    }
+    
+    /**
+     * Check that upper 3x3 of matrix is orthonormal (no scale and shear)
+     */
+    private static boolean isRigid(Matrix4fc m) {
+        final float eps = 1E-5f;
+        float c0 = m.m00() * m.m00() + m.m01() * m.m01() + m.m02() * m.m02();
+        float c1 = m.m10() * m.m10() + m.m11() * m.m11() + m.m12() * m.m12();
+        float c2 = m.m20() * m.m20() + m.m21() * m.m21() + m.m22() * m.m22();
+        float d01 = m.m00() * m.m10() + m.m01() * m.m11() + m.m02() * m.m12();
+        float d02 = m.m00() * m.m20() + m.m01() * m.m21() + m.m02() * m.m22();
+        float d12 = m.m10() * m.m20() + m.m11() * m.m21() + m.m12() * m.m22();
+        return Math.abs(c0 - 1.0f) < eps && Math.abs(c1 - 1.0f) < eps 
+                && Math.abs(c2 - 1.0f) < eps && Math.abs(d01) < eps 
+                && Math.abs(d02) < eps && Math.abs(d12) < eps;
     }
 
     @Override
@@ -72,16 +116,106 @@ public class Simple3dObject implements Object3d {
         }
         mesh.draw();
     }
+
+    /**
+     * Test bounding sphere first and then world AABB of mesh
+     */
+    @Override
+    public boolean isVisible(Camera camera) {
+        updateBounds();
+        return camera.isVisible(boundsCenter, boundsRadius) 
+                && camera.isVisible(boundsMin, boundsMax);
+    }
+    
+    private void updateBounds() {
+        if (boundsDirty) {
+            BoundingVolume bounds = mesh.getBounds();
+            modelMatrix.transformPosition(bounds.getCenter(), boundsCenter);
+            boundsRadius = bounds.getRadius();
+            if (!rigid) {
+                //scale radius by largest axis scale
+                modelMatrix.getScale(boundsMin);
+                boundsRadius *= Math.max(boundsMin.x, Math.max(boundsMin.y, boundsMin.z));
+            }
+            modelMatrix.transformAab(bounds.getMin(), bounds.getMax(), boundsMin, boundsMax);
+            boundsDirty = false;
+        }
+    }
+
+    /**
+     * Mark world bounds as changed and move object in scene index
+     */
+    private void boundsChanged() {
+        boundsDirty = true;
+        if (octree != null) {
+            octree.update(this);
+        }
+    }
+    
+    public Vector3fc getBoundsCenter() {
+        updateBounds();
+        return boundsCenter;
+    }
+    
+    public float getBoundsRadius() {
+        updateBounds();
+        return boundsRadius;
+    }
+    
+    public Vector3fc getBoundsMin() {
+        updateBounds();
+        return boundsMin;
+    }
+    
+    public Vector3fc getBoundsMax() {
+        updateBounds();
+        return boundsMax;
+    }
+
+    @Override
+    public void submit(RenderQueue queue, ProgramGLSL program) {
+        queue.submit(program, material, mesh, modelMatrix, getNormalMatrix());
+    }
     
     private void applyMatrixes(ProgramGLSL program) {
-        program.setParam("modelMatrix", modelMatrix);
-        Matrix4f normalMatrix = new Matrix4f(modelMatrix)
-                .invert()
-                .transpose();
-        Matrix3f normMatrix = new Matrix3f(normalMatrix);
-        program.setParam("normalMatrix", normMatrix);
+        if (program != uniformsProgram) {
+            modelMatrixUniform = program.getUniform("modelMatrix");
+            normalMatrixUniform = program.getUniform("normalMatrix");
+            uniformsProgram = program;
+        }
+        program.setParam(modelMatrixUniform, modelMatrix);
+        program.setParam(normalMatrixUniform, getNormalMatrix());
 
     }    
+    
+    public Mesh3d getMesh() {
+        return mesh;
+    }
+
+    public Material getMaterial() {
+        return material;
+    }
+    
+    public Matrix4fc getModelMatrix() {
+        return modelMatrix;
+    }
+    
+    /**
+     * Normal matrix, recomputed only when rotation of object was changed
+     * @return inverse transpose of upper 3x3 of model matrix
+     */
+    public Matrix3fc getNormalMatrix() {
+        if (normalDirty) {
+            if (rigid) {
+                //inverse transpose of rotation is rotation itself
+                modelMatrix.get3x3(normalMatrix);
+            } else {
+                modelMatrix.normal(normalMatrix);
+            }
+            normalDirty = false;
+        }
+        return normalMatrix;
+    }
 
     @Override
     public void delete() {
@@ -90,26 +224,36 @@ public class Simple3dObject implements Object3d {
 
     public void translate(Vector3f pos) {
         modelMatrix.translate(pos);
+        boundsChanged();
     }
 
     public void setPosition(Vector3f pos) {
         modelMatrix.setTranslation(pos);
+        boundsChanged();
     }
 
     public void rotate(Quaternionf quat) {
         modelMatrix.rotate(quat);
+        normalDirty = true;
+        boundsChanged();
     }
 
     public void rotateX(float angle) {
         modelMatrix.rotateX((float) Math.toRadians(angle));
+        normalDirty = true;
+        boundsChanged();
     }
 
     public void rotateY(float angle) {
         modelMatrix.rotateY((float) Math.toRadians(angle));
+        normalDirty = true;
+        boundsChanged();
     }
 
     public void rotateZ(float angle) {
         modelMatrix.rotateZ((float) Math.toRadians(angle));
+        normalDirty = true;
+        boundsChanged();
     }
 
 }
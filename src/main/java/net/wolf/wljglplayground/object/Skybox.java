@@ -23,53 +23,37 @@
  */
 package net.wolf.wljglplayground.object;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.FloatBuffer;
-import static net.wolf.wljglplayground.object.Mesh3d.FLOAT_SIZE;
 import static net.wolf.wljglplayground.object.Mesh3d.TRIANGLE_VERTEXES;
 import net.wolf.wljglplayground.shader.ProgramGLSL;
 import net.wolf.wljglplayground.util.Deletable;
+import net.wolf.wljglplayground.util.GLStateCache;
 import net.wolf.wljglplayground.util.ImageData;
-import net.wolf.wljglplayground.util.TextureDataLoader;
-import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import net.wolf.wljglplayground.util.Resource;
+import net.wolf.wljglplayground.util.ResourceProvider;
+import net.wolf.wljglplayground.util.TextureLoader;
 import static org.lwjgl.opengl.GL11.GL_LINEAR;
 import static org.lwjgl.opengl.GL11.GL_TEXTURE_MAG_FILTER;
 import static org.lwjgl.opengl.GL11.GL_TEXTURE_MIN_FILTER;
 import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_S;
 import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_T;
-import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
-import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
-import static org.lwjgl.opengl.GL11.glBindTexture;
 import static org.lwjgl.opengl.GL11.glDeleteTextures;
-import static org.lwjgl.opengl.GL11.glDepthMask;
-import static org.lwjgl.opengl.GL11.glDrawArrays;
 import static org.lwjgl.opengl.GL11.glTexParameteri;
 import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
 import static org.lwjgl.opengl.GL12.GL_TEXTURE_WRAP_R;
 import static org.lwjgl.opengl.GL13.GL_TEXTURE_CUBE_MAP;
 import static org.lwjgl.opengl.GL13.GL_TEXTURE_CUBE_MAP_POSITIVE_X;
 import static org.lwjgl.opengl.GL11.glGenTextures;
-import static org.lwjgl.opengl.GL11.glTexImage2D;
-import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
-import static org.lwjgl.opengl.GL13.glActiveTexture;
-import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
-import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
-import static org.lwjgl.opengl.GL15.glBindBuffer;
-import static org.lwjgl.opengl.GL15.glBufferData;
-import static org.lwjgl.opengl.GL15.glGenBuffers;
-import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
-import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
-import static org.lwjgl.opengl.GL30.glBindVertexArray;
-import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
-import static org.lwjgl.opengl.GL30.glGenVertexArrays;
-import org.lwjgl.system.MemoryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  *
  * @author Volchkov Andrey
  */
 public class Skybox implements Deletable {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(Skybox.class);
 
     //Cube positions == texture positions 
     final static float[] SKYBOX_VERTS = {
@@ -117,27 +101,39 @@ public class Skybox implements Deletable {
     };
 
     private int tex;
-    private int vao;
-    private int vbo;
+    //cube in shared buffers of GeometryPool
+    private GeometryPool.Range geometry;
     private final String[] textureFiles;
 
     public Skybox(String... textureFiles) {
         this.textureFiles = textureFiles;
     }
 
+    /**
+     * Allocate skybox geometry in pool and start asynchronous loading 
+     * of cube map faces, all faces are decoded in parallel
+     * @throws IOException 
+     */
     public void load() throws IOException {
-        TextureDataLoader textureDataLoader = TextureDataLoader.getInstance();
+        TextureLoader textureLoader = TextureLoader.getInstance();
+        ResourceProvider resources = ResourceProvider.getDefault();
+        GLStateCache stateCache = GLStateCache.getInstance();
 
         tex = glGenTextures();
-        glBindTexture(GL_TEXTURE_CUBE_MAP, tex);
+        stateCache.bindTexture(GL_TEXTURE_CUBE_MAP, tex);
 
         for (int i = 0; i < 6; i++) {
-            File imageFile = new File(Skybox.class.getResource(textureFiles[i]).getFile());
-            try (ImageData imageData = textureDataLoader.loadImageData(imageFile);) {
-                glTexImage2D(GL_TEXTURE_CUBE_MAP_POSITIVE_X + i, 0, imageData.getGlType(),
-                        imageData.getWidth(), imageData.getHeight(), 0, imageData.getGlType(),
-                        GL_UNSIGNED_BYTE, imageData.getData());
+            final Resource imageFile = resources.find(textureFiles[i]);
+            if (imageFile == null) {
+                throw new IOException("Skybox texture not found " + textureFiles[i]);
             }
+            final int face = GL_TEXTURE_CUBE_MAP_POSITIVE_X + i;
+            //faces are sampled without mipmaps
+            textureLoader.load(imageFile, false, (imageData) -> uploadFace(face, imageData))
+                    .exceptionally((ex) -> {
+                        LOG.error("Error loading skybox texture " + imageFile, ex);
+                        return null;
+                    });
         }
 
         //texture parameters
@@ -147,59 +143,68 @@ public class Skybox implements Deletable {
         //texture filtering
         glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
         glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
-        glBindTexture(GL_TEXTURE_CUBE_MAP, 0);
-        
-        FloatBuffer data = MemoryUtil.memAllocFloat(SKYBOX_VERTS.length);
-        data.put(SKYBOX_VERTS);
-        data.flip();    
-        
-         //generate GL buffers
-        vao = glGenVertexArrays();
-        vbo = glGenBuffers();
-
-        glBindVertexArray(vao);        
-        //send data to GPU
-        glBindBuffer(GL_ARRAY_BUFFER, vbo);
-        glBufferData(GL_ARRAY_BUFFER, data, GL_STATIC_DRAW);
+        stateCache.bindTexture(GL_TEXTURE_CUBE_MAP, 0);
         
-        //setup vertexes
-        glVertexAttribPointer(0, TRIANGLE_VERTEXES, GL_FLOAT, false, 3 * FLOAT_SIZE, 0L);
-        glEnableVertexAttribArray(0);
-
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glBindVertexArray(0);
-        
-        MemoryUtil.memFree(data);
-
+        //only positions are used by skybox shader
+        int vertexCount = SKYBOX_VERTS.length / TRIANGLE_VERTEXES;
+        MeshBuilder builder = new MeshBuilder();
+        try {
+            builder.begin(vertexCount, vertexCount);
+            for (int i = 0; i < vertexCount; ++i) {
+                builder.position(i, SKYBOX_VERTS[i * 3], SKYBOX_VERTS[i * 3 + 1], SKYBOX_VERTS[i * 3 + 2]);
+                builder.index(i, i);
+            }
+            if (MeshOptimizer.isEnabled()) {
+                //corners are welded to 8 vertices
+                MeshOptimizer.optimize(builder, "Skybox");
+            }
+            geometry = GeometryPool.getInstance().allocate(VertexFormat.getDefault(), builder);
+        } finally {
+            builder.delete();
+        }
     }
 
+    /**
+     * Upload decoded face of cube map, called on render thread
+     */
+    private Void uploadFace(int face, ImageData imageData) {
+        if (tex == 0) {
+            //deleted before loading
+            return null;
+        }
+        GLStateCache stateCache = GLStateCache.getInstance();
+        stateCache.bindTexture(GL_TEXTURE_CUBE_MAP, tex);
+        TextureLoader.getInstance().getPixelBuffers()
+                .texImage2D(face, 0, imageData);
+        stateCache.bindTexture(GL_TEXTURE_CUBE_MAP, 0);
+        return null;
+    }
     
     public void draw(ProgramGLSL program) {
-        glDepthMask(false);
+        GLStateCache stateCache = GLStateCache.getInstance();
+        stateCache.depthMask(false);
 
-        glBindVertexArray(vao);
+        geometry.bind();
         
-        glActiveTexture(GL_TEXTURE0);
         program.setParam("skybox", 0);
-        glBindTexture(GL_TEXTURE_CUBE_MAP, tex);
-        
-        glDrawArrays(GL_TRIANGLES, 0, SKYBOX_VERTS.length / 3);
+        stateCache.bindTexture(0, GL_TEXTURE_CUBE_MAP, tex);
         
-        glBindVertexArray(0);
+        geometry.drawBound();
         
-        glDepthMask(true);
+        stateCache.depthMask(true);
     }
 
     @Override
     public void delete() {
-        if (vao != 0) {
-            glDeleteVertexArrays(vao);
-        }
-        if (vbo != 0) {
-            glDeleteVertexArrays(vbo);
+        GLStateCache stateCache = GLStateCache.getInstance();
+        if (geometry != null) {
+            geometry.free();
+            geometry = null;
         }
         if (tex != 0) {
             glDeleteTextures(tex);
+            stateCache.textureDeleted(tex);
+            tex = 0;
         }
     }
 }
@@ -23,8 +23,6 @@
  */
 package net.wolf.wljglplayground.object;
 
-import org.joml.Vector2f;
-import org.joml.Vector3f;
 
 /**
  *
@@ -44,73 +42,52 @@ public class SphereMesh extends AbstractProceduralMesh {
     }
 
     @Override
-    protected Vector3f[] generateVertices() {
-        //generate Vertices
-        Vector3f[] vertices = new Vector3f[(lngC + 1) * latC + 2];
+    protected String getCacheKey() {
+        return radius + ":" + lngC + ":" + latC;
+    }
+
+    @Override
+    protected void build(MeshBuilder builder) {
+        int vertices = (lngC + 1) * latC + 2;
+        //top and bottom fans and two triangles for every quad of middle
+        int triangles = lngC * 2 * latC;
+        builder.begin(vertices, triangles * 3);
+        
         float pi = (float) Math.PI;
         float pi2 = pi * 2.f;
+        //sin and cos of longitudes are same for all latitudes
+        float[] sinLng = new float[lngC + 1];
+        float[] cosLng = new float[lngC + 1];
+        for (int lon = 0; lon <= lngC; lon++) {
+            float a2 = pi2 * (float) (lon == lngC ? 0 : lon) / (float) lngC;
+            sinLng[lon] = (float) Math.sin(a2);
+            cosLng[lon] = (float) Math.cos(a2);
+        }
 
-        vertices[0] = new Vector3f(0.f, 1.f, 0.0f).mul(radius);
+        //poles
+        builder.vertex(0, 0.f, radius, 0.f, 0.f, 1.f, 0.f, 0.f, 1.f);
+        builder.vertex(vertices - 1, 0.f, -radius, 0.f, 0.f, -1.f, 0.f, 0.f, 0.f);
         for (int lat = 0; lat < latC; lat++) {
             float a1 = pi * (float) (lat + 1) / (float) (latC + 1);
             float sin1 = (float) Math.sin(a1);
             float cos1 = (float) Math.cos(a1);
+            float v = 1.0f - (float) (lat + 1) / (float) (latC + 1);
 
             for (int lon = 0; lon <= lngC; lon++) {
-                float a2 = pi2 * (float) (lon == lngC ? 0 : lon) / (float) lngC;
-                float sin2 = (float) Math.sin(a2);
-                float cos2 = (float) Math.cos(a2);
-
-                vertices[lon + lat * (lngC + 1) + 1] = new Vector3f(sin1 * cos2, cos1, sin1 * sin2)
-                        .mul(radius);
+                //unit direction is normal
+                float nx = sin1 * cosLng[lon];
+                float nz = sin1 * sinLng[lon];
+                builder.vertex(lon + lat * (lngC + 1) + 1, 
+                        nx * radius, cos1 * radius, nz * radius, 
+                        nx, cos1, nz, 
+                        (float) lon / (float) lngC, v);
             }
         }
-        vertices[vertices.length - 1] = new Vector3f(0.f, 1.f, 0.0f).mul(-radius);
-        
-        return vertices;
-    }
-    
-    @Override
-    protected Vector3f[] generateNormals(Vector3f[] vertices) {
-         //generate normals
-        Vector3f[] normales = new Vector3f[vertices.length];
-        for (int n = 0; n < vertices.length; n++) {
-            normales[n] = new Vector3f(vertices[n]).normalize();
-        }
-        return normales;
-    }
-    
-    @Override
-    protected Vector2f[] generateUVs(int vertices) {
-        //generate UV coords
-        Vector2f[] uvs = new Vector2f[vertices];
-        uvs[0] = new Vector2f(0.f, 1.f); // up
-        uvs[uvs.length - 1] = new Vector2f().zero();
-        for (int lat = 0; lat < latC; lat++) {
-            for (int lon = 0; lon <= lngC; lon++) {
-                uvs[lon + lat * (lngC + 1) + 1]
-                        = new Vector2f((float) lon / (float) lngC,
-                                1.0f - (float) (lat + 1) / (float) (latC + 1));
-            }
-        }
-        
-        return uvs;
-    }
-    
-    @Override
-    protected int[] createTrianglesIndexes(int vertices) {
-        int faces = vertices;
-        int triangles = faces * 2;
-        indexCount = triangles * 3;
-        int[] indexes = new int[indexCount];
-
 
         //top
-        int i = 0;
+        int t = 0;
         for (int lon = 0; lon < lngC; lon++) {
-            indexes[i++] = lon + 2;
-            indexes[i++] = lon + 1;
-            indexes[i++] = 0;
+            builder.triangle(t++, lon + 2, lon + 1, 0);
         }
 
         //middle
@@ -119,24 +96,15 @@ public class SphereMesh extends AbstractProceduralMesh {
                 int current = lon + lat * (lngC + 1) + 1;
                 int next = current + lngC + 1;
 
-                indexes[i++] = current;
-                indexes[i++] = current + 1;
-                indexes[i++] = next + 1;
-
-                indexes[i++] = current;
-                indexes[i++] = next + 1;
-                indexes[i++] = next;
+                builder.triangle(t++, current, current + 1, next + 1);
+                builder.triangle(t++, current, next + 1, next);
             }
         }
 
         //bottom
         for (int lon = 0; lon < lngC; lon++) {
-            indexes[i++] = vertices - 1;
-            indexes[i++] = vertices - (lon + 2) - 1;
-            indexes[i++] = vertices - (lon + 1) - 1;
+            builder.triangle(t++, vertices - 1, vertices - (lon + 2) - 1, vertices - (lon + 1) - 1);
         }
-        
-        return indexes;
     }
 
 }
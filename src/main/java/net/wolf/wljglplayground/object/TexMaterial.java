@@ -25,11 +25,8 @@ package net.wolf.wljglplayground.object;
 
 import java.util.Objects;
 import net.wolf.wljglplayground.shader.ProgramGLSL;
+import net.wolf.wljglplayground.util.GLStateCache;
 import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
-import static org.lwjgl.opengl.GL11.glBindTexture;
-import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
-import static org.lwjgl.opengl.GL13.GL_TEXTURE1;
-import static org.lwjgl.opengl.GL13.glActiveTexture;
 
 /**
  *
@@ -52,14 +49,18 @@ public class TexMaterial implements Material {
     @Override
     public void apply(ProgramGLSL program) {
         program.setParam("shininess", shininess);        
-        glActiveTexture(GL_TEXTURE0);
-        glBindTexture(GL_TEXTURE_2D, diffuse.getGLId());
+        GLStateCache stateCache = GLStateCache.getInstance();
+        stateCache.bindTexture(0, GL_TEXTURE_2D, diffuse.getGLId());
         program.setParam("textureDiffuse", 0);        
-        glActiveTexture(GL_TEXTURE1);
-        glBindTexture(GL_TEXTURE_2D, specular.getGLId());
+        stateCache.bindTexture(1, GL_TEXTURE_2D, specular.getGLId());
         program.setParam("textureSpecular", 1);        
     }
 
+    @Override
+    public int getSortKey() {
+        return diffuse.getGLId() * 31 + specular.getGLId();
+    }
+
     @Override
     public void use() {
         
@@ -67,11 +68,12 @@ public class TexMaterial implements Material {
 
     @Override
     public void delete() {
+        //textures are shared with other materials
         if (Objects.nonNull(diffuse)) {
-            diffuse.delete();
+            diffuse.release();
         }
         if (Objects.nonNull(specular)) {
-            specular.delete();
+            specular.release();
         }
     }
     
@@ -23,31 +23,30 @@
  */
 package net.wolf.wljglplayground.object;
 
-import java.io.File;
 import java.io.IOException;
-import java.net.URI;
-import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import net.wolf.wljglplayground.util.Deletable;
+import net.wolf.wljglplayground.util.GLStateCache;
 import net.wolf.wljglplayground.util.ImageData;
-import net.wolf.wljglplayground.util.TextureDataLoader;
+import net.wolf.wljglplayground.util.PixelBufferRing;
+import net.wolf.wljglplayground.util.Resource;
+import net.wolf.wljglplayground.util.ResourceProvider;
+import net.wolf.wljglplayground.util.TextureLoader;
 import org.lwjgl.opengl.GL11;
 
 import static org.lwjgl.opengl.GL11.GL_LINEAR;
+import static org.lwjgl.opengl.GL11.GL_LINEAR_MIPMAP_LINEAR;
 import static org.lwjgl.opengl.GL11.GL_REPEAT;
 import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
 import static org.lwjgl.opengl.GL11.GL_TEXTURE_MAG_FILTER;
 import static org.lwjgl.opengl.GL11.GL_TEXTURE_MIN_FILTER;
 import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_S;
 import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_T;
-import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
-import static org.lwjgl.opengl.GL11.glBindTexture;
 import static org.lwjgl.opengl.GL11.glTexParameteri;
+import static org.lwjgl.opengl.GL12.GL_TEXTURE_MAX_LEVEL;
 import static org.lwjgl.opengl.GL30.glGenerateMipmap;
 import static org.lwjgl.opengl.GL11.glGenTextures;
-import static org.lwjgl.opengl.GL11.glTexImage2D;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,72 +58,141 @@ import org.slf4j.LoggerFactory;
 public class Texture implements Deletable {
     private static final Logger LOG = LoggerFactory.getLogger(Texture.class);
     
-    private static final Map<String, Texture> TEXTURE_CACHE = 
-            new HashMap<>();
-
-    private final String texFile;
+    private final String name;
+    private final Resource resource;
     private int glId;
+    private CompletableFuture<Texture> loaded;
+    
+    //managed by GpuTextureCache
+    int refCount;
+    long sizeBytes;
     
+    /**
+     * Acquire shared texture from {@link GpuTextureCache} on render thread, 
+     * it must be released by {@link #release()} instead of deleting
+     * @param texFile - image resource
+     * @return texture or null if texture can't be loaded
+     */
     public static Texture create(String texFile) {
-        String texName = texFile.trim();
-        Texture tex = TEXTURE_CACHE.get(texName);
-        if (tex == null) {
-            try {
-                tex = new Texture(texName);
-                tex.init();
-                TEXTURE_CACHE.put(texName, tex);
-            } catch (IOException ex) {
-                LOG.error("Error loading texture " + texFile, ex);
-                return null;
-            }
-        }
-        return tex;
+        return GpuTextureCache.getInstance().acquire(texFile);
     }
 
-    private Texture(String texFile) {
-        this.texFile = Texture.class.getResource(texFile).getFile();
+    Texture(String texFile) {
+        Resource resource = ResourceProvider.getDefault().find(texFile);
+        if (resource == null) {
+            throw new IllegalStateException("Bad image file " + texFile);
+        }
+        this.name = texFile;
+        this.resource = resource;
     }
 
+    /**
+     * Create texture object and start asynchronous loading of image, 
+     * texture is empty until image is uploaded by {@link TextureLoader}
+     * @throws IOException 
+     */
     public void init() throws IOException {
-        File imgFile = new File(texFile);
-
-        if (imgFile.exists() && imgFile.isFile()) {
-            try (ImageData imageData = TextureDataLoader.getInstance()
-                    .loadImageData(imgFile);) {
-                
-
-                //generate texture object
-                glId = glGenTextures();                
-                glBindTexture(GL_TEXTURE_2D, glId);
-                //texture parameters
-                glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT);
-                glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT);
-                //texture filtering
-                glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
-                glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
-                //load texture data
-                glTexImage2D(GL_TEXTURE_2D, 0, imageData.getGlType(),
-                        imageData.getWidth(), imageData.getHeight(), 0, imageData.getGlType(),
-                        GL_UNSIGNED_BYTE, imageData.getData());
-                //generate mipmaps
-                glGenerateMipmap(GL_TEXTURE_2D);
-                glBindTexture(GL_TEXTURE_2D, 0);
-            }
+        //generate texture object
+        GLStateCache stateCache = GLStateCache.getInstance();
+        glId = glGenTextures();                
+        stateCache.bindTexture(GL_TEXTURE_2D, glId);
+        //texture parameters
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT);
+        //texture filtering, mipmaps are loaded or generated by upload
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        stateCache.bindTexture(GL_TEXTURE_2D, 0);
+        
+        loaded = TextureLoader.getInstance()
+                .load(resource, this::upload);
+        loaded.exceptionally((ex) -> {
+            LOG.error("Error loading texture " + name, ex);
+            return this;
+        });
+    }
 
+    /**
+     * Upload decoded image, called on render thread
+     */
+    private Texture upload(ImageData imageData) {
+        if (glId == 0) {
+            //deleted before loading
+            return this;
+        }
+        GLStateCache stateCache = GLStateCache.getInstance();
+        stateCache.bindTexture(GL_TEXTURE_2D, glId);
+        //load texture data through pixel buffer
+        PixelBufferRing pixelBuffers = TextureLoader.getInstance().getPixelBuffers();
+        int levels = imageData.getMipmapCount();
+        for (int level = 0; level < levels; ++level) {
+            pixelBuffers.texImage2D(GL_TEXTURE_2D, level, imageData);
+        }
+        if (levels > 1 || imageData.isCompressed()) {
+            //mipmaps are prepared by loader, compressed can't be generated
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAX_LEVEL, levels - 1);
         } else {
-            throw new IllegalStateException("Bad image file " + texFile);
+            //generate mipmaps
+            glGenerateMipmap(GL_TEXTURE_2D);
         }
+        stateCache.bindTexture(GL_TEXTURE_2D, 0);
+        GpuTextureCache.getInstance().uploaded(this, getGpuSize(imageData));
+        LOG.debug("Texture {} uploaded", name);
+        return this;
+    }
+    
+    /**
+     * @return future completed when image of texture is uploaded
+     */
+    public CompletableFuture<Texture> getLoaded() {
+        return loaded;
+    }
 
+    /**
+     * Estimate GPU memory of texture: RGB is stored as RGBA by drivers, 
+     * generated mipmaps take third of base level
+     */
+    private static long getGpuSize(ImageData imageData) {
+        //RGB is padded to RGBA, 16 bit and HDR formats take 2 bytes per component
+        long pixelSize = imageData.isByteData() ? 4L : 8L;
+        long size = 0;
+        int levels = imageData.getMipmapCount();
+        for (int level = 0; level < levels; ++level) {
+            size += imageData.isCompressed() 
+                    ? imageData.getMipmapData(level).remaining()
+                    : pixelSize * imageData.getMipmapWidth(level) * imageData.getMipmapHeight(level);
+        }
+        return levels > 1 || imageData.isCompressed() ? size : size * 4 / 3;
     }
 
     public int getGLId() {
         return glId;
     }
+    
+    /**
+     * @return resource name of texture
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Release texture acquired by {@link #create(java.lang.String)}, 
+     * must be called on render thread
+     */
+    public void release() {
+        GpuTextureCache.getInstance().release(this);
+    }
 
+    /**
+     * Delete GL texture, shared textures are deleted by {@link GpuTextureCache}
+     */
     @Override
     public void delete() {
         if (glId != 0) {
             GL11.glDeleteTextures(glId);
+            GLStateCache.getInstance().textureDeleted(glId);
+            glId = 0;
         }
     }
 
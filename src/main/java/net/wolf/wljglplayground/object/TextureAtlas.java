@@ -0,0 +1,274 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.wolf.wljglplayground.util.Deletable;
+import net.wolf.wljglplayground.util.GLStateCache;
+import net.wolf.wljglplayground.util.ImageData;
+import net.wolf.wljglplayground.util.PixelBufferRing;
+import net.wolf.wljglplayground.util.Resource;
+import net.wolf.wljglplayground.util.ResourceProvider;
+import net.wolf.wljglplayground.util.SkylinePacker;
+import net.wolf.wljglplayground.util.TextureLoader;
+import static org.lwjgl.opengl.GL11.GL_LINEAR;
+import static org.lwjgl.opengl.GL11.GL_LINEAR_MIPMAP_LINEAR;
+import static org.lwjgl.opengl.GL11.GL_RGBA;
+import static org.lwjgl.opengl.GL11.GL_RGBA8;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MAG_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MIN_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_S;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_T;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
+import static org.lwjgl.opengl.GL11.glDeleteTextures;
+import static org.lwjgl.opengl.GL11.glGenTextures;
+import static org.lwjgl.opengl.GL11.glTexParameteri;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL12.GL_TEXTURE_MAX_LEVEL;
+import static org.lwjgl.opengl.GL12.glTexImage3D;
+import static org.lwjgl.opengl.GL12.glTexSubImage3D;
+import static org.lwjgl.opengl.GL30.GL_TEXTURE_2D_ARRAY;
+import static org.lwjgl.opengl.GL30.glGenerateMipmap;
+import org.lwjgl.system.MemoryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Texture atlas in layers of array texture. Images are packed into layers 
+ * by skyline packer with padding of replicated edge pixels, so materials 
+ * with different images use same texture and don't rebind it. 
+ * Mipmap levels are limited by padding to avoid bleeding of neighbours
+ * @author Volchkov Andrey
+ */
+public class TextureAtlas implements Deletable {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(TextureAtlas.class);
+    
+    private final int pageSize;
+    private final int maxPages;
+    private final int padding;
+    
+    private int glId;
+    private final List<SkylinePacker> pages = new ArrayList<>();
+    private final Map<String, AtlasRegion> regions = new HashMap<>();
+    //mipmaps must be regenerated after uploads
+    private boolean mipmapsDirty;
+    
+    //scratch for packer result
+    private final int[] position = new int[2];
+
+    /**
+     * @param pageSize - width and height of layer
+     * @param maxPages - count of layers
+     * @param padding - padding around every image, power of two
+     */
+    public TextureAtlas(int pageSize, int maxPages, int padding) {
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.padding = padding;
+    }
+    
+    public void init() {
+        GLStateCache stateCache = GLStateCache.getInstance();
+        glId = glGenTextures();
+        stateCache.bindTexture(GL_TEXTURE_2D_ARRAY, glId);
+        glTexImage3D(GL_TEXTURE_2D_ARRAY, 0, GL_RGBA8, pageSize, pageSize, maxPages, 
+                0, GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        //level n samples 2^n texels, deeper levels would mix neighbours
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAX_LEVEL, 
+                31 - Integer.numberOfLeadingZeros(Math.max(1, padding)));
+        stateCache.bindTexture(GL_TEXTURE_2D_ARRAY, 0);
+    }
+    
+    /**
+     * Add image resource into atlas, it is loaded asynchronously
+     * @param texFile - image resource
+     * @return region of image, ready after upload
+     */
+    public AtlasRegion add(String texFile) {
+        String texName = texFile.trim();
+        AtlasRegion region = regions.get(texName);
+        if (region != null) {
+            return region;
+        }
+        Resource resource = ResourceProvider.getDefault().find(texName);
+        if (resource == null) {
+            throw new IllegalStateException("Bad image file " + texName);
+        }
+        AtlasRegion newRegion = new AtlasRegion(texName);
+        regions.put(texName, newRegion);
+        
+        TextureLoader loader = TextureLoader.getInstance();
+        //mipmaps are generated from padded layers
+        loader.upload(loader.decode(resource, false)
+                .thenApply(this::pad), (imageData) -> place(newRegion, imageData))
+                .exceptionally((ex) -> {
+                    LOG.error("Error loading atlas image " + texName, ex);
+                    return newRegion;
+                });
+        return newRegion;
+    }
+    
+    /**
+     * Copy base level of image into RGBA with replicated edges, called by worker
+     */
+    private ImageData pad(ImageData image) {
+        try {
+            if (image.isCompressed()) {
+                throw new IllegalArgumentException("Compressed image can't be added into atlas");
+            }
+            if (!image.isByteData()) {
+                throw new IllegalArgumentException("Only 8 bit image can be added into atlas");
+            }
+            int width = image.getWidth();
+            int height = image.getHeight();
+            int components = image.getComponents();
+            ByteBuffer src = image.getData();
+            int paddedWidth = width + padding * 2;
+            int paddedHeight = height + padding * 2;
+            ByteBuffer dst = MemoryUtil.memAlloc(paddedWidth * paddedHeight * 4);
+            for (int y = 0; y < paddedHeight; ++y) {
+                int sy = Math.min(height - 1, Math.max(0, y - padding));
+                for (int x = 0; x < paddedWidth; ++x) {
+                    int sx = Math.min(width - 1, Math.max(0, x - padding));
+                    int i = (sy * width + sx) * components;
+                    dst.put(src.get(i))
+                            .put(src.get(i + 1))
+                            .put(src.get(i + 2))
+                            .put(components == 4 ? src.get(i + 3) : (byte) 0xFF);
+                }
+            }
+            dst.flip();
+            return new ImageData(paddedWidth, paddedHeight, BufferedImage.TYPE_4BYTE_ABGR, dst);
+        } finally {
+            image.delete();
+        }
+    }
+    
+    /**
+     * Pack padded image and upload it, called on render thread
+     */
+    private AtlasRegion place(AtlasRegion region, ImageData imageData) {
+        if (glId == 0) {
+            //deleted before loading
+            return region;
+        }
+        int width = imageData.getWidth();
+        int height = imageData.getHeight();
+        int layer = findPlace(width, height);
+        if (layer < 0) {
+            throw new IllegalStateException("No place in atlas for " + region.getName() 
+                    + " " + width + "x" + height);
+        }
+        int x = position[0];
+        int y = position[1];
+        
+        GLStateCache stateCache = GLStateCache.getInstance();
+        stateCache.bindTexture(GL_TEXTURE_2D_ARRAY, glId);
+        PixelBufferRing pixelBuffers = TextureLoader.getInstance().getPixelBuffers();
+        long offset = pixelBuffers.stage(imageData.getData());
+        try {
+            glTexSubImage3D(GL_TEXTURE_2D_ARRAY, 0, x, y, layer, width, height, 1, 
+                    GL_RGBA, GL_UNSIGNED_BYTE, offset);
+        } finally {
+            pixelBuffers.release();
+        }
+        stateCache.bindTexture(GL_TEXTURE_2D_ARRAY, 0);
+        mipmapsDirty = true;
+        
+        float size = pageSize;
+        region.place(layer, 
+                (x + padding) / size, (y + padding) / size, 
+                (x + width - padding) / size, (y + height - padding) / size);
+        LOG.debug("Atlas {}", region);
+        return region;
+    }
+    
+    /**
+     * Find place in existing layers or start new layer
+     * @return layer or -1 if atlas is full
+     */
+    private int findPlace(int width, int height) {
+        for (int i = 0; i < pages.size(); ++i) {
+            if (pages.get(i).pack(width, height, position)) {
+                return i;
+            }
+        }
+        if (pages.size() < maxPages) {
+            SkylinePacker page = new SkylinePacker(pageSize, pageSize);
+            pages.add(page);
+            if (page.pack(width, height, position)) {
+                return pages.size() - 1;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Bind atlas to texture unit, mipmaps are regenerated after uploads
+     * @param unit - texture unit
+     */
+    public void bind(int unit) {
+        GLStateCache stateCache = GLStateCache.getInstance();
+        stateCache.bindTexture(unit, GL_TEXTURE_2D_ARRAY, glId);
+        if (mipmapsDirty) {
+            //cached bind may skip switching of active unit
+            stateCache.activeTexture(unit);
+            glGenerateMipmap(GL_TEXTURE_2D_ARRAY);
+            mipmapsDirty = false;
+        }
+    }
+    
+    public int getGLId() {
+        return glId;
+    }
+    
+    /**
+     * @return count of used layers
+     */
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    @Override
+    public void delete() {
+        if (glId != 0) {
+            glDeleteTextures(glId);
+            GLStateCache.getInstance().textureDeleted(glId);
+            glId = 0;
+        }
+        regions.clear();
+        pages.clear();
+    }
+    
+}
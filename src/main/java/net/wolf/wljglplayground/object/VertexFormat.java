@@ -0,0 +1,284 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import static net.wolf.wljglplayground.object.Mesh3d.FLOAT_SIZE;
+import static net.wolf.wljglplayground.object.Mesh3d.TRIANGLE_VERTEXES;
+import static net.wolf.wljglplayground.object.Mesh3d.UV_VERTEXES;
+import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_SHORT;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL30.GL_HALF_FLOAT;
+import static org.lwjgl.opengl.GL33.GL_INT_2_10_10_10_REV;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Layout of interleaved vertex in GPU buffer: position, normal and UV 
+ * as floats or in compact form (half float positions and UVs, 
+ * normals packed into 2_10_10_10). Attributes are read as vec3/vec2 by shaders 
+ * in both forms (0 - position, 1 - normal, 2 - UV)
+ * @author Volchkov Andrey
+ */
+public final class VertexFormat {
+    
+    public static final String FORMAT_PROPERTY = "wljgl.vertexFormat";
+    
+    /** 32 bytes per vertex, all attributes are floats */
+    public static final VertexFormat FLOAT = new VertexFormat(false, false, false);
+    /** 16 bytes per vertex: half float position and UV, packed normal */
+    public static final VertexFormat COMPACT = new VertexFormat(true, true, true);
+    
+    //vertices of meshes indexed by unsigned short
+    private static final int MAX_SHORT_VERTICES = 1 << 16;
+    private static final int HALF_SIZE = 2;
+    private static final int PACKED_NORMAL_SIZE = 4;
+    
+    private static final VertexFormat DEFAULT = 
+            "compact".equalsIgnoreCase(System.getProperty(FORMAT_PROPERTY)) ? COMPACT : FLOAT;
+    
+    private final boolean halfPositions;
+    private final boolean packedNormals;
+    private final boolean halfUVs;
+    //offsets in bytes
+    private final int normalOffset;
+    private final int uvOffset;
+    private final int stride;
+
+    public VertexFormat(boolean halfPositions, boolean packedNormals, boolean halfUVs) {
+        this.halfPositions = halfPositions;
+        this.packedNormals = packedNormals;
+        this.halfUVs = halfUVs;
+        //attributes are aligned to 4 bytes
+        this.normalOffset = halfPositions ? align(TRIANGLE_VERTEXES * HALF_SIZE) 
+                : TRIANGLE_VERTEXES * FLOAT_SIZE;
+        this.uvOffset = normalOffset + (packedNormals ? PACKED_NORMAL_SIZE 
+                : TRIANGLE_VERTEXES * FLOAT_SIZE);
+        this.stride = uvOffset + (halfUVs ? UV_VERTEXES * HALF_SIZE : UV_VERTEXES * FLOAT_SIZE);
+    }
+    
+    /**
+     * @return format set by system property {@value #FORMAT_PROPERTY}: 
+     * "compact" or "float" (default)
+     */
+    public static VertexFormat getDefault() {
+        return DEFAULT;
+    }
+    
+    private static int align(int size) {
+        return (size + 3) & ~3;
+    }
+
+    /**
+     * @return bytes per vertex
+     */
+    public int getStride() {
+        return stride;
+    }
+    
+    /**
+     * @return true if layout is same as interleaved floats of {@link MeshBuilder}
+     */
+    public boolean isFloat() {
+        return !halfPositions && !packedNormals && !halfUVs;
+    }
+    
+    /**
+     * Convert interleaved floats of {@link MeshBuilder} into this format
+     * @param vertices - vertices, {@link MeshBuilder#STRIDE} floats per vertex
+     * @param count - count of vertices
+     * @return packed vertices, must be freed by memFree
+     */
+    public ByteBuffer pack(FloatBuffer vertices, int count) {
+        ByteBuffer packed = MemoryUtil.memAlloc(count * stride);
+        for (int i = 0; i < count; ++i) {
+            int src = i * MeshBuilder.STRIDE;
+            int dst = i * stride;
+            if (halfPositions) {
+                packed.putShort(dst, toHalf(vertices.get(src)))
+                        .putShort(dst + 2, toHalf(vertices.get(src + 1)))
+                        .putShort(dst + 4, toHalf(vertices.get(src + 2)))
+                        .putShort(dst + 6, (short) 0);
+            } else {
+                packed.putFloat(dst, vertices.get(src))
+                        .putFloat(dst + 4, vertices.get(src + 1))
+                        .putFloat(dst + 8, vertices.get(src + 2));
+            }
+            if (packedNormals) {
+                packed.putInt(dst + normalOffset, packNormal(vertices.get(src + 3), 
+                        vertices.get(src + 4), vertices.get(src + 5)));
+            } else {
+                packed.putFloat(dst + normalOffset, vertices.get(src + 3))
+                        .putFloat(dst + normalOffset + 4, vertices.get(src + 4))
+                        .putFloat(dst + normalOffset + 8, vertices.get(src + 5));
+            }
+            if (halfUVs) {
+                packed.putShort(dst + uvOffset, toHalf(vertices.get(src + 6)))
+                        .putShort(dst + uvOffset + 2, toHalf(vertices.get(src + 7)));
+            } else {
+                packed.putFloat(dst + uvOffset, vertices.get(src + 6))
+                        .putFloat(dst + uvOffset + 4, vertices.get(src + 7));
+            }
+        }
+        return packed;
+    }
+    
+    /**
+     * Setup vertex attributes (0 - position, 1 - normal, 2 - UV) 
+     * of currently bound array buffer into currently bound vertex array
+     */
+    public void setupAttributes() {
+        setupAttributes(0L);
+    }
+    
+    /**
+     * Setup vertex attributes of vertices starting at offset of array buffer
+     * @param offset - offset of first vertex in bytes
+     */
+    public void setupAttributes(long offset) {
+        glVertexAttribPointer(0, TRIANGLE_VERTEXES, halfPositions ? GL_HALF_FLOAT : GL_FLOAT, 
+                false, stride, offset);
+        glEnableVertexAttribArray(0);
+        if (packedNormals) {
+            glVertexAttribPointer(1, 4, GL_INT_2_10_10_10_REV, true, stride, offset + normalOffset);
+        } else {
+            glVertexAttribPointer(1, TRIANGLE_VERTEXES, GL_FLOAT, false, stride, offset + normalOffset);
+        }
+        glEnableVertexAttribArray(1);
+        glVertexAttribPointer(2, UV_VERTEXES, halfUVs ? GL_HALF_FLOAT : GL_FLOAT, 
+                false, stride, offset + uvOffset);
+        glEnableVertexAttribArray(2);
+    }
+    
+    /**
+     * @param vertexCount - count of vertices of mesh
+     * @return GL_UNSIGNED_SHORT if all vertices can be indexed by short, else GL_UNSIGNED_INT
+     */
+    public static int getIndexType(int vertexCount) {
+        return vertexCount <= MAX_SHORT_VERTICES ? GL_UNSIGNED_SHORT : GL_UNSIGNED_INT;
+    }
+    
+    /**
+     * @param indexType - GL_UNSIGNED_SHORT or GL_UNSIGNED_INT
+     * @return bytes of index
+     */
+    public static int getIndexSize(int indexType) {
+        return indexType == GL_UNSIGNED_SHORT ? 2 : 4;
+    }
+    
+    /**
+     * Convert indices to unsigned shorts
+     * @param indices - indices less than 65536
+     * @return short indices, must be freed by memFree
+     */
+    public static ShortBuffer toShortIndices(IntBuffer indices) {
+        int count = indices.remaining();
+        ShortBuffer shorts = MemoryUtil.memAllocShort(count);
+        for (int i = 0; i < count; ++i) {
+            shorts.put(i, (short) indices.get(indices.position() + i));
+        }
+        return shorts;
+    }
+    
+    /**
+     * Convert float into IEEE half float with rounding to nearest, 
+     * out of range values become infinity
+     * @param value - float value
+     * @return bits of half float
+     */
+    public static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+        if (exponent >= 0x1F) {
+            //overflow, infinity or NaN
+            boolean nan = ((bits >>> 23) & 0xFF) == 0xFF && mantissa != 0;
+            return (short) (sign | 0x7C00 | (nan ? 0x200 : 0));
+        }
+        if (exponent <= 0) {
+            if (exponent < -10) {
+                //too small, signed zero
+                return (short) sign;
+            }
+            //subnormal half
+            mantissa |= 0x800000;
+            int shift = 14 - exponent;
+            int half = mantissa >> shift;
+            //round to nearest
+            if (((mantissa >> (shift - 1)) & 1) != 0) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = sign | (exponent << 10) | (mantissa >> 13);
+        //round to nearest, carry into exponent is correct rounding
+        if ((mantissa & 0x1000) != 0) {
+            half++;
+        }
+        return (short) half;
+    }
+    
+    /**
+     * Pack normal into signed normalized 2_10_10_10, w is 0
+     */
+    public static int packNormal(float x, float y, float z) {
+        return toSnorm10(x) | toSnorm10(y) << 10 | toSnorm10(z) << 20;
+    }
+    
+    private static int toSnorm10(float value) {
+        return Math.round(Math.max(-1.f, Math.min(1.f, value)) * 511.f) & 0x3FF;
+    }
+
+    @Override
+    public int hashCode() {
+        return (halfPositions ? 1 : 0) | (packedNormals ? 2 : 0) | (halfUVs ? 4 : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof VertexFormat)) {
+            return false;
+        }
+        VertexFormat other = (VertexFormat) obj;
+        return halfPositions == other.halfPositions 
+                && packedNormals == other.packedNormals 
+                && halfUVs == other.halfUVs;
+    }
+
+    @Override
+    public String toString() {
+        return "VertexFormat{" + "halfPositions=" + halfPositions + ", packedNormals=" + packedNormals 
+                + ", halfUVs=" + halfUVs + ", stride=" + stride + '}';
+    }
+    
+}
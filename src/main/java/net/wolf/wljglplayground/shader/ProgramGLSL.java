@@ -25,7 +25,11 @@ package net.wolf.wljglplayground.shader;
 
 import java.io.IOException;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
 import net.wolf.wljglplayground.util.Deletable;
+import net.wolf.wljglplayground.util.GLStateCache;
 
 import org.joml.Matrix3fc;
 import org.joml.Matrix4fc;
@@ -37,7 +41,11 @@ import org.joml.Vector4fc;
 import org.joml.Vector4ic;
 
 import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL31.GL_INVALID_INDEX;
+import static org.lwjgl.opengl.GL31.glGetUniformBlockIndex;
+import static org.lwjgl.opengl.GL31.glUniformBlockBinding;
 import static org.lwjgl.system.MemoryUtil.memAllocFloat;
+import static org.lwjgl.system.MemoryUtil.memAllocInt;
 import static org.lwjgl.system.MemoryUtil.memFree;
 
 import org.slf4j.LoggerFactory;
@@ -57,6 +65,14 @@ public class ProgramGLSL implements Deletable {
     
     private final FloatBuffer matrixBuf3;
     private final FloatBuffer matrixBuf4;
+    private final float[] matrixValues = new float[4*4];
+    
+    //statistics of uniform uploads
+    private int issuedCalls;
+    private int skippedCalls;
+    
+    //active uniforms of linked program by interned name
+    private final Map<String, UniformHandle> uniforms = new HashMap<>();
 
     
     public ProgramGLSL(ShaderGLSL ... shader) {
@@ -95,64 +111,240 @@ public class ProgramGLSL implements Deletable {
             glDetachShader(programId, shader.getShaderId());
             shader.delete();
         }
+        
+        collectUniforms();
+        bindUniformBlocks();
+    }
+    
+    /**
+     * Bind uniform blocks used by program to their fixed binding points
+     */
+    private void bindUniformBlocks() {
+        for (UniformBlock block : UniformBlock.values()) {
+            int index = glGetUniformBlockIndex(programId, block.getBlockName());
+            if (index != GL_INVALID_INDEX) {
+                LOG.debug("Program {} uses block {}", programId, block.getBlockName());
+                glUniformBlockBinding(programId, index, block.getBinding());
+            }
+        }
+    }
+    
+    /**
+     * Enumerate all active uniforms of linked program once 
+     * and build name to location table
+     */
+    private void collectUniforms() {
+        uniforms.clear();
+        
+        int count = glGetProgrami(programId, GL_ACTIVE_UNIFORMS);
+        IntBuffer sizeBuf = memAllocInt(1);
+        IntBuffer typeBuf = memAllocInt(1);
+        try {
+            for (int i = 0; i < count; ++i) {
+                String name = glGetActiveUniform(programId, i, sizeBuf, typeBuf);
+                int size = sizeBuf.get(0);
+                int type = typeBuf.get(0);
+                int location = glGetUniformLocation(programId, name);
+                if (location == -1) {
+                    //uniform from uniform block or built-in
+                    continue;
+                }
+                
+                //members of struct arrays are listed one by one ("lights[1].pos"), 
+                //only arrays of basic types are reported once with suffix [0]
+                if (!name.endsWith("[0]")) {
+                    addUniform(name, new UniformHandle(name.intern(), location, type, size));
+                    continue;
+                }
+                //first element accessible by name with and without index, 
+                //both names share one handle for the same location
+                String baseName = name.substring(0, name.length() - 3);
+                UniformHandle first = new UniformHandle(baseName.intern(), location, type, size);
+                addUniform(baseName, first);
+                addUniform(name, first);
+                for (int el = 1; el < size; ++el) {
+                    String elName = (baseName + '[' + el + ']').intern();
+                    addUniform(elName, new UniformHandle(elName, 
+                            glGetUniformLocation(programId, elName), type, 1));
+                }
+            }
+        } finally {
+            memFree(sizeBuf);
+            memFree(typeBuf);
+        }
+        LOG.debug("Program {} active uniforms {}", programId, uniforms.keySet());
+    }
+    
+    private void addUniform(String name, UniformHandle handle) {
+        uniforms.put(name.intern(), handle);
     }
     
-    private int getUniformLocation(String name) {
-        return glGetUniformLocation(programId, name);
+    /**
+     * Resolve uniform by name, should be called at init time
+     * for using result handle on hot path
+     * @param name - name of uniform
+     * @return handle of uniform, not active handle if program 
+     * hasn't active uniform with this name
+     */
+    public UniformHandle getUniform(String name) {
+        UniformHandle handle = uniforms.get(name);
+        return handle == null ? UniformHandle.NONE : handle;
     }
     
     public ProgramGLSL setParam(String name, Vector2fc vec) {
-        glUniform2f(getUniformLocation(name), vec.x(), vec.y());
-        return this;
+        return setParam(getUniform(name), vec);
     }
     
     public ProgramGLSL setParam(String name, Vector3fc vec) {
-        glUniform3f(getUniformLocation(name), vec.x(), vec.y(), vec.z());
-        return this;
+        return setParam(getUniform(name), vec);
     }
     
     public ProgramGLSL setParam(String name, Vector4fc vec) {
-        glUniform4f(getUniformLocation(name), vec.x(), vec.y(), vec.z(), vec.w());
-        return this;
+        return setParam(getUniform(name), vec);
     }
     
     public ProgramGLSL setParam(String name, Vector2ic vec) {
-        glUniform2i(getUniformLocation(name), vec.x(), vec.y());
-        return this;
+        return setParam(getUniform(name), vec);
     }
     
     public ProgramGLSL setParam(String name, Vector3ic vec) {
-        glUniform3i(getUniformLocation(name), vec.x(), vec.y(), vec.z());
-        return this;
+        return setParam(getUniform(name), vec);
     }
     
     public ProgramGLSL setParam(String name, Vector4ic vec) {
-        glUniform4i(getUniformLocation(name), vec.x(), vec.y(), vec.z(), vec.w());
-        return this;
+        return setParam(getUniform(name), vec);
     }
 
     public ProgramGLSL setParam(String name, Matrix3fc mat) {
-        glUniformMatrix3fv(getUniformLocation(name), false, mat.get(matrixBuf3));
-        return this;
+        return setParam(getUniform(name), mat);
     }    
 
     public ProgramGLSL setParam(String name, Matrix4fc mat) {
-        glUniformMatrix4fv(getUniformLocation(name), false, mat.get(matrixBuf4));
-        return this;
+        return setParam(getUniform(name), mat);
     } 
     
     public ProgramGLSL setParam(String name, int val) {
-        glUniform1i(getUniformLocation(name), val);
-        return this;
+        return setParam(getUniform(name), val);
     } 
     
     public ProgramGLSL setParam(String name, float val) {
-        glUniform1f(getUniformLocation(name), val);
+        return setParam(getUniform(name), val);
+    }      
+    
+    public ProgramGLSL setParam(UniformHandle uniform, Vector2fc vec) {
+        if (changed(uniform, uniform.update(vec.x(), vec.y()))) {
+            glUniform2f(uniform.getLocation(), vec.x(), vec.y());
+        }
+        return this;
+    }
+    
+    public ProgramGLSL setParam(UniformHandle uniform, Vector3fc vec) {
+        if (changed(uniform, uniform.update(vec.x(), vec.y(), vec.z()))) {
+            glUniform3f(uniform.getLocation(), vec.x(), vec.y(), vec.z());
+        }
+        return this;
+    }
+    
+    public ProgramGLSL setParam(UniformHandle uniform, Vector4fc vec) {
+        if (changed(uniform, uniform.update(vec.x(), vec.y(), vec.z(), vec.w()))) {
+            glUniform4f(uniform.getLocation(), vec.x(), vec.y(), vec.z(), vec.w());
+        }
+        return this;
+    }
+    
+    public ProgramGLSL setParam(UniformHandle uniform, Vector2ic vec) {
+        if (changed(uniform, uniform.update(vec.x(), vec.y()))) {
+            glUniform2i(uniform.getLocation(), vec.x(), vec.y());
+        }
+        return this;
+    }
+    
+    public ProgramGLSL setParam(UniformHandle uniform, Vector3ic vec) {
+        if (changed(uniform, uniform.update(vec.x(), vec.y(), vec.z()))) {
+            glUniform3i(uniform.getLocation(), vec.x(), vec.y(), vec.z());
+        }
+        return this;
+    }
+    
+    public ProgramGLSL setParam(UniformHandle uniform, Vector4ic vec) {
+        if (changed(uniform, uniform.update(vec.x(), vec.y(), vec.z(), vec.w()))) {
+            glUniform4i(uniform.getLocation(), vec.x(), vec.y(), vec.z(), vec.w());
+        }
+        return this;
+    }
+
+    public ProgramGLSL setParam(UniformHandle uniform, Matrix3fc mat) {
+        if (changed(uniform, uniform.update(mat.get(matrixValues), 3*3))) {
+            glUniformMatrix3fv(uniform.getLocation(), false, mat.get(matrixBuf3));
+        }
+        return this;
+    }    
+
+    public ProgramGLSL setParam(UniformHandle uniform, Matrix4fc mat) {
+        if (changed(uniform, uniform.update(mat.get(matrixValues), 4*4))) {
+            glUniformMatrix4fv(uniform.getLocation(), false, mat.get(matrixBuf4));
+        }
+        return this;
+    } 
+    
+    public ProgramGLSL setParam(UniformHandle uniform, int val) {
+        if (changed(uniform, uniform.update(val))) {
+            glUniform1i(uniform.getLocation(), val);
+        }
+        return this;
+    } 
+    
+    public ProgramGLSL setParam(UniformHandle uniform, float val) {
+        if (changed(uniform, uniform.update(val))) {
+            glUniform1f(uniform.getLocation(), val);
+        }
         return this;
     }      
     
+    /**
+     * Count upload of uniform, not active uniforms aren't counted
+     * @param uniform - uniform handle
+     * @param updated - result of comparing with shadow copy
+     * @return true if glUniform* call is needed
+     */
+    private boolean changed(UniformHandle uniform, boolean updated) {
+        if (!uniform.isActive()) {
+            return false;
+        }
+        if (updated) {
+            issuedCalls++;
+            return true;
+        }
+        skippedCalls++;
+        return false;
+    }
+    
+    /**
+     * @return count of glUniform* calls since last {@link #resetStats()}
+     */
+    public int getIssuedCalls() {
+        return issuedCalls;
+    }
+
+    /**
+     * @return count of skipped redundant uniform uploads 
+     * since last {@link #resetStats()}
+     */
+    public int getSkippedCalls() {
+        return skippedCalls;
+    }
+    
+    public void resetStats() {
+        issuedCalls = 0;
+        skippedCalls = 0;
+    }
+    
+    public int getProgramId() {
+        return programId;
+    }
+    
     public ProgramGLSL use() {
-        glUseProgram(programId);
+        GLStateCache.getInstance().useProgram(programId);
         return this;
     }
     
@@ -162,7 +354,9 @@ public class ProgramGLSL implements Deletable {
         if (programId != 0) {            
             
             glDeleteProgram(programId);
+            GLStateCache.getInstance().programDeleted(programId);
             programId = 0;
+            uniforms.clear();
             
         }
         
@@ -24,13 +24,9 @@
 package net.wolf.wljglplayground.shader;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import net.wolf.wljglplayground.util.Resource;
+import net.wolf.wljglplayground.util.ResourceProvider;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,15 +44,15 @@ public class ShaderGLSL {
     private static final Logger LOG = LoggerFactory.getLogger(ShaderGLSL.class);
     
     private int shaderId = 0;
-    private final URI shaderFile;
+    private final Resource shaderFile;
     private final ShaderType shaderType;
 
-    public ShaderGLSL(String shaderFile) throws URISyntaxException {
-        URL resource = this.getClass().getResource(shaderFile);
+    public ShaderGLSL(String shaderFile) {
+        Resource resource = ResourceProvider.getDefault().find(shaderFile);
         if (Objects.isNull(resource)) {
             throw new IllegalArgumentException("Shader file " + shaderFile + " not found!");
         }
-        this.shaderFile = this.getClass().getResource(shaderFile).toURI();
+        this.shaderFile = resource;
         this.shaderType = getTypeByExt(shaderFile);
     }
 
@@ -67,9 +63,7 @@ public class ShaderGLSL {
 
         shaderId = glCreateShader(shaderType.getGLType());
 
-        String shader = Files
-                .lines(Paths.get(shaderFile))
-                .collect(Collectors.joining("\n"));
+        String shader = shaderFile.readString();
 
         // Compile Vertex Shader
         LOG.debug("Compiling shader {}", shaderFile);
@@ -88,7 +82,7 @@ public class ShaderGLSL {
         return shaderId;
     }
 
-    public URI getShaderFile() {
+    public Resource getShaderFile() {
         return shaderFile;
     }
 
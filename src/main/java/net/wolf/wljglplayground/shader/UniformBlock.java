@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.shader;
+
+/**
+ * Uniform blocks shared between programs. 
+ * Every block has fixed binding point and std140 layout,
+ * which must match declaration of the block in shaders
+ * @author Volchkov Andrey
+ */
+public enum UniformBlock {
+    
+    /**
+     * Camera data, updated once per frame
+     * <pre>
+     * layout (std140) uniform FrameData {
+     *     mat4 projectionMatrix;
+     *     mat4 viewMatrix;
+     *     vec3 viewPos;
+     * };
+     * </pre>
+     */
+    FRAME("FrameData", 0, 144),
+    
+    /**
+     * Light data
+     * <pre>
+     * layout (std140) uniform LightData {
+     *     Light light;
+     * };
+     * </pre>
+     */
+    LIGHT("LightData", 1, 64);
+    
+    //std140 offsets of FrameData members
+    public static final int FRAME_PROJECTION_MATRIX = 0;
+    public static final int FRAME_VIEW_MATRIX = 64;
+    public static final int FRAME_VIEW_POS = 128;
+    
+    //std140 offsets of LightData members
+    public static final int LIGHT_POSITION = 0;
+    public static final int LIGHT_AMBIENT = 16;
+    public static final int LIGHT_DIFFUSE = 32;
+    public static final int LIGHT_SPECULAR = 48;
+
+    /**
+     * Name of block in shaders
+     */
+    private final String blockName;
+    /**
+     * Binding point of block
+     */
+    private final int binding;
+    /**
+     * Size of block in bytes by std140 layout
+     */
+    private final int size;
+
+    private UniformBlock(String blockName, int binding, int size) {
+        this.blockName = blockName;
+        this.binding = binding;
+        this.size = size;
+    }
+
+    public String getBlockName() {
+        return blockName;
+    }
+
+    public int getBinding() {
+        return binding;
+    }
+
+    public int getSize() {
+        return size;
+    }
+    
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.shader;
+
+import java.nio.ByteBuffer;
+import net.wolf.wljglplayground.util.Deletable;
+import org.joml.Matrix4fc;
+import org.joml.Vector3fc;
+
+import static org.lwjgl.opengl.GL11.glGetInteger;
+import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glBufferSubData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL30.glBindBufferRange;
+import static org.lwjgl.opengl.GL31.GL_UNIFORM_BUFFER;
+import static org.lwjgl.opengl.GL31.GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT;
+import static org.lwjgl.system.MemoryUtil.memAlloc;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Uniform buffer object with one or more std140 uniform blocks.
+ * All blocks are written into persistent off-heap buffer 
+ * and uploaded to GPU by single glBufferSubData call
+ * @author Volchkov Andrey
+ */
+public class UniformBufferGLSL implements Deletable {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(UniformBufferGLSL.class);
+    
+    private final UniformBlock[] blocks;
+    //offsets of blocks in buffer by ordinal
+    private final int[] offsets = new int[UniformBlock.values().length];
+    
+    private int ubo;
+    private ByteBuffer data;
+    private boolean dirty;
+
+    public UniformBufferGLSL(UniformBlock ... blocks) {
+        this.blocks = blocks;
+    }
+    
+    public void init() {
+        if (ubo != 0) {
+            throw new IllegalStateException("Uniform buffer already initialized. ID => " + ubo);
+        }
+        
+        //every bound range must be aligned
+        int align = glGetInteger(GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT);
+        int size = 0;
+        for (UniformBlock block : blocks) {
+            size = (size + align - 1) / align * align;
+            offsets[block.ordinal()] = size;
+            size += block.getSize();
+        }
+        
+        data = memAlloc(size);
+        
+        ubo = glGenBuffers();
+        glBindBuffer(GL_UNIFORM_BUFFER, ubo);
+        glBufferData(GL_UNIFORM_BUFFER, size, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+        
+        for (UniformBlock block : blocks) {
+            glBindBufferRange(GL_UNIFORM_BUFFER, block.getBinding(), ubo, 
+                    offsets[block.ordinal()], block.getSize());
+        }
+        LOG.debug("Uniform buffer {} created, size {}", ubo, size);
+    }
+    
+    public UniformBufferGLSL setParam(UniformBlock block, int offset, Matrix4fc mat) {
+        mat.get(offsets[block.ordinal()] + offset, data);
+        dirty = true;
+        return this;
+    }
+    
+    public UniformBufferGLSL setParam(UniformBlock block, int offset, Vector3fc vec) {
+        vec.get(offsets[block.ordinal()] + offset, data);
+        dirty = true;
+        return this;
+    }
+    
+    public UniformBufferGLSL setParam(UniformBlock block, int offset, float val) {
+        data.putFloat(offsets[block.ordinal()] + offset, val);
+        dirty = true;
+        return this;
+    }
+    
+    public UniformBufferGLSL setParam(UniformBlock block, int offset, int val) {
+        data.putInt(offsets[block.ordinal()] + offset, val);
+        dirty = true;
+        return this;
+    }
+    
+    /**
+     * Upload all blocks to GPU if any was changed
+     */
+    public void upload() {
+        if (dirty) {
+            glBindBuffer(GL_UNIFORM_BUFFER, ubo);
+            glBufferSubData(GL_UNIFORM_BUFFER, 0, data);
+            glBindBuffer(GL_UNIFORM_BUFFER, 0);
+            dirty = false;
+        }
+    }
+
+    @Override
+    public void delete() {
+        if (ubo != 0) {
+            glDeleteBuffers(ubo);
+            ubo = 0;
+        }
+        if (data != null) {
+            memFree(data);
+            data = null;
+        }
+    }
+    
+}
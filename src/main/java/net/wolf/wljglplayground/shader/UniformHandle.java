@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.shader;
+
+/**
+ * Resolved uniform of the linked GLSL program.
+ * Handles are created by {@link ProgramGLSL#link()} and could be
+ * resolved once at init time by {@link ProgramGLSL#getUniform(String)}
+ * for setting params without name lookup
+ * @author Volchkov Andrey
+ */
+public final class UniformHandle {
+
+    /**
+     * Handle of not active (or not existing) uniform, 
+     * OpenGL silently ignores location -1
+     */
+    static final UniformHandle NONE = new UniformHandle("", -1, 0, 0);
+
+    private final String name;
+    private final int location;
+    private final int type;
+    private final int size;
+    
+    //CPU-side copy of last uploaded value (raw bits), enough for mat4
+    private final int[] shadow = new int[16];
+    private boolean shadowValid;
+
+    UniformHandle(String name, int location, int type, int size) {
+        this.name = name;
+        this.location = location;
+        this.type = type;
+        this.size = size;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLocation() {
+        return location;
+    }
+
+    /**
+     * @return OpenGL type of uniform (GL_FLOAT_VEC3, GL_FLOAT_MAT4 ...)
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * @return array size of uniform, 1 for non array uniforms
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isActive() {
+        return location != -1;
+    }
+    
+    boolean update(int x) {
+        return update(x, 0, 0, 0);
+    }
+    
+    boolean update(float x) {
+        return update(Float.floatToRawIntBits(x), 0, 0, 0);
+    }
+    
+    boolean update(int x, int y) {
+        return update(x, y, 0, 0);
+    }
+    
+    boolean update(float x, float y) {
+        return update(Float.floatToRawIntBits(x), Float.floatToRawIntBits(y), 0, 0);
+    }
+    
+    boolean update(int x, int y, int z) {
+        return update(x, y, z, 0);
+    }
+    
+    boolean update(float x, float y, float z) {
+        return update(Float.floatToRawIntBits(x), Float.floatToRawIntBits(y),
+                Float.floatToRawIntBits(z), 0);
+    }
+    
+    boolean update(float x, float y, float z, float w) {
+        return update(Float.floatToRawIntBits(x), Float.floatToRawIntBits(y),
+                Float.floatToRawIntBits(z), Float.floatToRawIntBits(w));
+    }
+    
+    /**
+     * Compare value with shadow copy and store it
+     * @param values - components of value
+     * @param count - count of components
+     * @return true if value changed since last update
+     */
+    boolean update(float[] values, int count) {
+        if (!isActive()) {
+            //shared NONE handle keeps no value
+            return false;
+        }
+        boolean changed = !shadowValid;
+        for (int i = 0; i < count; ++i) {
+            int bits = Float.floatToRawIntBits(values[i]);
+            if (shadow[i] != bits) {
+                shadow[i] = bits;
+                changed = true;
+            }
+        }
+        shadowValid = true;
+        return changed;
+    }
+    
+    boolean update(int x, int y, int z, int w) {
+        if (!isActive()) {
+            return false;
+        }
+        if (shadowValid && shadow[0] == x && shadow[1] == y 
+                && shadow[2] == z && shadow[3] == w) {
+            return false;
+        }
+        shadow[0] = x;
+        shadow[1] = y;
+        shadow[2] = z;
+        shadow[3] = w;
+        shadowValid = true;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "UniformHandle{" + "name=" + name + ", location=" + location + ", type=" + type + ", size=" + size + '}';
+    }
+
+}
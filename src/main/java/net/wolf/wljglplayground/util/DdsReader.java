@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import static org.lwjgl.opengl.EXTTextureCompressionS3TC.GL_COMPRESSED_RGBA_S3TC_DXT1_EXT;
+import static org.lwjgl.opengl.EXTTextureCompressionS3TC.GL_COMPRESSED_RGBA_S3TC_DXT3_EXT;
+import static org.lwjgl.opengl.EXTTextureCompressionS3TC.GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;
+import static org.lwjgl.opengl.EXTTextureSRGB.GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT1_EXT;
+import static org.lwjgl.opengl.EXTTextureSRGB.GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT5_EXT;
+import static org.lwjgl.opengl.GL42.GL_COMPRESSED_RGBA_BPTC_UNORM;
+import static org.lwjgl.opengl.GL42.GL_COMPRESSED_SRGB_ALPHA_BPTC_UNORM;
+
+/**
+ * Reader of DDS container with precompressed 2D texture 
+ * (BC1/DXT1, BC2/DXT3, BC3/DXT5 and BC7 by DX10 header). 
+ * Files are memory content, jar entries are read into native memory, 
+ * levels are slices of content
+ * @author Volchkov Andrey
+ */
+public class DdsReader {
+    
+    private static final int MAGIC = 0x20534444; //"DDS "
+    private static final int HEADER_SIZE = 124;
+    private static final int DX10_HEADER_SIZE = 20;
+    
+    private static final int DDSD_MIPMAPCOUNT = 0x20000;
+    private static final int DDSCAPS2_CUBEMAP = 0x200;
+    private static final int DDPF_FOURCC = 0x4;
+    
+    private static final int FOURCC_DXT1 = 0x31545844;
+    private static final int FOURCC_DXT3 = 0x33545844;
+    private static final int FOURCC_DXT5 = 0x35545844;
+    private static final int FOURCC_DX10 = 0x30315844;
+    
+    //DXGI formats of DX10 header
+    private static final int DXGI_BC1_UNORM = 71;
+    private static final int DXGI_BC1_SRGB = 72;
+    private static final int DXGI_BC2_UNORM = 74;
+    private static final int DXGI_BC3_UNORM = 77;
+    private static final int DXGI_BC3_SRGB = 78;
+    private static final int DXGI_BC7_UNORM = 98;
+    private static final int DXGI_BC7_SRGB = 99;
+    private static final int DXGI_DIMENSION_TEXTURE2D = 3;
+
+    private DdsReader() {
+    }
+    
+    public static boolean isDds(Resource resource) {
+        return resource.getName().toLowerCase().endsWith(".dds");
+    }
+    
+    /**
+     * Read DDS resource
+     * @param resource - DDS resource
+     * @return compressed image data with all levels of resource
+     * @throws IOException if resource isn't supported DDS
+     */
+    public static ImageData read(Resource resource) throws IOException {
+        ResourceBuffer buffer = resource.read();
+        try {
+            return read(buffer, resource);
+        } catch (IOException | RuntimeException ex) {
+            buffer.close();
+            throw ex;
+        }
+    }
+    
+    private static ImageData read(ResourceBuffer buffer, Resource file) throws IOException {
+        ByteBuffer content = buffer.getData().duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (content.limit() < 4 + HEADER_SIZE 
+                || content.getInt(0) != MAGIC 
+                || content.getInt(4) != HEADER_SIZE) {
+            throw new IOException("Not DDS file " + file);
+        }
+        int flags = content.getInt(8);
+        int height = content.getInt(12);
+        int width = content.getInt(16);
+        int mipmaps = (flags & DDSD_MIPMAPCOUNT) != 0 ? Math.max(1, content.getInt(28)) : 1;
+        int pixelFlags = content.getInt(80);
+        int fourCC = content.getInt(84);
+        int caps2 = content.getInt(112);
+        if ((caps2 & DDSCAPS2_CUBEMAP) != 0) {
+            throw new IOException("DDS cube maps are not supported " + file);
+        }
+        if ((pixelFlags & DDPF_FOURCC) == 0) {
+            throw new IOException("Uncompressed DDS is not supported " + file);
+        }
+        
+        int offset = 4 + HEADER_SIZE;
+        int glType;
+        switch (fourCC) {
+            case FOURCC_DXT1:
+                glType = GL_COMPRESSED_RGBA_S3TC_DXT1_EXT;
+                break;
+            case FOURCC_DXT3:
+                glType = GL_COMPRESSED_RGBA_S3TC_DXT3_EXT;
+                break;
+            case FOURCC_DXT5:
+                glType = GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;
+                break;
+            case FOURCC_DX10:
+                if (content.getInt(offset + 4) != DXGI_DIMENSION_TEXTURE2D 
+                        || content.getInt(offset + 12) > 1) {
+                    throw new IOException("Only single 2D DDS texture is supported " + file);
+                }
+                glType = toGLType(content.getInt(offset), file);
+                offset += DX10_HEADER_SIZE;
+                break;
+            default:
+                throw new IOException("DDS format " + Integer.toHexString(fourCC) 
+                        + " is not supported " + file);
+        }
+        
+        int blockSize = getBlockSize(glType);
+        ByteBuffer[] levels = new ByteBuffer[mipmaps];
+        for (int level = 0; level < mipmaps; ++level) {
+            int levelWidth = Math.max(1, width >> level);
+            int levelHeight = Math.max(1, height >> level);
+            int size = ((levelWidth + 3) / 4) * ((levelHeight + 3) / 4) * blockSize;
+            if (offset + size > content.limit()) {
+                throw new IOException("Truncated DDS file " + file);
+            }
+            ByteBuffer data = content.duplicate();
+            data.position(offset).limit(offset + size);
+            levels[level] = data.slice();
+            offset += size;
+        }
+        return new ImageData(width, height, glType, levels, buffer);
+    }
+    
+    private static int toGLType(int dxgiFormat, Resource file) throws IOException {
+        switch (dxgiFormat) {
+            case DXGI_BC1_UNORM:
+                return GL_COMPRESSED_RGBA_S3TC_DXT1_EXT;
+            case DXGI_BC1_SRGB:
+                return GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT1_EXT;
+            case DXGI_BC2_UNORM:
+                return GL_COMPRESSED_RGBA_S3TC_DXT3_EXT;
+            case DXGI_BC3_UNORM:
+                return GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;
+            case DXGI_BC3_SRGB:
+                return GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT5_EXT;
+            case DXGI_BC7_UNORM:
+                return GL_COMPRESSED_RGBA_BPTC_UNORM;
+            case DXGI_BC7_SRGB:
+                return GL_COMPRESSED_SRGB_ALPHA_BPTC_UNORM;
+            default:
+                throw new IOException("DXGI format " + dxgiFormat + " is not supported " + file);
+        }
+    }
+    
+    /**
+     * @return bytes of 4x4 block
+     */
+    private static int getBlockSize(int glType) {
+        switch (glType) {
+            case GL_COMPRESSED_RGBA_S3TC_DXT1_EXT:
+            case GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT1_EXT:
+                return 8;
+            default:
+                return 16;
+        }
+    }
+    
+}
@@ -0,0 +1,310 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL11.GL_BLEND;
+import static org.lwjgl.opengl.GL11.GL_CULL_FACE;
+import static org.lwjgl.opengl.GL11.GL_DEPTH_TEST;
+import static org.lwjgl.opengl.GL11.GL_SCISSOR_TEST;
+import static org.lwjgl.opengl.GL11.GL_STENCIL_TEST;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL11.glDepthMask;
+import static org.lwjgl.opengl.GL11.glDisable;
+import static org.lwjgl.opengl.GL11.glEnable;
+import static org.lwjgl.opengl.GL13.GL_MULTISAMPLE;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE_CUBE_MAP;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL20.glUseProgram;
+import static org.lwjgl.opengl.GL30.GL_TEXTURE_2D_ARRAY;
+import static org.lwjgl.opengl.GL31.GL_TEXTURE_BUFFER;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+
+/**
+ * Cache of OpenGL binding state of render thread context.
+ * All binds of programs, vertex arrays and textures must go through 
+ * this cache, so redundant calls never reach the driver
+ * @author Volchkov Andrey
+ */
+public class GLStateCache {
+    
+    private static final GLStateCache INSTANCE = new GLStateCache();
+    
+    public static GLStateCache getInstance() {
+        return INSTANCE;
+    }
+    
+    //state is not known, next call must reach the driver
+    private static final int UNKNOWN = -1;
+    
+    private static final int MAX_TEXTURE_UNITS = 32;
+    //cached texture targets
+    private static final int[] TEXTURE_TARGETS = {
+        GL_TEXTURE_2D, GL_TEXTURE_CUBE_MAP, GL_TEXTURE_2D_ARRAY, GL_TEXTURE_BUFFER
+    };
+    //cached capabilities
+    private static final int[] CAPABILITIES = {
+        GL_DEPTH_TEST, GL_CULL_FACE, GL_BLEND, GL_STENCIL_TEST, 
+        GL_SCISSOR_TEST, GL_MULTISAMPLE
+    };
+    
+    private int program;
+    private int vertexArray;
+    private int activeUnit;
+    //bound textures by unit and target index
+    private final int[][] textures = new int[MAX_TEXTURE_UNITS][TEXTURE_TARGETS.length];
+    private int depthMask;
+    //enabled/known bits by capability index
+    private int enabledBits;
+    private int knownBits;
+    
+    //statistics
+    private int issuedCalls;
+    private int avoidedCalls;
+    private int frameIssuedCalls;
+    private int frameAvoidedCalls;
+    private int textureBinds;
+    private int frameTextureBinds;
+
+    private GLStateCache() {
+        invalidate();
+    }
+    
+    /**
+     * Forget all cached state, should be called after 
+     * context creation or when GL state was changed bypassing cache
+     */
+    public final void invalidate() {
+        program = UNKNOWN;
+        vertexArray = UNKNOWN;
+        activeUnit = UNKNOWN;
+        for (int[] unit : textures) {
+            Arrays.fill(unit, UNKNOWN);
+        }
+        depthMask = UNKNOWN;
+        enabledBits = 0;
+        knownBits = 0;
+    }
+    
+    public void useProgram(int programId) {
+        if (program == programId) {
+            avoidedCalls++;
+            return;
+        }
+        glUseProgram(programId);
+        program = programId;
+        issuedCalls++;
+    }
+    
+    public void bindVertexArray(int vao) {
+        if (vertexArray == vao) {
+            avoidedCalls++;
+            return;
+        }
+        glBindVertexArray(vao);
+        vertexArray = vao;
+        issuedCalls++;
+    }
+    
+    /**
+     * @param unit - index of texture unit (0 for GL_TEXTURE0)
+     */
+    public void activeTexture(int unit) {
+        if (activeUnit == unit) {
+            avoidedCalls++;
+            return;
+        }
+        glActiveTexture(GL_TEXTURE0 + unit);
+        activeUnit = unit;
+        issuedCalls++;
+    }
+    
+    /**
+     * Bind texture to active texture unit
+     * @param target - texture target (GL_TEXTURE_2D ...)
+     * @param texture - texture id
+     */
+    public void bindTexture(int target, int texture) {
+        int targetIndex = targetIndex(target);
+        if (activeUnit == UNKNOWN || activeUnit >= MAX_TEXTURE_UNITS || targetIndex < 0) {
+            glBindTexture(target, texture);
+            issuedCalls++;
+            textureBinds++;
+            return;
+        }
+        int[] unitTextures = textures[activeUnit];
+        if (unitTextures[targetIndex] == texture) {
+            avoidedCalls++;
+            return;
+        }
+        glBindTexture(target, texture);
+        unitTextures[targetIndex] = texture;
+        issuedCalls++;
+        textureBinds++;
+    }
+    
+    /**
+     * Bind texture to texture unit
+     * @param unit - index of texture unit (0 for GL_TEXTURE0)
+     * @param target - texture target (GL_TEXTURE_2D ...)
+     * @param texture - texture id
+     */
+    public void bindTexture(int unit, int target, int texture) {
+        int targetIndex = targetIndex(target);
+        if (targetIndex >= 0 && unit < MAX_TEXTURE_UNITS 
+                && textures[unit][targetIndex] == texture) {
+            //no need even to switch active unit
+            avoidedCalls++;
+            return;
+        }
+        activeTexture(unit);
+        bindTexture(target, texture);
+    }
+    
+    public void depthMask(boolean flag) {
+        int mask = flag ? 1 : 0;
+        if (depthMask == mask) {
+            avoidedCalls++;
+            return;
+        }
+        glDepthMask(flag);
+        depthMask = mask;
+        issuedCalls++;
+    }
+    
+    public void enable(int capability) {
+        setCapability(capability, true);
+    }
+    
+    public void disable(int capability) {
+        setCapability(capability, false);
+    }
+    
+    private void setCapability(int capability, boolean enabled) {
+        int index = capabilityIndex(capability);
+        if (index >= 0) {
+            int bit = 1 << index;
+            if ((knownBits & bit) != 0 && ((enabledBits & bit) != 0) == enabled) {
+                avoidedCalls++;
+                return;
+            }
+            knownBits |= bit;
+            enabledBits = enabled ? enabledBits | bit : enabledBits & ~bit;
+        }
+        if (enabled) {
+            glEnable(capability);
+        } else {
+            glDisable(capability);
+        }
+        issuedCalls++;
+    }
+    
+    /**
+     * Must be called when program deleted, because GL can reuse id
+     */
+    public void programDeleted(int programId) {
+        if (program == programId) {
+            program = UNKNOWN;
+        }
+    }
+    
+    /**
+     * Must be called when vertex array deleted, because GL can reuse id
+     */
+    public void vertexArrayDeleted(int vao) {
+        if (vertexArray == vao) {
+            vertexArray = UNKNOWN;
+        }
+    }
+    
+    /**
+     * Must be called when texture deleted, because GL can reuse id
+     */
+    public void textureDeleted(int texture) {
+        for (int[] unit : textures) {
+            for (int i = 0; i < unit.length; ++i) {
+                if (unit[i] == texture) {
+                    unit[i] = UNKNOWN;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Finish frame statistics, counters of finished frame
+     * are available by {@link #getFrameIssuedCalls()}, 
+     * {@link #getFrameAvoidedCalls()} and {@link #getFrameTextureBinds()}
+     */
+    public void endFrame() {
+        frameIssuedCalls = issuedCalls;
+        frameAvoidedCalls = avoidedCalls;
+        frameTextureBinds = textureBinds;
+        issuedCalls = 0;
+        avoidedCalls = 0;
+        textureBinds = 0;
+    }
+
+    /**
+     * @return count of state calls passed to driver in last frame
+     */
+    public int getFrameIssuedCalls() {
+        return frameIssuedCalls;
+    }
+
+    /**
+     * @return count of redundant state calls avoided in last frame
+     */
+    public int getFrameAvoidedCalls() {
+        return frameAvoidedCalls;
+    }
+
+    /**
+     * @return count of texture binds passed to driver in last frame
+     */
+    public int getFrameTextureBinds() {
+        return frameTextureBinds;
+    }
+    
+    private static int targetIndex(int target) {
+        for (int i = 0; i < TEXTURE_TARGETS.length; ++i) {
+            if (TEXTURE_TARGETS[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static int capabilityIndex(int capability) {
+        for (int i = 0; i < CAPABILITIES.length; ++i) {
+            if (CAPABILITIES[i] == capability) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+}
@@ -27,7 +27,11 @@ import java.awt.image.BufferedImage;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import org.lwjgl.opengl.EXTTextureCompressionS3TC;
+import org.lwjgl.opengl.EXTTextureSRGB;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL42;
 import org.lwjgl.system.MemoryUtil;
 
 /**
@@ -38,19 +42,54 @@ public class ImageData implements Deletable, Closeable{
     private final int width;
     private final int height;
     private final int glType;
-    private final ByteBuffer data;
+    //GL type of pixel components: unsigned byte, unsigned short or float
+    private final int pixelType;
+    //data of mipmap levels, 0 - base image
+    private final ByteBuffer[] levels;
+    //resource backing data of levels, levels are slices of it and aren't freed separately
+    private final Deletable source;
 
     public ImageData(int width, int height, int imageType, ByteBuffer data) {
+        this(width, height, toGLType(imageType), new ByteBuffer[] {data}, null);
+    }
+    
+    /**
+     * @param width - width of base image
+     * @param height - height of base image
+     * @param glType - GL format of pixels
+     * @param levels - data of mipmap levels
+     * @param source - buffer which levels are sliced from and which is deleted with image, 
+     * null if levels are allocated separately
+     */
+    ImageData(int width, int height, int glType, ByteBuffer[] levels, Deletable source) {
+        this(width, height, glType, GL11.GL_UNSIGNED_BYTE, levels, source);
+    }
+    
+    /**
+     * @param width - width of base image
+     * @param height - height of base image
+     * @param glType - GL format of pixels
+     * @param pixelType - GL type of pixel components
+     * @param levels - data of mipmap levels
+     * @param source - buffer which levels are sliced from and which is deleted with image, 
+     * null if levels are allocated separately
+     */
+    ImageData(int width, int height, int glType, int pixelType, ByteBuffer[] levels, 
+            Deletable source) {
         this.width = width;
         this.height = height;
-        
-        this.glType = toGLType(imageType);
-        this.data = data;
+        this.glType = glType;
+        this.pixelType = pixelType;
+        this.levels = levels;
+        this.source = source;
     }
 
     @Override
     public String toString() {
-        return "ImageData{" + "width=" + width + ", height=" + height + ", glType=" + glType + '}';
+        return "ImageData{" + "width=" + width + ", height=" + height + ", glType=" + glType 
+                + ", pixelType=" + pixelType
+                + ", compressed=" + isCompressed()
+                + ", levels=" + levels.length + ", sliced=" + (source != null) + '}';
     }
 
     public int getWidth() {
@@ -65,18 +104,97 @@ public class ImageData implements Deletable, Closeable{
         return glType;
     }
 
+    public int getPixelType() {
+        return pixelType;
+    }
+    
+    /**
+     * @return true for 8 bit components
+     */
+    public boolean isByteData() {
+        return pixelType == GL11.GL_UNSIGNED_BYTE;
+    }
+    
+    /**
+     * @return sized internal format of uncompressed image: 
+     * 8 bit, 16 bit normalized or 16 bit float for HDR
+     */
+    public int getInternalFormat() {
+        boolean rgba = glType == GL11.GL_RGBA;
+        switch (pixelType) {
+            case GL11.GL_UNSIGNED_SHORT:
+                return rgba ? GL11.GL_RGBA16 : GL11.GL_RGB16;
+            case GL11.GL_FLOAT:
+                return rgba ? GL30.GL_RGBA16F : GL30.GL_RGB16F;
+            default:
+                return rgba ? GL11.GL_RGBA8 : GL11.GL_RGB8;
+        }
+    }
+
     public ByteBuffer getData() {
-        return data;
+        return levels[0];
+    }
+    
+    /**
+     * @return count of mipmap levels with base image
+     */
+    public int getMipmapCount() {
+        return levels.length;
+    }
+    
+    public ByteBuffer getMipmapData(int level) {
+        return levels[level];
+    }
+    
+    public int getMipmapWidth(int level) {
+        return Math.max(1, width >> level);
+    }
+    
+    public int getMipmapHeight(int level) {
+        return Math.max(1, height >> level);
+    }
+    
+    /**
+     * @return count of bytes per pixel of uncompressed image
+     */
+    public int getComponents() {
+        return glType == GL11.GL_RGBA ? 4 : 3;
+    }
+    
+    /**
+     * @return true if data is blocks of compressed format, 
+     * uploaded by glCompressedTexImage2D
+     */
+    public boolean isCompressed() {
+        switch (glType) {
+            case EXTTextureCompressionS3TC.GL_COMPRESSED_RGB_S3TC_DXT1_EXT:
+            case EXTTextureCompressionS3TC.GL_COMPRESSED_RGBA_S3TC_DXT1_EXT:
+            case EXTTextureCompressionS3TC.GL_COMPRESSED_RGBA_S3TC_DXT3_EXT:
+            case EXTTextureCompressionS3TC.GL_COMPRESSED_RGBA_S3TC_DXT5_EXT:
+            case EXTTextureSRGB.GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT1_EXT:
+            case EXTTextureSRGB.GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT5_EXT:
+            case GL42.GL_COMPRESSED_RGBA_BPTC_UNORM:
+            case GL42.GL_COMPRESSED_SRGB_ALPHA_BPTC_UNORM:
+                return true;
+            default:
+                return false;
+        }
     }
 
     @Override
     public void delete() {
-        if (data != null) {
-            MemoryUtil.memFree(data);
+        if (source != null) {
+            source.delete();
+            return;
+        }
+        for (ByteBuffer level : levels) {
+            if (level != null) {
+                MemoryUtil.memFree(level);
+            }
         }
     }
 
-    private int toGLType(int imageType) {
+    private static int toGLType(int imageType) {
         switch (imageType) {
             case BufferedImage.TYPE_3BYTE_BGR: 
             case BufferedImage.TYPE_BYTE_GRAY:
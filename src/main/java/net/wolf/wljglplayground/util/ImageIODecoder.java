@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.system.MemoryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decoder by ImageIO: image is read into BufferedImage and fetched into native memory. 
+ * 16 bit images keep 16 bit components
+ * @author Volchkov Andrey
+ */
+public class ImageIODecoder implements ImageDecoder {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(ImageIODecoder.class);
+
+    @Override
+    public ImageData decode(Resource imageFile) throws IOException {
+        LOG.debug("Decode image {} by ImageIO", imageFile);
+        BufferedImage image;
+        try (ImageInputStream stream = imageFile.openImageStream()) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format " + imageFile);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                image = reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+        if (isShortRaster(image)) {
+            return fetchShorts(image);
+        }
+        LOG.debug("Fetching data ...");
+        ImageDataFetcher fetcher = getFetcher(image); 
+        ByteBuffer data = fetcher.fetch(image);
+        ImageData imageData = new ImageData(image.getWidth(), image.getHeight(), 
+                getDataType(image.getType()), data);
+        LOG.debug("Image data {}", imageData);
+        return imageData;
+    }
+    
+    /**
+     * @return true for 16 bit images, e.g. 16 bit PNG
+     */
+    private static boolean isShortRaster(BufferedImage image) {
+        Raster raster = image.getRaster();
+        return raster.getTransferType() == DataBuffer.TYPE_USHORT 
+                && raster.getNumBands() <= 4;
+    }
+    
+    /**
+     * Copy 16 bit samples as RGB or RGBA of unsigned shorts, gray is expanded to RGB
+     */
+    private static ImageData fetchShorts(BufferedImage image) {
+        Raster raster = image.getRaster();
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        int bands = raster.getNumBands();
+        //gray with alpha has 2 bands
+        boolean alpha = bands == 4 || bands == 2;
+        int components = alpha ? 4 : 3;
+        ByteBuffer data = MemoryUtil.memAlloc(width * height * components * 2);
+        ShortBuffer pixels = data.asShortBuffer();
+        int[] row = new int[width * bands];
+        for (int y = 0; y < height; ++y) {
+            raster.getPixels(0, y, width, 1, row);
+            for (int x = 0, i = 0; x < width; ++x, i += bands) {
+                if (bands < 3) {
+                    short gray = (short) row[i];
+                    pixels.put(gray).put(gray).put(gray);
+                } else {
+                    pixels.put((short) row[i]).put((short) row[i + 1]).put((short) row[i + 2]);
+                }
+                if (alpha) {
+                    pixels.put((short) row[i + bands - 1]);
+                }
+            }
+        }
+        ImageData imageData = new ImageData(width, height, alpha ? GL11.GL_RGBA : GL11.GL_RGB, 
+                GL11.GL_UNSIGNED_SHORT, new ByteBuffer[] {data}, null);
+        LOG.debug("Image data {}", imageData);
+        return imageData;
+    }
+
+    /**
+     * @return type of fetched data, unknown types are fetched as RGBA
+     */
+    private int getDataType(int imageType) {
+        switch (imageType) {
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_BYTE_GRAY:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                return imageType;
+            default:
+                return BufferedImage.TYPE_4BYTE_ABGR;
+        }
+    }
+
+    private ImageDataFetcher getFetcher(BufferedImage image) {
+        int imageType = image.getType();
+        //fast path: copy bytes of raster directly
+        switch (imageType) {
+            case BufferedImage.TYPE_3BYTE_BGR:
+                if (RasterImageDataFetcher.isSupported(image, 3)) {
+                    return new RasterImageDataFetcher(3);
+                }
+                break;
+            case BufferedImage.TYPE_BYTE_GRAY:
+                if (RasterImageDataFetcher.isSupported(image, 1)) {
+                    return new RasterImageDataFetcher(3);
+                }
+                break;
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                if (RasterImageDataFetcher.isSupported(image, 4)) {
+                    return new RasterImageDataFetcher(4);
+                }
+                break;
+        }
+        LOG.debug("Slow fetching of image type {}", imageType);
+        switch (imageType) {
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_BYTE_GRAY:
+                return new AbstractImageDataFetcher() { 
+
+                    @Override
+                    protected void setData(BufferedImage image, int x, int y, ByteBuffer imgData) {
+                        int rgb = image.getRGB(x, y);
+                        imgData.put((byte) ((rgb >> 16) & 0xFF));    //red component
+                        imgData.put((byte) ((rgb >> 8) & 0xFF));     //green component
+                        imgData.put((byte) (rgb & 0xFF));            //blue component
+                    }
+                };
+            default:
+                return new AbstractImageDataFetcher() { 
+
+                    @Override
+                    protected int getDataSize(BufferedImage image) {
+                        return 4 * image.getWidth() * image.getHeight();
+                    }
+
+                    @Override
+                    protected void setData(BufferedImage image, int x, int y, ByteBuffer imgData) {
+                        int rgba = image.getRGB(x, y);
+                        imgData.put((byte) ((rgba >> 16) & 0xFF));    //red component
+                        imgData.put((byte) ((rgba >> 8) & 0xFF));     //green component
+                        imgData.put((byte) (rgba & 0xFF));            //blue component
+                        imgData.put((byte) ((rgba >> 24) & 0xFF));    //alpha component
+                    }
+                };
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Generator of mipmap chain on CPU. Every level is made from previous one, 
+ * rows of level are split into tiles processed in parallel
+ * @author Volchkov Andrey
+ */
+public class MipmapGenerator {
+    
+    /**
+     * Downsampling filter
+     */
+    public enum Filter {
+        /** 2x2 average, fast but blurry */
+        BOX,
+        /** Kaiser windowed sinc, keeps details of small levels */
+        KAISER;
+        
+        /**
+         * @param name - name of filter, case insensitive
+         * @return filter, box for unknown name
+         */
+        public static Filter of(String name) {
+            return "kaiser".equalsIgnoreCase(name) ? KAISER : BOX;
+        }
+    }
+    
+    //rows of one parallel task
+    private static final int TILE_ROWS = 32;
+    //smaller levels are processed by one thread
+    private static final int PARALLEL_PIXELS = 128 * 128;
+    
+    //radius of Kaiser filter in destination pixels and its shape
+    private static final float KAISER_RADIUS = 3.0f;
+    private static final double KAISER_ALPHA = 4.0;
+
+    private MipmapGenerator() {
+    }
+    
+    /**
+     * Generate full mipmap chain down to 1x1 by 2x2 box filter
+     * @param image - base image, its data is shared with result
+     * @return image with all mipmap levels, base image must not be deleted separately
+     */
+    public static ImageData generate(ImageData image) {
+        return generate(image, Filter.BOX);
+    }
+    
+    /**
+     * Generate full mipmap chain down to 1x1
+     * @param image - base image, its data is shared with result
+     * @param filter - downsampling filter
+     * @return image with all mipmap levels, base image must not be deleted separately
+     */
+    public static ImageData generate(ImageData image, Filter filter) {
+        if (image.isCompressed()) {
+            throw new IllegalArgumentException("Can't generate mipmaps of compressed image");
+        }
+        if (!image.isByteData()) {
+            throw new IllegalArgumentException("Can't generate mipmaps of 16 bit or HDR image");
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int count = levelCount(width, height);
+        int components = image.getComponents();
+        
+        ByteBuffer[] levels = new ByteBuffer[count];
+        levels[0] = image.getData();
+        for (int level = 1; level < count; ++level) {
+            int srcWidth = Math.max(1, width >> (level - 1));
+            int srcHeight = Math.max(1, height >> (level - 1));
+            levels[level] = filter == Filter.KAISER 
+                    ? downsampleKaiser(levels[level - 1], srcWidth, srcHeight, components)
+                    : downsampleBox(levels[level - 1], srcWidth, srcHeight, components);
+        }
+        return new ImageData(width, height, image.getGlType(), levels, null);
+    }
+    
+    /**
+     * @return count of levels in full mipmap chain
+     */
+    public static int levelCount(int width, int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+    
+    /**
+     * Stream of row tiles, parallel for big levels
+     */
+    private static IntStream tiles(int rows, int pixels) {
+        IntStream tiles = IntStream.range(0, (rows + TILE_ROWS - 1) / TILE_ROWS);
+        return pixels >= PARALLEL_PIXELS ? tiles.parallel() : tiles;
+    }
+    
+    /**
+     * Average 2x2 blocks of source, last odd row and column are clamped
+     */
+    private static ByteBuffer downsampleBox(ByteBuffer src, int srcWidth, int srcHeight, int components) {
+        int width = Math.max(1, srcWidth >> 1);
+        int height = Math.max(1, srcHeight >> 1);
+        ByteBuffer dst = MemoryUtil.memAlloc(width * height * components);
+        int srcStride = srcWidth * components;
+        tiles(height, width * height).forEach((tile) -> {
+            int rowEnd = Math.min(height, (tile + 1) * TILE_ROWS);
+            for (int y = tile * TILE_ROWS; y < rowEnd; ++y) {
+                int y0 = Math.min(y * 2, srcHeight - 1) * srcStride;
+                int y1 = Math.min(y * 2 + 1, srcHeight - 1) * srcStride;
+                int out = y * width * components;
+                for (int x = 0; x < width; ++x) {
+                    int x0 = Math.min(x * 2, srcWidth - 1) * components;
+                    int x1 = Math.min(x * 2 + 1, srcWidth - 1) * components;
+                    for (int c = 0; c < components; ++c) {
+                        int sum = (src.get(y0 + x0 + c) & 0xFF) + (src.get(y0 + x1 + c) & 0xFF)
+                                + (src.get(y1 + x0 + c) & 0xFF) + (src.get(y1 + x1 + c) & 0xFF);
+                        dst.put(out++, (byte) ((sum + 2) >> 2));
+                    }
+                }
+            }
+        });
+        return dst;
+    }
+    
+    /**
+     * Separable Kaiser filter: horizontal pass into float rows, 
+     * then vertical pass into bytes
+     */
+    private static ByteBuffer downsampleKaiser(ByteBuffer src, int srcWidth, int srcHeight, int components) {
+        int width = Math.max(1, srcWidth >> 1);
+        int height = Math.max(1, srcHeight >> 1);
+        Kernel horizontal = new Kernel(srcWidth, width);
+        Kernel vertical = new Kernel(srcHeight, height);
+        
+        int rowSize = width * components;
+        float[] rows = new float[srcHeight * rowSize];
+        tiles(srcHeight, width * srcHeight).forEach((tile) -> {
+            int rowEnd = Math.min(srcHeight, (tile + 1) * TILE_ROWS);
+            for (int y = tile * TILE_ROWS; y < rowEnd; ++y) {
+                int in = y * srcWidth * components;
+                int out = y * rowSize;
+                for (int x = 0; x < width; ++x) {
+                    int first = horizontal.first[x];
+                    int taps = horizontal.taps;
+                    for (int c = 0; c < components; ++c) {
+                        float sum = 0.0f;
+                        for (int t = 0; t < taps; ++t) {
+                            int sx = clamp(first + t, srcWidth);
+                            sum += horizontal.weights[x * taps + t] 
+                                    * (src.get(in + sx * components + c) & 0xFF);
+                        }
+                        rows[out + x * components + c] = sum;
+                    }
+                }
+            }
+        });
+        
+        ByteBuffer dst = MemoryUtil.memAlloc(width * height * components);
+        tiles(height, width * height).forEach((tile) -> {
+            int rowEnd = Math.min(height, (tile + 1) * TILE_ROWS);
+            for (int y = tile * TILE_ROWS; y < rowEnd; ++y) {
+                int first = vertical.first[y];
+                int taps = vertical.taps;
+                int out = y * rowSize;
+                for (int i = 0; i < rowSize; ++i) {
+                    float sum = 0.0f;
+                    for (int t = 0; t < taps; ++t) {
+                        int sy = clamp(first + t, srcHeight);
+                        sum += vertical.weights[y * taps + t] * rows[sy * rowSize + i];
+                    }
+                    dst.put(out + i, (byte) Math.min(255, Math.max(0, Math.round(sum))));
+                }
+            }
+        });
+        return dst;
+    }
+    
+    private static int clamp(int i, int size) {
+        return i < 0 ? 0 : (i >= size ? size - 1 : i);
+    }
+    
+    /**
+     * Zero order modified Bessel function for Kaiser window
+     */
+    private static double bessel0(double x) {
+        double sum = 1.0;
+        double term = 1.0;
+        double halfX = x * 0.5;
+        for (int k = 1; k < 32; ++k) {
+            term *= halfX / k;
+            sum += term * term;
+            if (term * term < sum * 1E-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+    
+    /**
+     * Normalized weights of Kaiser windowed sinc for every destination pixel of axis
+     */
+    private static final class Kernel {
+        private final int taps;
+        private final int[] first;
+        private final float[] weights;
+
+        private Kernel(int srcSize, int dstSize) {
+            float scale = (float) srcSize / dstSize;
+            float support = KAISER_RADIUS * scale;
+            this.taps = (int) Math.ceil(support * 2.0f) + 1;
+            this.first = new int[dstSize];
+            this.weights = new float[dstSize * taps];
+            double norm = bessel0(KAISER_ALPHA);
+            for (int d = 0; d < dstSize; ++d) {
+                float center = (d + 0.5f) * scale;
+                int start = (int) Math.floor(center - support);
+                first[d] = start;
+                float total = 0.0f;
+                for (int t = 0; t < taps; ++t) {
+                    //distance in destination pixels
+                    double x = (start + t + 0.5f - center) / scale;
+                    double weight = 0.0;
+                    if (Math.abs(x) < KAISER_RADIUS) {
+                        double r = x / KAISER_RADIUS;
+                        double sinc = x == 0.0 ? 1.0 : Math.sin(Math.PI * x) / (Math.PI * x);
+                        weight = sinc * bessel0(KAISER_ALPHA * Math.sqrt(1.0 - r * r)) / norm;
+                    }
+                    weights[d * taps + t] = (float) weight;
+                    total += weight;
+                }
+                for (int t = 0; t < taps; ++t) {
+                    weights[d * taps + t] /= total;
+                }
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,215 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.nio.ByteBuffer;
+import static org.lwjgl.opengl.GL11.GL_UNPACK_ALIGNMENT;
+import static org.lwjgl.opengl.GL11.glPixelStorei;
+import static org.lwjgl.opengl.GL11.glTexImage2D;
+import static org.lwjgl.opengl.GL13.glCompressedTexImage2D;
+import static org.lwjgl.opengl.GL15.GL_STREAM_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL15.glUnmapBuffer;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_UNPACK_BUFFER;
+import static org.lwjgl.opengl.GL30.GL_MAP_INVALIDATE_BUFFER_BIT;
+import static org.lwjgl.opengl.GL30.GL_MAP_INVALIDATE_RANGE_BIT;
+import static org.lwjgl.opengl.GL30.GL_MAP_UNSYNCHRONIZED_BIT;
+import static org.lwjgl.opengl.GL30.GL_MAP_WRITE_BIT;
+import static org.lwjgl.opengl.GL30.glMapBufferRange;
+import static org.lwjgl.opengl.GL32.GL_ALREADY_SIGNALED;
+import static org.lwjgl.opengl.GL32.GL_CONDITION_SATISFIED;
+import static org.lwjgl.opengl.GL32.GL_SYNC_GPU_COMMANDS_COMPLETE;
+import static org.lwjgl.opengl.GL32.glClientWaitSync;
+import static org.lwjgl.opengl.GL32.glDeleteSync;
+import static org.lwjgl.opengl.GL32.glFenceSync;
+import static org.lwjgl.system.MemoryUtil.memAddress;
+import static org.lwjgl.system.MemoryUtil.memCopy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ring of pixel unpack buffers for streaming texture uploads. 
+ * Pixels are copied into mapped buffer and texture is uploaded from it, 
+ * so driver doesn't copy client memory synchronously. 
+ * Buffer is reused without synchronization when its fence is signaled, 
+ * otherwise it is orphaned, so CPU never waits for GPU.
+ * Must be used on render thread only.
+ * @author Volchkov Andrey
+ */
+public class PixelBufferRing implements Deletable {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(PixelBufferRing.class);
+    
+    private final int[] buffers;
+    private final long[] capacities;
+    private final long[] fences;
+    private int current;
+    //buffer is bound between stage and release
+    private boolean staged;
+    
+    //statistics
+    private long reusedCount;
+    private long orphanedCount;
+
+    /**
+     * @param size - count of buffers in ring
+     */
+    public PixelBufferRing(int size) {
+        this.buffers = new int[size];
+        this.capacities = new long[size];
+        this.fences = new long[size];
+    }
+    
+    public void init() {
+        for (int i = 0; i < buffers.length; ++i) {
+            buffers[i] = glGenBuffers();
+        }
+    }
+    
+    /**
+     * Copy data into next buffer of ring and leave it bound 
+     * as pixel unpack buffer, upload calls must use offset 0 
+     * instead of client memory. Must be followed by {@link #release()}
+     * @param data - pixels data
+     * @return offset of data in bound buffer
+     */
+    public long stage(ByteBuffer data) {
+        if (staged) {
+            throw new IllegalStateException("Previous pixel buffer isn't released");
+        }
+        int size = data.remaining();
+        int buffer = buffers[current];
+        glBindBuffer(GL_PIXEL_UNPACK_BUFFER, buffer);
+        
+        ByteBuffer mapped;
+        if (size <= capacities[current] && isFree(current)) {
+            //GPU finished reading, write without synchronization
+            mapped = glMapBufferRange(GL_PIXEL_UNPACK_BUFFER, 0, size, 
+                    GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_RANGE_BIT | GL_MAP_UNSYNCHRONIZED_BIT);
+            reusedCount++;
+        } else {
+            //orphan old storage, driver gives new one
+            long capacity = Math.max(size, capacities[current]);
+            glBufferData(GL_PIXEL_UNPACK_BUFFER, capacity, GL_STREAM_DRAW);
+            capacities[current] = capacity;
+            mapped = glMapBufferRange(GL_PIXEL_UNPACK_BUFFER, 0, size, 
+                    GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT);
+            orphanedCount++;
+        }
+        if (mapped == null) {
+            glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+            throw new IllegalStateException("Can't map pixel buffer of size " + size);
+        }
+        memCopy(memAddress(data), memAddress(mapped), size);
+        glUnmapBuffer(GL_PIXEL_UNPACK_BUFFER);
+        staged = true;
+        return 0L;
+    }
+    
+    /**
+     * Fence uploads from staged buffer, unbind it and advance ring
+     */
+    public void release() {
+        if (!staged) {
+            return;
+        }
+        if (fences[current] != 0L) {
+            glDeleteSync(fences[current]);
+        }
+        fences[current] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+        current = (current + 1) % buffers.length;
+        staged = false;
+    }
+    
+    /**
+     * Upload image into currently bound texture through pixel buffer
+     * @param target - texture target or cube map face
+     * @param level - mipmap level of image
+     * @param imageData - image
+     */
+    public void texImage2D(int target, int level, ImageData imageData) {
+        long offset = stage(imageData.getMipmapData(level));
+        try {
+            if (imageData.isCompressed()) {
+                glCompressedTexImage2D(target, level, imageData.getGlType(),
+                        imageData.getMipmapWidth(level), imageData.getMipmapHeight(level), 0,
+                        imageData.getMipmapData(level).remaining(), offset);
+            } else {
+                //rows of RGB levels are tightly packed
+                glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+                glTexImage2D(target, level, imageData.getInternalFormat(),
+                        imageData.getMipmapWidth(level), imageData.getMipmapHeight(level), 0, 
+                        imageData.getGlType(), imageData.getPixelType(), offset);
+                glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+            }
+        } finally {
+            release();
+        }
+    }
+    
+    /**
+     * Check fence of buffer without waiting
+     */
+    private boolean isFree(int index) {
+        long fence = fences[index];
+        if (fence == 0L) {
+            return true;
+        }
+        int status = glClientWaitSync(fence, 0, 0L);
+        if (status == GL_ALREADY_SIGNALED || status == GL_CONDITION_SATISFIED) {
+            glDeleteSync(fence);
+            fences[index] = 0L;
+            return true;
+        }
+        return false;
+    }
+
+    public long getReusedCount() {
+        return reusedCount;
+    }
+
+    public long getOrphanedCount() {
+        return orphanedCount;
+    }
+
+    @Override
+    public void delete() {
+        for (int i = 0; i < buffers.length; ++i) {
+            if (fences[i] != 0L) {
+                glDeleteSync(fences[i]);
+                fences[i] = 0L;
+            }
+            if (buffers[i] != 0) {
+                glDeleteBuffers(buffers[i]);
+                buffers[i] = 0;
+            }
+        }
+        LOG.debug("Pixel buffers deleted, reused {}, orphaned {}", reusedCount, orphanedCount);
+    }
+    
+}
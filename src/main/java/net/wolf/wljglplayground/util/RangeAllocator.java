@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * First fit allocator of ranges in linear storage (buffer elements), 
+ * free ranges are kept sorted by offset and merged with neighbours on free
+ * @author Volchkov Andrey
+ */
+public class RangeAllocator {
+    
+    //offset -> size of free range
+    private final TreeMap<Integer, Integer> freeRanges = new TreeMap<>();
+    private int capacity;
+    private int used;
+
+    public RangeAllocator(int capacity) {
+        this.capacity = capacity;
+        if (capacity > 0) {
+            freeRanges.put(0, capacity);
+        }
+    }
+    
+    /**
+     * Allocate range at the lowest offset where it fits
+     * @param size - size of range
+     * @return offset of range or -1 if there is no free range big enough
+     */
+    public int allocate(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size of range must be positive " + size);
+        }
+        Iterator<Map.Entry<Integer, Integer>> it = freeRanges.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Integer> range = it.next();
+            int rangeSize = range.getValue();
+            if (rangeSize < size) {
+                continue;
+            }
+            int offset = range.getKey();
+            it.remove();
+            if (rangeSize > size) {
+                freeRanges.put(offset + size, rangeSize - size);
+            }
+            used += size;
+            return offset;
+        }
+        return -1;
+    }
+    
+    /**
+     * Return allocated range, adjacent free ranges are merged
+     * @param offset - offset returned by {@link #allocate(int)}
+     * @param size - size of range
+     */
+    public void free(int offset, int size) {
+        int start = offset;
+        int end = offset + size;
+        Map.Entry<Integer, Integer> prev = freeRanges.floorEntry(offset);
+        if (prev != null && prev.getKey() + prev.getValue() > offset) {
+            throw new IllegalStateException("Range " + offset + " is already free");
+        }
+        if (prev != null && prev.getKey() + prev.getValue() == offset) {
+            start = prev.getKey();
+            freeRanges.remove(start);
+        }
+        Integer nextSize = freeRanges.get(end);
+        if (nextSize != null) {
+            freeRanges.remove(end);
+            end += nextSize;
+        }
+        freeRanges.put(start, end - start);
+        used -= size;
+    }
+    
+    /**
+     * Extend storage, new space is added to the end
+     * @param newCapacity - new capacity, not less than current
+     */
+    public void grow(int newCapacity) {
+        if (newCapacity <= capacity) {
+            return;
+        }
+        free(capacity, newCapacity - capacity);
+        //added space was never allocated
+        used += newCapacity - capacity;
+        capacity = newCapacity;
+    }
+    
+    /**
+     * @return size of the largest free range
+     */
+    public int getLargestFree() {
+        int largest = 0;
+        for (int size : freeRanges.values()) {
+            largest = Math.max(largest, size);
+        }
+        return largest;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getUsed() {
+        return used;
+    }
+    
+    /**
+     * @return count of free ranges, measure of fragmentation
+     */
+    public int getFreeRanges() {
+        return freeRanges.size();
+    }
+    
+}
@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.nio.ByteBuffer;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Fetcher reading bytes of image raster directly, without color model 
+ * conversion of every pixel. Bands of raster are swizzled into RGB or RGBA
+ * row by row, one band image (gray) is replicated into RGB.
+ * @author Volchkov Andrey
+ */
+class RasterImageDataFetcher implements ImageDataFetcher {
+    
+    //components of result pixel: 3 - RGB, 4 - RGBA
+    private final int components;
+
+    RasterImageDataFetcher(int components) {
+        this.components = components;
+    }
+    
+    /**
+     * Check that raster of image is interleaved bytes without 
+     * translation, so it can be read directly
+     * @param image - image
+     * @param bands - expected number of bands
+     * @return true if image can be fetched by this fetcher
+     */
+    static boolean isSupported(BufferedImage image, int bands) {
+        Raster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        return raster.getDataBuffer() instanceof DataBufferByte
+                && raster.getDataBuffer().getNumBanks() == 1
+                && sampleModel instanceof ComponentSampleModel
+                && sampleModel.getNumBands() == bands
+                && raster.getSampleModelTranslateX() == 0 
+                && raster.getSampleModelTranslateY() == 0;
+    }
+
+    @Override
+    public ByteBuffer fetch(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Raster raster = image.getRaster();
+        ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+        
+        byte[] src = dataBuffer.getData();
+        int srcOffset = dataBuffer.getOffset();
+        int pixelStride = sampleModel.getPixelStride();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        
+        //source band of every result component, gray goes to all RGB
+        int[] offsets = new int[components];
+        for (int c = 0; c < components; ++c) {
+            offsets[c] = bandOffsets[Math.min(c, bandOffsets.length - 1)];
+        }
+        
+        ByteBuffer imgData = MemoryUtil.memAlloc(components * width * height);
+        byte[] row = new byte[components * width];
+        for (int y = 0; y < height; ++y) {
+            int pixel = srcOffset + y * scanlineStride;
+            int dst = 0;
+            if (components == 3) {
+                int r = offsets[0];
+                int g = offsets[1];
+                int b = offsets[2];
+                for (int x = 0; x < width; ++x, pixel += pixelStride) {
+                    row[dst++] = src[pixel + r];
+                    row[dst++] = src[pixel + g];
+                    row[dst++] = src[pixel + b];
+                }
+            } else {
+                int r = offsets[0];
+                int g = offsets[1];
+                int b = offsets[2];
+                int a = offsets[3];
+                for (int x = 0; x < width; ++x, pixel += pixelStride) {
+                    row[dst++] = src[pixel + r];
+                    row[dst++] = src[pixel + g];
+                    row[dst++] = src[pixel + b];
+                    row[dst++] = src[pixel + a];
+                }
+            }
+            imgData.put(row);
+        }
+        imgData.flip();
+        return imgData;
+    }
+    
+}
@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Named resource of classpath, jar or directory. 
+ * Content is read as stream or as buffer in native memory
+ * @author Volchkov Andrey
+ */
+public abstract class Resource {
+    
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    
+    //off-heap buffer of each thread reused for reading small streams, 
+    //larger content is read into own buffer, so threads don't pin memory of big resources
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER = ThreadLocal.withInitial(
+            () -> ByteBuffer.allocateDirect(READ_BUFFER_SIZE));
+    
+    private final String name;
+
+    protected Resource(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * @param path - file path
+     * @return resource of file named by its path
+     */
+    public static Resource of(Path path) {
+        return new FileResource(path.toString(), path);
+    }
+
+    /**
+     * @return name of resource by which it is found
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * @return unique location of resource, used as key of caches
+     */
+    public abstract String getId();
+    
+    /**
+     * @return size in bytes or -1 if unknown
+     * @throws IOException 
+     */
+    public abstract long size() throws IOException;
+    
+    /**
+     * @return time of last modification in millis or 0 if unknown
+     * @throws IOException 
+     */
+    public abstract long lastModified() throws IOException;
+    
+    public abstract InputStream openStream() throws IOException;
+    
+    /**
+     * @return CRC32 of content, same for equal content of any location
+     * @throws IOException 
+     */
+    public long checksum() throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[READ_BUFFER_SIZE];
+        try (InputStream in = openStream()) {
+            int read;
+            while ((read = in.read(chunk)) >= 0) {
+                crc.update(chunk, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+    
+    /**
+     * @return stream for ImageIO readers cached in memory instead of temporary file, 
+     * closing it closes the stream of resource
+     * @throws IOException 
+     */
+    public ImageInputStream openImageStream() throws IOException {
+        InputStream in = openStream();
+        return new MemoryCacheImageInputStream(in) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    in.close();
+                }
+            }
+        };
+    }
+    
+    /**
+     * Read whole content into native memory
+     * @return content, must be closed
+     * @throws IOException 
+     */
+    public ResourceBuffer read() throws IOException {
+        ByteBuffer pooled = READ_BUFFER.get();
+        ByteBuffer content = readContent(pooled);
+        if (content != pooled) {
+            //content didn't fit into read buffer and is already allocated
+            return new ResourceBuffer(content, true);
+        }
+        ByteBuffer data = MemoryUtil.memAlloc(content.remaining());
+        MemoryUtil.memCopy(MemoryUtil.memAddress(content), MemoryUtil.memAddress(data), 
+                content.remaining());
+        return new ResourceBuffer(data, true);
+    }
+    
+    /**
+     * @return content decoded as UTF-8
+     * @throws IOException 
+     */
+    public String readString() throws IOException {
+        ByteBuffer pooled = READ_BUFFER.get();
+        ByteBuffer content = readContent(pooled);
+        try {
+            return StandardCharsets.UTF_8.decode(content).toString();
+        } finally {
+            if (content != pooled) {
+                MemoryUtil.memFree(content);
+            }
+        }
+    }
+    
+    /**
+     * Read stream into read buffer of current thread, 
+     * content which doesn't fit into it is read into buffer allocated by memAlloc
+     * @param pooled - read buffer of current thread
+     * @return pooled buffer valid until next read of thread 
+     * or allocated buffer which must be freed by caller
+     */
+    private ByteBuffer readContent(ByteBuffer pooled) throws IOException {
+        long size = size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Resource is too large " + this);
+        }
+        ByteBuffer buffer = size > pooled.capacity() 
+                ? MemoryUtil.memAlloc((int) size) : pooled;
+        buffer.clear();
+        try (InputStream in = openStream(); 
+                ReadableByteChannel channel = Channels.newChannel(in)) {
+            while (channel.read(buffer) >= 0) {
+                if (!buffer.hasRemaining()) {
+                    //full buffer of known size usually holds whole content, 
+                    //it grows only if size was unknown or wrong
+                    int next = in.read();
+                    if (next < 0) {
+                        break;
+                    }
+                    buffer = grow(buffer, pooled);
+                    buffer.put((byte) next);
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            if (buffer != pooled) {
+                MemoryUtil.memFree(buffer);
+            }
+            throw ex;
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    /**
+     * @return allocated buffer of double capacity with content of full buffer, 
+     * previous buffer is freed unless it is pooled
+     */
+    private static ByteBuffer grow(ByteBuffer buffer, ByteBuffer pooled) {
+        ByteBuffer grown = MemoryUtil.memAlloc(buffer.capacity() * 2);
+        buffer.flip();
+        grown.put(buffer);
+        if (buffer != pooled) {
+            MemoryUtil.memFree(buffer);
+        }
+        return grown;
+    }
+
+    @Override
+    public String toString() {
+        return getId();
+    }
+    
+}
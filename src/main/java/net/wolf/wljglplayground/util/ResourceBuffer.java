@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Content of resource in native memory: mapping of file 
+ * or copy allocated by memAlloc which is freed on close
+ * @author Volchkov Andrey
+ */
+public final class ResourceBuffer implements Deletable, Closeable {
+    
+    private final ByteBuffer data;
+    //data is allocated by memAlloc and must be freed
+    private final boolean owned;
+    private boolean closed;
+
+    /**
+     * @param data - content of resource
+     * @param owned - data is allocated by memAlloc and freed on close
+     */
+    public ResourceBuffer(ByteBuffer data, boolean owned) {
+        this.data = data;
+        this.owned = owned;
+    }
+
+    /**
+     * @return content of resource, valid until buffer is closed
+     */
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    public int size() {
+        return data.remaining();
+    }
+    
+    public boolean isOwned() {
+        return owned;
+    }
+
+    @Override
+    public void delete() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (owned) {
+            MemoryUtil.memFree(data);
+        }
+    }
+
+    @Override
+    public void close() {
+        delete();
+    }
+    
+}
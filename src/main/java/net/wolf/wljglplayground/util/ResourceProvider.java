@@ -0,0 +1,156 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+
+/**
+ * Provider of resources by name, e.g. "/textures/stone.jpg". 
+ * Default provider reads classpath or directory set by property {@value #RESOURCE_DIR_PROPERTY}
+ * @author Volchkov Andrey
+ */
+public abstract class ResourceProvider {
+    
+    public static final String RESOURCE_DIR_PROPERTY = "wljgl.resourceDir";
+    
+    private static volatile ResourceProvider defaultProvider = createDefault();
+    
+    public static ResourceProvider getDefault() {
+        return defaultProvider;
+    }
+    
+    public static void setDefault(ResourceProvider provider) {
+        defaultProvider = Objects.requireNonNull(provider);
+    }
+    
+    /**
+     * @param classLoader - loader of resources
+     * @return provider of classpath and jar resources
+     */
+    public static ResourceProvider classpath(ClassLoader classLoader) {
+        return new ClasspathProvider(classLoader);
+    }
+    
+    /**
+     * @param root - root directory of resources
+     * @return provider of directory resources
+     */
+    public static ResourceProvider directory(Path root) {
+        return new DirectoryProvider(root);
+    }
+    
+    private static ResourceProvider createDefault() {
+        String resourceDir = System.getProperty(RESOURCE_DIR_PROPERTY);
+        if (resourceDir != null) {
+            return directory(Paths.get(resourceDir));
+        }
+        return classpath(ResourceProvider.class.getClassLoader());
+    }
+    
+    /**
+     * @param name - name of resource
+     * @return resource or null if not found
+     */
+    public abstract Resource find(String name);
+    
+    /**
+     * @param name - name of resource
+     * @return resource
+     * @throws IOException if resource isn't found
+     */
+    public Resource get(String name) throws IOException {
+        Resource resource = find(name);
+        if (resource == null) {
+            throw new IOException("Resource not found " + name);
+        }
+        return resource;
+    }
+    
+    /**
+     * @return name without leading slash
+     */
+    static String toRelative(String name) {
+        String relative = name.trim();
+        while (relative.startsWith("/")) {
+            relative = relative.substring(1);
+        }
+        return relative;
+    }
+    
+    /**
+     * Resources of class loader, files of directories are mapped, 
+     * jar entries are read by stream
+     */
+    private static class ClasspathProvider extends ResourceProvider {
+        
+        private final ClassLoader classLoader;
+
+        ClasspathProvider(ClassLoader classLoader) {
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public Resource find(String name) {
+            URL url = classLoader.getResource(toRelative(name));
+            if (url == null) {
+                return null;
+            }
+            if ("file".equals(url.getProtocol())) {
+                try {
+                    return new FileResource(name, Paths.get(url.toURI()));
+                } catch (URISyntaxException | IllegalArgumentException ex) {
+                    //not convertible to path, read by stream
+                }
+            }
+            return new UrlResource(name, url);
+        }
+        
+    }
+    
+    /**
+     * Resources of directory
+     */
+    private static class DirectoryProvider extends ResourceProvider {
+        
+        private final Path root;
+
+        DirectoryProvider(Path root) {
+            this.root = root;
+        }
+
+        @Override
+        public Resource find(String name) {
+            Path path = root.resolve(toRelative(name));
+            return Files.isRegularFile(path) ? new FileResource(name, path) : null;
+        }
+        
+    }
+    
+}
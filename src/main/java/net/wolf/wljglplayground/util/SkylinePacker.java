@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rectangle packer by skyline bottom-left heuristic: 
+ * top edge of packed rectangles is kept as list of horizontal segments, 
+ * new rectangle is placed at the lowest position of skyline
+ * @author Volchkov Andrey
+ */
+public class SkylinePacker {
+    
+    private final int width;
+    private final int height;
+    //segments of skyline from left to right
+    private final List<int[]> skyline = new ArrayList<>();
+
+    public SkylinePacker(int width, int height) {
+        this.width = width;
+        this.height = height;
+        //segment: x, y, width
+        skyline.add(new int[] {0, 0, width});
+    }
+    
+    /**
+     * Find place of rectangle and add it to skyline
+     * @param rectWidth - width of rectangle
+     * @param rectHeight - height of rectangle
+     * @param position - result x and y of rectangle
+     * @return false if there is no place for rectangle
+     */
+    public boolean pack(int rectWidth, int rectHeight, int[] position) {
+        int bestIndex = -1;
+        int bestY = Integer.MAX_VALUE;
+        int bestWidth = Integer.MAX_VALUE;
+        for (int i = 0; i < skyline.size(); ++i) {
+            int y = fit(i, rectWidth, rectHeight);
+            if (y < 0) {
+                continue;
+            }
+            int segmentWidth = skyline.get(i)[2];
+            if (y < bestY || (y == bestY && segmentWidth < bestWidth)) {
+                bestIndex = i;
+                bestY = y;
+                bestWidth = segmentWidth;
+            }
+        }
+        if (bestIndex < 0) {
+            return false;
+        }
+        position[0] = skyline.get(bestIndex)[0];
+        position[1] = bestY;
+        addSegment(bestIndex, position[0], bestY + rectHeight, rectWidth);
+        return true;
+    }
+    
+    /**
+     * @return y of rectangle placed at left of segment or -1 if it doesn't fit
+     */
+    private int fit(int index, int rectWidth, int rectHeight) {
+        int x = skyline.get(index)[0];
+        if (x + rectWidth > width) {
+            return -1;
+        }
+        int y = 0;
+        int left = rectWidth;
+        for (int i = index; left > 0; ++i) {
+            int[] segment = skyline.get(i);
+            y = Math.max(y, segment[1]);
+            if (y + rectHeight > height) {
+                return -1;
+            }
+            left -= segment[2];
+        }
+        return y;
+    }
+    
+    /**
+     * Insert new segment and cut segments covered by it
+     */
+    private void addSegment(int index, int x, int y, int segmentWidth) {
+        skyline.add(index, new int[] {x, y, segmentWidth});
+        int right = x + segmentWidth;
+        for (int i = index + 1; i < skyline.size(); ) {
+            int[] segment = skyline.get(i);
+            if (segment[0] >= right) {
+                break;
+            }
+            int shrink = right - segment[0];
+            if (segment[2] <= shrink) {
+                skyline.remove(i);
+            } else {
+                segment[0] += shrink;
+                segment[2] -= shrink;
+                break;
+            }
+        }
+        //merge neighbours of same height
+        for (int i = 0; i < skyline.size() - 1; ) {
+            int[] segment = skyline.get(i);
+            int[] next = skyline.get(i + 1);
+            if (segment[1] == next[1]) {
+                segment[2] += next[2];
+                skyline.remove(i + 1);
+            } else {
+                ++i;
+            }
+        }
+    }
+    
+}
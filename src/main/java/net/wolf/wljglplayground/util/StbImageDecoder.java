@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.lwjgl.stb.STBImage.stbi_failure_reason;
+import static org.lwjgl.stb.STBImage.stbi_info_from_memory;
+import static org.lwjgl.stb.STBImage.stbi_is_hdr_from_memory;
+import static org.lwjgl.stb.STBImage.stbi_load_from_memory;
+import static org.lwjgl.stb.STBImage.stbi_loadf_from_memory;
+
+/**
+ * Decoder by stb_image: compressed resource is read into native memory 
+ * (files are mapped) and decoded directly into native pixels without heap image. 
+ * HDR images (Radiance .hdr) are decoded as float RGB. 
+ * Bundled stb_image has no 16 bit API, 16 bit PNG is reduced to 8 bit.
+ * Pixels are allocated by LWJGL allocator, so they are freed by memFree as other levels
+ * @author Volchkov Andrey
+ */
+public class StbImageDecoder implements ImageDecoder {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(StbImageDecoder.class);
+
+    @Override
+    public ImageData decode(Resource resource) throws IOException {
+        LOG.debug("Decode image {} by stb_image", resource);
+        try (ResourceBuffer encoded = resource.read();
+                MemoryStack stack = MemoryStack.stackPush()) {
+            ByteBuffer data = encoded.getData();
+            IntBuffer width = stack.mallocInt(1);
+            IntBuffer height = stack.mallocInt(1);
+            IntBuffer channels = stack.mallocInt(1);
+            if (!stbi_info_from_memory(data, width, height, channels)) {
+                throw new IOException("Unsupported image " + resource + ": " + stbi_failure_reason());
+            }
+            //gray is expanded to RGB, gray with alpha to RGBA
+            int components = channels.get(0) == 2 || channels.get(0) == 4 ? 4 : 3;
+            int glType = components == 4 ? GL11.GL_RGBA : GL11.GL_RGB;
+            
+            ImageData imageData;
+            if (stbi_is_hdr_from_memory(data)) {
+                FloatBuffer pixels = stbi_loadf_from_memory(data, width, height, channels, components);
+                if (pixels == null) {
+                    throw new IOException("Can't decode " + resource + ": " + stbi_failure_reason());
+                }
+                imageData = new ImageData(width.get(0), height.get(0), glType, GL11.GL_FLOAT, 
+                        new ByteBuffer[] {MemoryUtil.memByteBuffer(MemoryUtil.memAddress(pixels), 
+                                pixels.remaining() * Float.BYTES)}, null);
+            } else {
+                ByteBuffer pixels = stbi_load_from_memory(data, width, height, channels, components);
+                if (pixels == null) {
+                    throw new IOException("Can't decode " + resource + ": " + stbi_failure_reason());
+                }
+                imageData = new ImageData(width.get(0), height.get(0), glType, 
+                        new ByteBuffer[] {pixels}, null);
+            }
+            LOG.debug("Image data {}", imageData);
+            return imageData;
+        }
+    }
+    
+}
@@ -0,0 +1,231 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Disk cache of decoded textures. Cache file keeps swizzled pixels of all 
+ * mipmap levels, it is keyed by name of source image and validated by size 
+ * and CRC32 of source, so cache baked from resource directory is valid 
+ * for the same resources packed into jar. Cached data is memory mapped and used 
+ * without decoding and copying. 
+ * Cache directory is set by system property {@value #CACHE_DIR_PROPERTY}, 
+ * value "off" disables cache
+ * @author Volchkov Andrey
+ */
+public class TextureCache {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(TextureCache.class);
+    
+    public static final String CACHE_DIR_PROPERTY = "wljgl.textureCache";
+    
+    private static final int MAGIC = 0x574C5458; //WLTX
+    private static final int VERSION = 4;
+    //magic, version, source size, source CRC32, mipmap filter, GL type, width, height, levels, 
+    //pixel type
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4 + 4 + 4;
+    //offset and size of level
+    private static final int LEVEL_SIZE = 8 + 8;
+    
+    private static final TextureCache INSTANCE = new TextureCache(
+            System.getProperty(CACHE_DIR_PROPERTY, 
+                    Paths.get(System.getProperty("user.home"), ".wljglplayground", "texture-cache")
+                            .toString()));
+    
+    public static TextureCache getInstance() {
+        return INSTANCE;
+    }
+    
+    private final Path cacheDir;
+
+    /**
+     * @param cacheDir - directory of cache files or "off"
+     */
+    TextureCache(String cacheDir) {
+        this.cacheDir = "off".equals(cacheDir) ? null : Paths.get(cacheDir);
+    }
+    
+    public boolean isEnabled() {
+        return cacheDir != null;
+    }
+    
+    /**
+     * Map cached data of image
+     * @param source - source image resource
+     * @param filter - filter of mipmaps
+     * @return mapped image data or null if cache is missed or stale
+     * @throws IOException 
+     */
+    public ImageData load(Resource source, MipmapGenerator.Filter filter) throws IOException {
+        if (!isEnabled()) {
+            return null;
+        }
+        Path cacheFile = getCacheFile(source);
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+        ResourceBuffer buffer = Resource.of(cacheFile).read();
+        ByteBuffer mapped = buffer.getData();
+        if (mapped.limit() < HEADER_SIZE
+                || mapped.getInt(0) != MAGIC 
+                || mapped.getInt(4) != VERSION
+                || mapped.getLong(8) != source.size() 
+                || mapped.getLong(16) != source.checksum()
+                || mapped.getInt(24) != filter.ordinal()) {
+            LOG.debug("Stale texture cache {} of {}", cacheFile, source);
+            buffer.close();
+            return null;
+        }
+        int glType = mapped.getInt(28);
+        int width = mapped.getInt(32);
+        int height = mapped.getInt(36);
+        int count = mapped.getInt(40);
+        int pixelType = mapped.getInt(44);
+        
+        ByteBuffer[] levels = readLevels(mapped, count);
+        if (levels == null) {
+            LOG.warn("Corrupt texture cache {} of {}", cacheFile, source);
+            buffer.close();
+            return null;
+        }
+        LOG.debug("Texture {} mapped from cache", source);
+        return new ImageData(width, height, glType, pixelType, levels, buffer);
+    }
+    
+    /**
+     * Write image data with all levels into cache, 
+     * file is replaced atomically so concurrent readers never see partial file
+     * @param source - source image resource
+     * @param imageData - decoded image
+     * @param filter - filter of mipmaps
+     * @throws IOException 
+     */
+    public void store(Resource source, ImageData imageData, MipmapGenerator.Filter filter) 
+            throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        Files.createDirectories(cacheDir);
+        Path cacheFile = getCacheFile(source);
+        Path tmpFile = Files.createTempFile(cacheDir, cacheFile.getFileName().toString(), ".tmp");
+        
+        int count = imageData.getMipmapCount();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + count * LEVEL_SIZE);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(source.size())
+                .putLong(source.checksum())
+                .putInt(filter.ordinal())
+                .putInt(imageData.getGlType())
+                .putInt(imageData.getWidth())
+                .putInt(imageData.getHeight())
+                .putInt(count)
+                .putInt(imageData.getPixelType());
+        long offset = header.capacity();
+        for (int level = 0; level < count; ++level) {
+            long size = imageData.getMipmapData(level).remaining();
+            header.putLong(offset).putLong(size);
+            offset += size;
+        }
+        header.flip();
+        
+        try {
+            try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE)) {
+                writeFully(channel, header);
+                for (int level = 0; level < count; ++level) {
+                    writeFully(channel, imageData.getMipmapData(level).duplicate());
+                }
+            }
+            Files.move(tmpFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, 
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+        LOG.debug("Texture {} stored into cache {}", source, cacheFile);
+    }
+    
+    /**
+     * Slice levels of cache file, offsets of header are validated
+     * @return levels or null if header doesn't match file
+     */
+    private static ByteBuffer[] readLevels(ByteBuffer mapped, int count) {
+        long dataStart = HEADER_SIZE + (long) count * LEVEL_SIZE;
+        if (count <= 0 || dataStart > mapped.limit()) {
+            return null;
+        }
+        ByteBuffer[] levels = new ByteBuffer[count];
+        for (int level = 0; level < count; ++level) {
+            int entry = HEADER_SIZE + level * LEVEL_SIZE;
+            long offset = mapped.getLong(entry);
+            long size = mapped.getLong(entry + 8);
+            if (offset < dataStart || size < 0 || offset + size > mapped.limit()) {
+                return null;
+            }
+            ByteBuffer data = mapped.duplicate();
+            data.position((int) offset).limit((int) (offset + size));
+            levels[level] = data.slice();
+        }
+        return levels;
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+    
+    /**
+     * @return cache file named by hash of source name, 
+     * same for file and jar resource of one name
+     */
+    private Path getCacheFile(Resource source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(ResourceProvider.toRelative(source.getName())
+                    .getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(hash.length * 2 + 4);
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+            return cacheDir.resolve(name.append(".tex").toString());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+}
@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Command line tool for pre-building of texture cache, 
+ * cache directory is set by {@value TextureCache#CACHE_DIR_PROPERTY} property. 
+ * Images are baked under resource names relative to given resource roots 
+ * (e.g. "/textures/stone.jpg"), the names by which application finds them 
+ * in classpath directory or jar
+ * @author Volchkov Andrey
+ */
+public class TextureCacheBaker {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(TextureCacheBaker.class);
+    
+    private static final String[] IMAGE_EXTENSIONS = {".png", ".jpg", ".jpeg"};
+
+    private TextureCacheBaker() {
+    }
+    
+    private static boolean isImage(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String extension : IMAGE_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static List<Resource> findImages(List<Path> roots) throws IOException {
+        List<Resource> images = new ArrayList<>();
+        for (Path root : roots) {
+            try (Stream<Path> files = Files.walk(root)) {
+                images.addAll(files.filter(Files::isRegularFile)
+                        .filter(TextureCacheBaker::isImage)
+                        .map((image) -> toResource(root, image))
+                        .collect(Collectors.toList()));
+            }
+        }
+        return images;
+    }
+    
+    /**
+     * @return resource of image named relative to resource root
+     */
+    private static Resource toResource(Path root, Path image) {
+        StringBuilder name = new StringBuilder();
+        for (Path part : root.relativize(image)) {
+            name.append('/').append(part.toString());
+        }
+        return new FileResource(name.toString(), image);
+    }
+    
+    private static void bake(Resource image) {
+        try (ImageData imageData = TextureDataLoader.getInstance()
+                .loadImageData(image)) {
+            LOG.info("Baked {} {}", image.getName(), imageData);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Error baking " + image, ex);
+        }
+    }
+
+    /**
+     * Bake all images of resource directories
+     * @param args - resource root directories, classpath root of /textures by default
+     * @throws Exception 
+     */
+    public static void main(String[] args) throws Exception {
+        TextureCache cache = TextureCache.getInstance();
+        if (!cache.isEnabled()) {
+            LOG.error("Texture cache is disabled");
+            return;
+        }
+        List<Path> roots = new ArrayList<>();
+        for (String arg : args) {
+            roots.add(Paths.get(arg));
+        }
+        if (roots.isEmpty()) {
+            URL textures = TextureCacheBaker.class.getResource("/textures");
+            if (textures == null) {
+                LOG.error("No texture resources found");
+                return;
+            }
+            Path texturesDir;
+            try {
+                texturesDir = Paths.get(textures.toURI());
+            } catch (URISyntaxException ex) {
+                texturesDir = new File(textures.getFile()).toPath();
+            }
+            roots.add(texturesDir.getParent());
+        }
+        
+        long start = System.nanoTime();
+        List<Resource> images = findImages(roots);
+        images.parallelStream()
+                .forEach(TextureCacheBaker::bake);
+        LOG.info("Baked {} textures in {} ms", images.size(), 
+                (System.nanoTime() - start) / 1000000L);
+    }
+    
+}
@@ -23,11 +23,8 @@
  */
 package net.wolf.wljglplayground.util;
 
-import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import javax.imageio.ImageIO;
+import java.util.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,55 +36,93 @@ public class TextureDataLoader {
     
     private static final Logger LOG = LoggerFactory.getLogger(TextureDataLoader.class);
     
+    public static final String MIPMAP_FILTER_PROPERTY = "wljgl.mipFilter";
+    /** Image decoder: "imageio" (default) or "stb" */
+    public static final String DECODER_PROPERTY = "wljgl.imageDecoder";
+    
     private static final TextureDataLoader INSTANCE  = new TextureDataLoader();
     
+    //filter of generated mipmaps
+    private final MipmapGenerator.Filter mipmapFilter = MipmapGenerator.Filter.of(
+            System.getProperty(MIPMAP_FILTER_PROPERTY));
+    
+    private volatile ImageDecoder decoder = createDecoder(System.getProperty(DECODER_PROPERTY));
+    
     public static TextureDataLoader getInstance() {
         return INSTANCE;
     }
 
-    public ImageData loadImageData(File imageFile) throws IOException {
+    public ImageDecoder getDecoder() {
+        return decoder;
+    }
 
-        LOG.debug("Load texture " + imageFile);
-        BufferedImage image = ImageIO.read(imageFile);
-        LOG.debug("Fetching data ...");
-        ImageDataFetcher fetcher = getFetcher(image.getType()); 
-        ByteBuffer data = fetcher.fetch(image);
-        ImageData imageData = new ImageData(image.getWidth(), image.getHeight(), 
-                image.getType(), data);
-        LOG.debug("Image data {}", imageData);
-        return imageData;
-                
+    /**
+     * @param decoder - decoder of images loaded after this call
+     */
+    public void setDecoder(ImageDecoder decoder) {
+        this.decoder = Objects.requireNonNull(decoder);
     }
 
-    private ImageDataFetcher getFetcher(int imageType) {
-        switch (imageType) {
-            case BufferedImage.TYPE_3BYTE_BGR:
-            case BufferedImage.TYPE_BYTE_GRAY:
-                return new AbstractImageDataFetcher() { 
+    /**
+     * Load image data with all mipmap levels: DDS is read as is, 
+     * other images are taken from texture cache or decoded, 
+     * decoded image is stored into cache. 
+     * Mipmaps of 16 bit and HDR images are left to GPU
+     * @param imageFile - image resource
+     * @return image data
+     * @throws IOException 
+     */
+    public ImageData loadImageData(Resource imageFile) throws IOException {
+        if (DdsReader.isDds(imageFile)) {
+            return DdsReader.read(imageFile);
+        }
+        TextureCache cache = TextureCache.getInstance();
+        ImageData cached = cache.load(imageFile, mipmapFilter);
+        if (cached != null) {
+            return cached;
+        }
+        ImageData imageData = decodeImageData(imageFile);
+        if (imageData.isByteData()) {
+            imageData = MipmapGenerator.generate(imageData, mipmapFilter);
+        }
+        if (cache.isEnabled()) {
+            try {
+                cache.store(imageFile, imageData, mipmapFilter);
+            } catch (IOException ex) {
+                LOG.warn("Can't store texture cache of " + imageFile, ex);
+            }
+        }
+        return imageData;
+    }
 
-                    @Override
-                    protected void setData(BufferedImage image, int x, int y, ByteBuffer imgData) {
-                        int rgb = image.getRGB(x, y);
-                        imgData.put((byte) ((rgb >> 16) & 0xFF));    //red component
-                        imgData.put((byte) ((rgb >> 8) & 0xFF));     //green component
-                        imgData.put((byte) (rgb & 0xFF));            //blue component
-                    }
-                };
-            case BufferedImage.TYPE_4BYTE_ABGR:
-                return new AbstractImageDataFetcher() { 
+    /**
+     * Load only base image for consumers which don't sample mipmaps: 
+     * DDS is read as is, other images are decoded without mipmaps and cache
+     * @param imageFile - image resource
+     * @return image data
+     * @throws IOException 
+     */
+    public ImageData loadBaseImageData(Resource imageFile) throws IOException {
+        if (DdsReader.isDds(imageFile)) {
+            return DdsReader.read(imageFile);
+        }
+        return decodeImageData(imageFile);
+    }
 
-                    @Override
-                    protected void setData(BufferedImage image, int x, int y, ByteBuffer imgData) {
-                        int rgba = image.getRGB(x, y);
-                        imgData.put((byte) ((rgba >> 16) & 0xFF));    //red component
-                        imgData.put((byte) ((rgba >> 8) & 0xFF));     //green component
-                        imgData.put((byte) (rgba & 0xFF));            //blue component
-                        imgData.put((byte) ((rgba >> 24) & 0xFF));    //alpha component
-                    }
-                };
-            default:
-                throw new IllegalArgumentException("Image type " + imageType 
-                        + " not supported!");
+    /**
+     * Decode image by current decoder
+     * @param imageFile - image resource
+     * @return base image data without mipmaps
+     * @throws IOException 
+     */
+    public ImageData decodeImageData(Resource imageFile) throws IOException {
+        return decoder.decode(imageFile);
+    }
+    
+    private static ImageDecoder createDecoder(String name) {
+        if ("stb".equalsIgnoreCase(name)) {
+            return new StbImageDecoder();
         }
+        return new ImageIODecoder();
     }
 }
@@ -0,0 +1,264 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous texture loading service: images are decoded by pool of 
+ * worker threads into off-heap {@link ImageData}, decoded data is 
+ * uploaded to GL on render thread by {@link #processUploads(long)}. 
+ * {@link #shutdown()} cancels pending work, workers are started again 
+ * by next decoding
+ * @author Volchkov Andrey
+ */
+public class TextureLoader {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(TextureLoader.class);
+    
+    private static final TextureLoader INSTANCE = new TextureLoader(
+            Runtime.getRuntime().availableProcessors());
+    
+    public static TextureLoader getInstance() {
+        return INSTANCE;
+    }
+    
+    private final int threads;
+    private final AtomicInteger threadNumber = new AtomicInteger();
+    //created by first decoding after start or shutdown, guarded by this
+    private ExecutorService workers;
+    //uploads waiting for render thread
+    private final Queue<Upload<?>> uploads = new ConcurrentLinkedQueue<>();
+    //incremented by shutdown, uploads of previous generations are cancelled
+    private volatile int generation;
+    
+    //count of pixel buffers for uploads
+    private static final int PIXEL_BUFFERS = 4;
+    //streaming buffers of render thread, created by first upload
+    private PixelBufferRing pixelBuffers;
+
+    private TextureLoader(int threads) {
+        this.threads = threads;
+    }
+    
+    private synchronized ExecutorService getWorkers() {
+        if (workers == null) {
+            workers = Executors.newFixedThreadPool(threads, (runnable) -> {
+                Thread thread = new Thread(runnable, 
+                        "texture-loader-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            LOG.debug("Texture loader with {} threads", threads);
+        }
+        return workers;
+    }
+    
+    /**
+     * Decode image with mipmaps on worker thread
+     * @param image - image resource
+     * @return future of decoded data, caller must delete data
+     */
+    public CompletableFuture<ImageData> decode(Resource image) {
+        return decode(image, true);
+    }
+    
+    /**
+     * Decode image on worker thread
+     * @param image - image resource
+     * @param mipmaps - load mipmaps, false if only base image is used
+     * @return future of decoded data, caller must delete data
+     */
+    public CompletableFuture<ImageData> decode(Resource image, boolean mipmaps) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                TextureDataLoader dataLoader = TextureDataLoader.getInstance();
+                return mipmaps 
+                        ? dataLoader.loadImageData(image) 
+                        : dataLoader.loadBaseImageData(image);
+            } catch (Exception ex) {
+                throw new CompletionException("Error loading image " + image, ex);
+            }
+        }, getWorkers());
+    }
+    
+    /**
+     * Decode image on worker thread and upload it on render thread. 
+     * Image data is deleted after uploading
+     * @param <T> - type of upload result
+     * @param image - image resource
+     * @param uploader - GL upload of decoded data, called on render thread
+     * @return future completed on render thread after upload
+     */
+    public <T> CompletableFuture<T> load(Resource image, Function<ImageData, T> uploader) {
+        return load(image, true, uploader);
+    }
+    
+    /**
+     * Decode image on worker thread and upload it on render thread. 
+     * Image data is deleted after uploading
+     * @param <T> - type of upload result
+     * @param image - image resource
+     * @param mipmaps - load mipmaps, false if only base image is uploaded
+     * @param uploader - GL upload of decoded data, called on render thread
+     * @return future completed on render thread after upload
+     */
+    public <T> CompletableFuture<T> load(Resource image, boolean mipmaps, 
+            Function<ImageData, T> uploader) {
+        return upload(decode(image, mipmaps), uploader);
+    }
+    
+    /**
+     * Upload image on render thread when it is ready, 
+     * image data is deleted after uploading
+     * @param <T> - type of upload result
+     * @param image - future of image data, e.g. decoded and processed by workers
+     * @param uploader - GL upload of image data, called on render thread
+     * @return future completed on render thread after upload
+     */
+    public <T> CompletableFuture<T> upload(CompletableFuture<ImageData> image, 
+            Function<ImageData, T> uploader) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        int uploadGeneration = generation;
+        image.whenComplete((imageData, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            Upload<T> upload = new Upload<>(imageData, uploader, result);
+            if (uploadGeneration != generation) {
+                upload.cancel();
+                return;
+            }
+            uploads.add(upload);
+            //shutdown could drain queue before adding, 
+            //upload is cancelled by whoever removes it
+            if (uploadGeneration != generation && uploads.remove(upload)) {
+                upload.cancel();
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Upload decoded images, must be called on render thread. 
+     * At least one upload is done per call, so big images can't stall queue
+     * @param budgetNanos - time budget of uploads
+     * @return count of done uploads
+     */
+    public int processUploads(long budgetNanos) {
+        long start = System.nanoTime();
+        int count = 0;
+        Upload<?> upload;
+        while ((upload = uploads.poll()) != null) {
+            upload.run();
+            count++;
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Pixel buffers for texture uploads, must be used on render thread
+     * @return ring of pixel unpack buffers
+     */
+    public PixelBufferRing getPixelBuffers() {
+        if (pixelBuffers == null) {
+            pixelBuffers = new PixelBufferRing(PIXEL_BUFFERS);
+            pixelBuffers.init();
+        }
+        return pixelBuffers;
+    }
+    
+    /**
+     * @return count of decoded images waiting for upload
+     */
+    public int getPendingUploads() {
+        return uploads.size();
+    }
+    
+    /**
+     * Stop workers and delete data of not uploaded images 
+     * and pixel buffers, must be called on render thread. 
+     * Futures of pending loads are cancelled, loading can be started again
+     */
+    public void shutdown() {
+        synchronized (this) {
+            generation++;
+            if (workers != null) {
+                workers.shutdownNow();
+                workers = null;
+            }
+        }
+        Upload<?> upload;
+        while ((upload = uploads.poll()) != null) {
+            upload.cancel();
+        }
+        if (pixelBuffers != null) {
+            pixelBuffers.delete();
+            pixelBuffers = null;
+        }
+    }
+    
+    /**
+     * Decoded image waiting for upload
+     */
+    private static final class Upload<T> {
+        private final ImageData imageData;
+        private final Function<ImageData, T> uploader;
+        private final CompletableFuture<T> result;
+
+        private Upload(ImageData imageData, Function<ImageData, T> uploader, 
+                CompletableFuture<T> result) {
+            this.imageData = imageData;
+            this.uploader = uploader;
+            this.result = result;
+        }
+        
+        private void run() {
+            try (ImageData data = imageData) {
+                result.complete(uploader.apply(data));
+            } catch (RuntimeException ex) {
+                result.completeExceptionally(ex);
+            }
+        }
+        
+        private void cancel() {
+            imageData.delete();
+            result.cancel(false);
+        }
+    }
+    
+}
@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.jar.JarEntry;
+
+/**
+ * Resource of URL, e.g. entry of jar, content is read from stream
+ * @author Volchkov Andrey
+ */
+class UrlResource extends Resource {
+    
+    private final URL url;
+
+    UrlResource(String name, URL url) {
+        super(name);
+        this.url = url;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    @Override
+    public String getId() {
+        return url.toExternalForm();
+    }
+
+    @Override
+    public long size() throws IOException {
+        URLConnection connection = url.openConnection();
+        try {
+            return connection.getContentLengthLong();
+        } finally {
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Time of jar entry or header of connection, content isn't read
+     */
+    @Override
+    public long lastModified() throws IOException {
+        URLConnection connection = url.openConnection();
+        if (connection instanceof JarURLConnection) {
+            JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+            return entry != null ? entry.getTime() : 0L;
+        }
+        try {
+            return connection.getLastModified();
+        } finally {
+            closeConnection(connection);
+        }
+    }
+    
+    /**
+     * Close connection opened only for headers, e.g. file connection 
+     * opens its stream to read headers. Jar files are cached by URL handler
+     */
+    private static void closeConnection(URLConnection connection) {
+        if (connection instanceof HttpURLConnection) {
+            ((HttpURLConnection) connection).disconnect();
+        } else if (!(connection instanceof JarURLConnection)) {
+            try {
+                connection.getInputStream().close();
+            } catch (IOException ex) {
+                //nothing to close
+            }
+        }
+    }
+
+    /**
+     * CRC32 stored in jar entry, content is read only for other URLs
+     */
+    @Override
+    public long checksum() throws IOException {
+        URLConnection connection = url.openConnection();
+        if (connection instanceof JarURLConnection) {
+            JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+            if (entry != null && entry.getCrc() != -1) {
+                return entry.getCrc();
+            }
+        }
+        return super.checksum();
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return url.openStream();
+    }
+    
+}
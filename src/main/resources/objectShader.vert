@@ -11,8 +11,13 @@ out vec2 texCoord;
 
 //matrixes
 uniform mat4 modelMatrix;
-uniform mat4 viewMatrix;
-uniform mat4 projectionMatrix;
+
+//camera data shared between programs
+layout (std140) uniform FrameData {
+    mat4 projectionMatrix;
+    mat4 viewMatrix;
+    vec3 viewPos;
+};
 
 
 
@@ -0,0 +1,75 @@
+#version 330 core
+
+in vec3 normal;
+in vec3 fragmentPos;
+in vec2 texCoord;
+
+out vec4 color;
+
+struct Light {
+    vec3 position;    
+    vec3 ambient;
+    vec3 diffuse;
+    vec3 specular;
+}; 
+
+//camera and light data shared between programs
+layout (std140) uniform FrameData {
+    mat4 projectionMatrix;
+    mat4 viewMatrix;
+    vec3 viewPos;
+};
+
+layout (std140) uniform LightData {
+    Light light;
+};
+
+uniform mat3 normalMatrix;
+uniform float shininess;
+//images of material in layers of atlas, rect is min and max UV in layer
+uniform sampler2DArray textureAtlas;
+uniform vec4 diffuseRect;
+uniform int diffuseLayer;
+uniform vec4 specularRect;
+uniform int specularLayer;
+
+//repeat texture coordinates inside of atlas region, 
+//gradients of unwrapped coordinates keep mipmap selection smooth on seams
+vec3 sampleAtlas(vec4 rect, int layer) {
+    vec2 size = rect.zw - rect.xy;
+    vec2 uv = rect.xy + fract(texCoord) * size;
+    return vec3(textureGrad(textureAtlas, vec3(uv, float(layer)), 
+            dFdx(texCoord) * size, dFdy(texCoord) * size));
+}
+
+void main(){
+    vec3 norm = normalize(normalMatrix * normal);
+
+    vec3 texDiffuse = sampleAtlas(diffuseRect, diffuseLayer);
+    vec3 texSpecular = sampleAtlas(specularRect, specularLayer);
+
+    //ambient color
+    vec3 ambient = 0.2f * light.ambient * texDiffuse;
+
+    //diffuse calculation    
+    vec3 lightDir = normalize(light.position - fragmentPos);
+    float diff = clamp(dot(norm, lightDir), 0.0f, 1.0f);
+    vec3 diffuse = diff * light.diffuse * texDiffuse;
+
+    //specular calculation
+    vec3 lookDir = normalize(viewPos - fragmentPos);    
+    vec3 reflectDir = reflect(-lightDir, norm);
+    float spec = pow(clamp(dot(lookDir, reflectDir), 0.0f, 1.0f), shininess);
+    
+    vec3 specular =  light.specular * spec * texSpecular;
+
+    vec3 mixed = specular + diffuse + ambient;
+
+    color = vec4(mixed, 1.0f);
+
+    /*Debugging*/
+    //color.rgb = vec3(spec, spec, spec);
+    //color.a = 1.0f;
+
+}
+
@@ -0,0 +1,50 @@
+#version 330 core
+//data from buffer
+layout(location = 0) in vec3 vertexPosition;
+layout(location = 1) in vec3 vertexNormal;
+layout(location = 2) in vec2 vertexTexCoord;
+
+//per instance data
+layout(location = 3) in mat4 instanceModelMatrix;
+layout(location = 7) in mat3 instanceNormalMatrix;
+layout(location = 10) in vec3 instanceAmbient;
+layout(location = 11) in vec3 instanceDiffuse;
+layout(location = 12) in vec3 instanceSpecular;
+//shininess, useBlinn
+layout(location = 13) in vec2 instanceShininess;
+
+//data for fragment shader
+out vec3 fragmentPos;
+out vec3 normal;
+out vec2 texCoord;
+
+//material of instance
+flat out vec3 materialAmbient;
+flat out vec3 materialDiffuse;
+flat out vec3 materialSpecular;
+flat out float materialShininess;
+flat out int materialUseBlinn;
+
+//camera data shared between programs
+layout (std140) uniform FrameData {
+    mat4 projectionMatrix;
+    mat4 viewMatrix;
+    vec3 viewPos;
+};
+
+
+void main() {
+    //for Phong lighting
+    fragmentPos = vec3(instanceModelMatrix * vec4(vertexPosition, 1.0f));
+    
+    normal = instanceNormalMatrix * vertexNormal;
+    texCoord = vertexTexCoord;
+
+    materialAmbient = instanceAmbient;
+    materialDiffuse = instanceDiffuse;
+    materialSpecular = instanceSpecular;
+    materialShininess = instanceShininess.x;
+    materialUseBlinn = int(instanceShininess.y);
+
+    gl_Position = projectionMatrix * viewMatrix * vec4(fragmentPos, 1.0f);    
+}
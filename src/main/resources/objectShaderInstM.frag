@@ -0,0 +1,60 @@
+#version 330 core
+
+in vec3 normal;
+in vec3 fragmentPos;
+in vec2 texCoord;
+
+flat in vec3 materialAmbient;
+flat in vec3 materialDiffuse;
+flat in vec3 materialSpecular;
+flat in float materialShininess;
+flat in int materialUseBlinn;
+
+out vec4 color;
+
+struct Light {
+    vec3 position;    
+    vec3 ambient;
+    vec3 diffuse;
+    vec3 specular;
+}; 
+
+//camera and light data shared between programs
+layout (std140) uniform FrameData {
+    mat4 projectionMatrix;
+    mat4 viewMatrix;
+    vec3 viewPos;
+};
+
+layout (std140) uniform LightData {
+    Light light;
+};
+
+void main(){
+    //normal already transformed by instance normal matrix
+    vec3 norm = normalize(normal);
+
+    //ambient color
+    vec3 ambient = light.ambient * materialAmbient;
+
+    //diffuse calculation    
+    vec3 lightDir = normalize(light.position - fragmentPos);
+    float diff = clamp(dot(norm, lightDir), 0.0f, 1.0f);
+    vec3 diffuse = diff * light.diffuse * materialDiffuse;
+
+    //specular calculation
+    vec3 lookDir = normalize(viewPos - fragmentPos);    
+    float spec;
+    if (materialUseBlinn != 0) {
+        vec3 halfwayDir = normalize(lightDir + lookDir);  
+        spec = pow(max(dot(norm , halfwayDir), 0.0), materialShininess);
+    } else {
+        vec3 reflectDir = reflect(-lightDir, norm);
+        spec = pow(max(dot(lookDir, reflectDir), 0.0f), materialShininess);
+    }
+    vec3 specular =  light.specular * (spec * materialSpecular);
+
+    vec3 mixed = specular + diffuse + ambient;
+
+    color = vec4(mixed, 1.0f);
+}
@@ -22,9 +22,18 @@ struct Light {
 }; 
 
 uniform Material material;
-uniform Light light;
+//camera and light data shared between programs
+layout (std140) uniform FrameData {
+    mat4 projectionMatrix;
+    mat4 viewMatrix;
+    vec3 viewPos;
+};
+
+layout (std140) uniform LightData {
+    Light light;
+};
+
 uniform mat3 normalMatrix;
-uniform vec3 viewPos;
 
 void main(){
     vec3 norm = normalize(normalMatrix * normal);
@@ -0,0 +1,65 @@
+#version 330 core
+//data from buffer
+layout(location = 0) in vec3 vertexPosition;
+layout(location = 1) in vec3 vertexNormal;
+layout(location = 2) in vec2 vertexTexCoord;
+
+//index of draw, instanced attribute offset by base instance 
+//or constant value set before draw
+layout(location = 3) in uint drawIndex;
+
+//per draw data: mat4 model, mat3 normal as vec4 columns, 
+//material index in w of first normal column
+uniform samplerBuffer drawData;
+//materials: ambient + shininess, diffuse + useBlinn, specular
+uniform samplerBuffer materialData;
+
+//data for fragment shader
+out vec3 fragmentPos;
+out vec3 normal;
+out vec2 texCoord;
+
+//material of draw
+flat out vec3 materialAmbient;
+flat out vec3 materialDiffuse;
+flat out vec3 materialSpecular;
+flat out float materialShininess;
+flat out int materialUseBlinn;
+
+//camera data shared between programs
+layout (std140) uniform FrameData {
+    mat4 projectionMatrix;
+    mat4 viewMatrix;
+    vec3 viewPos;
+};
+
+
+void main() {
+    int base = int(drawIndex) * 7;
+    mat4 modelMatrix = mat4(texelFetch(drawData, base), 
+            texelFetch(drawData, base + 1),
+            texelFetch(drawData, base + 2),
+            texelFetch(drawData, base + 3));
+    vec4 normal0 = texelFetch(drawData, base + 4);
+    mat3 normalMatrix = mat3(normal0.xyz, 
+            texelFetch(drawData, base + 5).xyz,
+            texelFetch(drawData, base + 6).xyz);
+    
+    int material = int(normal0.w) * 3;
+    vec4 ambient = texelFetch(materialData, material);
+    vec4 diffuse = texelFetch(materialData, material + 1);
+
+    //for Phong lighting
+    fragmentPos = vec3(modelMatrix * vec4(vertexPosition, 1.0f));
+    
+    normal = normalMatrix * vertexNormal;
+    texCoord = vertexTexCoord;
+
+    materialAmbient = ambient.xyz;
+    materialDiffuse = diffuse.xyz;
+    materialSpecular = texelFetch(materialData, material + 2).xyz;
+    materialShininess = ambient.w;
+    materialUseBlinn = int(diffuse.w);
+
+    gl_Position = projectionMatrix * viewMatrix * vec4(fragmentPos, 1.0f);    
+}
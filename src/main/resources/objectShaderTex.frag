@@ -13,9 +13,18 @@ struct Light {
     vec3 specular;
 }; 
 
-uniform Light light;
+//camera and light data shared between programs
+layout (std140) uniform FrameData {
+    mat4 projectionMatrix;
+    mat4 viewMatrix;
+    vec3 viewPos;
+};
+
+layout (std140) uniform LightData {
+    Light light;
+};
+
 uniform mat3 normalMatrix;
-uniform vec3 viewPos;
 uniform float shininess;
 uniform sampler2D textureDiffuse;
 uniform sampler2D textureSpecular;
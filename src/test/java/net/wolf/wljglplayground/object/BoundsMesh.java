@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import org.joml.Vector3f;
+
+/**
+ * Mesh with bounds only, not drawable
+ * @author Volchkov Andrey
+ */
+final class BoundsMesh implements Mesh3d {
+    
+    private final BoundingVolume bounds;
+
+    BoundsMesh(float halfSize) {
+        bounds = BoundingVolume.of(new Vector3f[] {
+            new Vector3f(-halfSize), new Vector3f(halfSize)
+        });
+    }
+
+    @Override
+    public void init() {
+    }
+
+    @Override
+    public void draw() {
+    }
+
+    @Override
+    public void bind() {
+    }
+
+    @Override
+    public void drawBound() {
+    }
+
+    @Override
+    public int getSortKey() {
+        return 0;
+    }
+
+    @Override
+    public BoundingVolume getBounds() {
+        return bounds;
+    }
+
+    @Override
+    public void delete() {
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.lang.management.ManagementFactory;
+import net.wolf.wljglplayground.shader.ProgramGLSL;
+import org.joml.Vector3f;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Camera per-frame path must not allocate: moving, rotating, 
+ * culling and applying matrixes to program. Not linked program 
+ * resolves all uniforms to not active handle, so no GL context is needed
+ * @author Volchkov Andrey
+ */
+public class CameraAllocationTest {
+    
+    private static final int WARMUP_FRAMES = 20000;
+    private static final int FRAMES = 10000;
+    
+    private com.sun.management.ThreadMXBean threads;
+    private Camera camera;
+    private ProgramGLSL program;
+    private final Vector3f center = new Vector3f(0.f, 0.f, -10.f);
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        
+        camera = new Camera(45.f, 1.5f, 0.1f, 100.f,
+                new Vector3f(0.f, 0.f, 3.f),
+                new Vector3f(0.f, 1.f, 0.f),
+                new Vector3f(0.f, 0.f, -1.f));
+        program = new ProgramGLSL();
+    }
+    
+    @After
+    public void tearDown() {
+        if (program != null) {
+            program.delete();
+        }
+    }
+    
+    private void frame(int i) {
+        camera.rotate(i % 360, (i % 90) - 45);
+        camera.moveForward(0.01f);
+        camera.moveRight(0.01f);
+        camera.moveBackward(0.01f);
+        camera.moveLeft(0.01f);
+        camera.isVisible(center, 1.f);
+        camera.apply(program);
+        camera.applySkybox(program);
+    }
+
+    @Test
+    public void frameDoesNotAllocate() {
+        for (int i = 0; i < WARMUP_FRAMES; ++i) {
+            frame(i);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < FRAMES; ++i) {
+            frame(i);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        //less than one byte per frame leaves room for measurement itself
+        assertTrue("Camera allocated " + allocated + " bytes in " + FRAMES + " frames", 
+                allocated < FRAMES);
+    }
+    
+}
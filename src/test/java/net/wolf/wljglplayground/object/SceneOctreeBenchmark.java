@@ -0,0 +1,175 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.joml.Vector3f;
+
+/**
+ * Timing of frustum queries of {@link SceneOctree} against linear iteration 
+ * over all objects, objects are spread uniformly over world cube and camera 
+ * in its center looks in several directions. Run with enough heap for 1M objects: 
+ * mvn test-compile exec:java -Dexec.classpathScope=test 
+ * -Dexec.mainClass=net.wolf.wljglplayground.object.SceneOctreeBenchmark 
+ * @author Volchkov Andrey
+ */
+public class SceneOctreeBenchmark {
+    
+    private static final float WORLD_HALF_SIZE = 500.f;
+    private static final float FAR = 500.f;
+    //camera directions per round
+    private static final int DIRECTIONS = 16;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    //average count of objects in leaf which tree depth is chosen for
+    private static final int LEAF_OBJECTS = 8;
+    
+    private final List<Simple3dObject> objects;
+    private final SceneOctree octree;
+    private final Camera camera;
+    private final List<Simple3dObject> visible = new ArrayList<>();
+    
+    private SceneOctreeBenchmark(int count) {
+        Random random = new Random(count);
+        BoundsMesh mesh = new BoundsMesh(0.5f);
+        objects = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            objects.add(new Simple3dObject(mesh, new Vector3f(
+                    coord(random), coord(random), coord(random)), null));
+        }
+        octree = new SceneOctree(new Vector3f(), WORLD_HALF_SIZE, depth(count));
+        camera = new Camera((float) Math.toRadians(45.f), 16.f / 9.f, 0.1f, FAR,
+                new Vector3f(),
+                new Vector3f(0.f, 1.f, 0.f),
+                new Vector3f(0.f, 0.f, -1.f));
+    }
+    
+    private static float coord(Random random) {
+        return (random.nextFloat() * 2.f - 1.f) * WORLD_HALF_SIZE;
+    }
+    
+    /**
+     * @return depth giving about {@value #LEAF_OBJECTS} objects per leaf
+     */
+    private static int depth(int count) {
+        int depth = 1;
+        while (Math.pow(8, depth) * LEAF_OBJECTS < count) {
+            depth++;
+        }
+        return depth;
+    }
+    
+    private void look(int direction) {
+        camera.rotate(direction * 360.0 / DIRECTIONS, (direction % 3 - 1) * 20.0);
+    }
+    
+    private int queryOctree() {
+        visible.clear();
+        return octree.queryVisible(camera, visible);
+    }
+    
+    private int queryLinear() {
+        visible.clear();
+        for (int i = 0, n = objects.size(); i < n; ++i) {
+            Simple3dObject object = objects.get(i);
+            if (object.isVisible(camera)) {
+                visible.add(object);
+            }
+        }
+        return visible.size();
+    }
+    
+    /**
+     * @return average time of query in nanoseconds
+     */
+    private long time(boolean useOctree) {
+        long start = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; ++round) {
+            if (round == WARMUP_ROUNDS) {
+                start = System.nanoTime();
+            }
+            for (int direction = 0; direction < DIRECTIONS; ++direction) {
+                look(direction);
+                if (useOctree) {
+                    queryOctree();
+                } else {
+                    queryLinear();
+                }
+            }
+        }
+        return (System.nanoTime() - start) / (ROUNDS * DIRECTIONS);
+    }
+    
+    /**
+     * @param report - print timings, false for warming up of JIT
+     */
+    private void run(boolean report) {
+        long insertStart = System.nanoTime();
+        objects.forEach(octree::insert);
+        long insertTime = System.nanoTime() - insertStart;
+        
+        //both queries must find same objects
+        long found = 0;
+        for (int direction = 0; direction < DIRECTIONS; ++direction) {
+            look(direction);
+            int linear = queryLinear();
+            int tree = queryOctree();
+            if (linear != tree) {
+                throw new IllegalStateException("Octree found " + tree 
+                        + " of " + linear + " visible objects");
+            }
+            found += tree;
+        }
+        
+        long linearTime = time(false);
+        long octreeTime = time(true);
+        if (!report) {
+            return;
+        }
+        System.out.printf("%,9d objects, depth %d, insert %6.1f ms, visible %,7d: "
+                + "linear %8.3f ms, octree %7.3f ms, speedup %5.1fx%n",
+                objects.size(), depth(objects.size()), insertTime / 1e6, found / DIRECTIONS,
+                linearTime / 1e6, octreeTime / 1e6, (double) linearTime / octreeTime);
+    }
+    
+    /**
+     * @param args - counts of objects, 10k, 100k and 1M by default
+     */
+    public static void main(String[] args) {
+        int[] counts = {10_000, 100_000, 1_000_000};
+        if (args.length > 0) {
+            counts = new int[args.length];
+            for (int i = 0; i < args.length; ++i) {
+                counts[i] = Integer.parseInt(args[i]);
+            }
+        }
+        //compile both queries before measured runs
+        new SceneOctreeBenchmark(counts[0]).run(false);
+        for (int count : counts) {
+            new SceneOctreeBenchmark(count).run(true);
+        }
+    }
+}
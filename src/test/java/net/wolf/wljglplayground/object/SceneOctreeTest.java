@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.joml.Vector3f;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Objects must stay reachable by queries after moving between nodes 
+ * and pruning of empty branches
+ * @author Volchkov Andrey
+ */
+public class SceneOctreeTest {
+    
+    private SceneOctree octree;
+    //sees whole tree including loose margin of root
+    private Camera camera;
+    private final List<Simple3dObject> visible = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        octree = new SceneOctree(new Vector3f(), 16.f, 6);
+        camera = new Camera((float) Math.toRadians(90.f), 1.f, 0.1f, 500.f,
+                new Vector3f(0.f, 0.f, 100.f),
+                new Vector3f(0.f, 1.f, 0.f),
+                new Vector3f(0.f, 0.f, -1.f));
+        //default yaw looks along +x
+        camera.rotate(-90., 0.);
+    }
+    
+    private static Simple3dObject cube(float x, float y, float z) {
+        return new Simple3dObject(new BoundsMesh(0.25f), new Vector3f(x, y, z), null);
+    }
+    
+    private int queryVisible() {
+        visible.clear();
+        return octree.queryVisible(camera, visible);
+    }
+    
+    @Test
+    public void movedObjectStaysVisible() {
+        Simple3dObject object = cube(-10.f, -10.f, -10.f);
+        octree.insert(object);
+        object.setPosition(new Vector3f(-10.f, -10.f, -9.f));
+        
+        assertEquals(1, octree.size());
+        assertTrue(object.isVisible(camera));
+        assertEquals(1, queryVisible());
+        assertSame(object, visible.get(0));
+    }
+    
+    @Test
+    public void objectInLooseMarginOfRootIsVisible() {
+        Simple3dObject object = cube(20.f, 0.f, 0.f);
+        octree.insert(object);
+        assertEquals(1, queryVisible());
+        
+        //narrow view of the object only, loose bounds of root children aren't seen
+        camera = new Camera((float) Math.toRadians(10.f), 1.f, 0.1f, 500.f,
+                new Vector3f(20.f, 0.f, 10.f),
+                new Vector3f(0.f, 1.f, 0.f),
+                new Vector3f(0.f, 0.f, -1.f));
+        camera.rotate(-90., 0.);
+        assertEquals(1, queryVisible());
+        
+        object.setPosition(new Vector3f(20.f, 0.5f, 0.f));
+        assertEquals(1, queryVisible());
+    }
+    
+    @Test
+    public void randomMovesKeepAllObjects() {
+        Random random = new Random(42);
+        List<Simple3dObject> objects = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            Simple3dObject object = cube(coord(random), coord(random), coord(random));
+            objects.add(object);
+            octree.insert(object);
+        }
+        Vector3f position = new Vector3f();
+        for (int step = 0; step < 20; ++step) {
+            for (Simple3dObject object : objects) {
+                object.setPosition(position.set(coord(random), coord(random), coord(random)));
+            }
+            assertEquals(objects.size(), octree.size());
+            assertEquals(objects.size(), queryVisible());
+        }
+        //removing all prunes tree without losing remaining objects
+        for (int i = 0; i < objects.size(); i += 2) {
+            octree.remove(objects.get(i));
+        }
+        assertEquals(objects.size() / 2, octree.size());
+        assertEquals(objects.size() / 2, queryVisible());
+    }
+    
+    @Test
+    public void pickFindsMovedObject() {
+        Simple3dObject near = cube(0.f, 0.f, 5.f);
+        Simple3dObject far = cube(0.f, 0.f, -5.f);
+        octree.insert(near);
+        octree.insert(far);
+        Vector3f origin = new Vector3f(0.f, 0.f, 20.f);
+        Vector3f direction = new Vector3f(0.f, 0.f, -1.f);
+        assertSame(near, octree.pick(origin, direction));
+        
+        near.setPosition(new Vector3f(3.f, 0.f, 5.f));
+        assertSame(far, octree.pick(origin, direction));
+    }
+    
+    private static float coord(Random random) {
+        //whole world with part of loose margin of root
+        return (random.nextFloat() * 2.f - 1.f) * 20.f;
+    }
+    
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lwjgl.opengl.EXTTextureCompressionS3TC;
+import org.lwjgl.opengl.GL42;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Levels of DDS file are sliced by block sizes of format, 
+ * unsupported and truncated files are rejected
+ * @author Volchkov Andrey
+ */
+public class DdsReaderTest {
+    
+    private static final int DDSD_MIPMAPCOUNT = 0x20000;
+    private static final int DDPF_FOURCC = 0x4;
+    private static final int DDSCAPS2_CUBEMAP = 0x200;
+    private static final int FOURCC_DXT1 = 0x31545844;
+    private static final int FOURCC_DX10 = 0x30315844;
+    private static final int DXGI_BC7_UNORM = 98;
+    private static final int DXGI_DIMENSION_TEXTURE2D = 3;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    /**
+     * @return header of DDS file, data of levels must follow it
+     */
+    private static ByteBuffer header(int width, int height, int mipmaps, int fourCC, 
+            int caps2, int dataSize) {
+        int headerSize = fourCC == FOURCC_DX10 ? 148 : 128;
+        ByteBuffer dds = ByteBuffer.allocate(headerSize + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        dds.putInt(0, 0x20534444)
+                .putInt(4, 124)
+                .putInt(8, DDSD_MIPMAPCOUNT)
+                .putInt(12, height)
+                .putInt(16, width)
+                .putInt(28, mipmaps)
+                .putInt(76, 32)
+                .putInt(80, DDPF_FOURCC)
+                .putInt(84, fourCC)
+                .putInt(112, caps2);
+        if (fourCC == FOURCC_DX10) {
+            dds.putInt(128, DXGI_BC7_UNORM)
+                    .putInt(132, DXGI_DIMENSION_TEXTURE2D)
+                    .putInt(140, 1);
+        }
+        dds.position(headerSize);
+        return dds;
+    }
+    
+    private Resource write(ByteBuffer dds) throws IOException {
+        Path file = folder.newFile("texture.dds").toPath();
+        Files.write(file, dds.array());
+        return Resource.of(file);
+    }
+    
+    @Test
+    public void levelsOfDxt1AreSliced() throws IOException {
+        //8x4 -> 2x1 blocks, 4x2 and 2x1 -> one block of 8 bytes
+        int[] sizes = {16, 8, 8};
+        ByteBuffer dds = header(8, 4, 3, FOURCC_DXT1, 0, 32);
+        for (int level = 0; level < sizes.length; ++level) {
+            for (int i = 0; i < sizes[level]; ++i) {
+                dds.put((byte) level);
+            }
+        }
+        Resource resource = write(dds);
+        assertTrue(DdsReader.isDds(resource));
+        try (ImageData image = DdsReader.read(resource)) {
+            assertTrue(image.isCompressed());
+            assertEquals(EXTTextureCompressionS3TC.GL_COMPRESSED_RGBA_S3TC_DXT1_EXT, 
+                    image.getGlType());
+            assertEquals(8, image.getWidth());
+            assertEquals(4, image.getHeight());
+            assertEquals(3, image.getMipmapCount());
+            for (int level = 0; level < sizes.length; ++level) {
+                ByteBuffer data = image.getMipmapData(level);
+                assertEquals(sizes[level], data.remaining());
+                for (int i = 0; i < data.remaining(); ++i) {
+                    assertEquals(level, data.get(data.position() + i));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void bc7IsReadFromDx10Header() throws IOException {
+        ByteBuffer dds = header(4, 4, 1, FOURCC_DX10, 0, 16);
+        try (ImageData image = DdsReader.read(write(dds))) {
+            assertEquals(GL42.GL_COMPRESSED_RGBA_BPTC_UNORM, image.getGlType());
+            assertEquals(1, image.getMipmapCount());
+            assertEquals(16, image.getData().remaining());
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void truncatedFileIsRejected() throws IOException {
+        DdsReader.read(write(header(8, 8, 2, FOURCC_DXT1, 0, 32 + 4)));
+    }
+    
+    @Test(expected = IOException.class)
+    public void cubeMapIsRejected() throws IOException {
+        DdsReader.read(write(header(4, 4, 1, FOURCC_DXT1, DDSCAPS2_CUBEMAP, 8)));
+    }
+    
+    @Test(expected = IOException.class)
+    public void otherFileIsRejected() throws IOException {
+        ByteBuffer dds = header(4, 4, 1, FOURCC_DXT1, 0, 8);
+        dds.putInt(0, 0x474E5089);
+        DdsReader.read(write(dds));
+    }
+    
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.lwjgl.opengl.EXTTextureCompressionS3TC;
+import org.lwjgl.system.MemoryUtil;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Mipmap chain has all levels down to 1x1, box filter averages 2x2 blocks 
+ * and both filters keep flat color
+ * @author Volchkov Andrey
+ */
+public class MipmapGeneratorTest {
+    
+    private static ImageData image(int width, int height, int imageType, byte... pixel) {
+        ByteBuffer data = MemoryUtil.memAlloc(width * height * pixel.length);
+        while (data.hasRemaining()) {
+            data.put(pixel);
+        }
+        data.flip();
+        return new ImageData(width, height, imageType, data);
+    }
+    
+    @Test
+    public void levelCountReachesOnePixel() {
+        assertEquals(1, MipmapGenerator.levelCount(1, 1));
+        assertEquals(9, MipmapGenerator.levelCount(256, 256));
+        assertEquals(9, MipmapGenerator.levelCount(256, 1));
+        assertEquals(9, MipmapGenerator.levelCount(300, 200));
+    }
+    
+    @Test
+    public void levelsHaveHalvedSizes() {
+        try (ImageData mipmaps = MipmapGenerator.generate(
+                image(5, 3, BufferedImage.TYPE_3BYTE_BGR, (byte) 1, (byte) 2, (byte) 3))) {
+            assertEquals(3, mipmaps.getMipmapCount());
+            int[][] sizes = {{5, 3}, {2, 1}, {1, 1}};
+            for (int level = 0; level < sizes.length; ++level) {
+                assertEquals(sizes[level][0], mipmaps.getMipmapWidth(level));
+                assertEquals(sizes[level][1], mipmaps.getMipmapHeight(level));
+                assertEquals(sizes[level][0] * sizes[level][1] * 3, 
+                        mipmaps.getMipmapData(level).remaining());
+            }
+        }
+    }
+    
+    @Test
+    public void boxFilterAveragesBlock() {
+        ByteBuffer data = MemoryUtil.memAlloc(2 * 2 * 4);
+        int[] values = {0, 100, 200, 41};
+        for (int value : values) {
+            data.put(new byte[] {(byte) value, (byte) 255, (byte) (255 - value), (byte) 128});
+        }
+        data.flip();
+        ImageData image = new ImageData(2, 2, BufferedImage.TYPE_4BYTE_ABGR, data);
+        try (ImageData mipmaps = MipmapGenerator.generate(image, MipmapGenerator.Filter.BOX)) {
+            ByteBuffer level = mipmaps.getMipmapData(1);
+            //rounded average (341 + 2) / 4
+            assertEquals(85, level.get(0) & 0xFF);
+            assertEquals(255, level.get(1) & 0xFF);
+            assertEquals(170, level.get(2) & 0xFF);
+            assertEquals(128, level.get(3) & 0xFF);
+        }
+    }
+    
+    @Test
+    public void filtersKeepFlatColor() {
+        for (MipmapGenerator.Filter filter : MipmapGenerator.Filter.values()) {
+            //big enough for parallel tiles
+            try (ImageData mipmaps = MipmapGenerator.generate(image(300, 200, 
+                    BufferedImage.TYPE_4BYTE_ABGR, (byte) 10, (byte) 128, (byte) 250, (byte) 255), 
+                    filter)) {
+                for (int level = 0; level < mipmaps.getMipmapCount(); ++level) {
+                    ByteBuffer data = mipmaps.getMipmapData(level);
+                    for (int i = 0; i < data.remaining(); i += 4) {
+                        assertEquals(filter + " level " + level, 10, data.get(i) & 0xFF);
+                        assertEquals(filter + " level " + level, 128, data.get(i + 1) & 0xFF);
+                        assertEquals(filter + " level " + level, 250, data.get(i + 2) & 0xFF);
+                        assertEquals(filter + " level " + level, 255, data.get(i + 3) & 0xFF);
+                    }
+                }
+            }
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void compressedImageIsRejected() {
+        ByteBuffer block = MemoryUtil.memAlloc(8);
+        try (ImageData image = new ImageData(4, 4, 
+                EXTTextureCompressionS3TC.GL_COMPRESSED_RGBA_S3TC_DXT1_EXT, 
+                new ByteBuffer[] {block}, null)) {
+            MipmapGenerator.generate(image);
+        }
+    }
+    
+}
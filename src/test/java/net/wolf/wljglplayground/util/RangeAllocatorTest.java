@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Ranges are allocated first fit without overlapping 
+ * and freed ranges are merged with free neighbours
+ * @author Volchkov Andrey
+ */
+public class RangeAllocatorTest {
+    
+    @Test
+    public void allocatesAtLowestFittingOffset() {
+        RangeAllocator allocator = new RangeAllocator(100);
+        assertEquals(0, allocator.allocate(10));
+        assertEquals(10, allocator.allocate(20));
+        assertEquals(30, allocator.allocate(30));
+        assertEquals(60, allocator.getUsed());
+        
+        allocator.free(10, 20);
+        //hole is reused, smaller range is cut from its start
+        assertEquals(10, allocator.allocate(15));
+        //rest of hole is too small
+        assertEquals(60, allocator.allocate(10));
+        assertEquals(25, allocator.allocate(5));
+        assertEquals(70, allocator.getUsed());
+    }
+    
+    @Test
+    public void returnsNoOffsetWhenNothingFits() {
+        RangeAllocator allocator = new RangeAllocator(10);
+        assertEquals(0, allocator.allocate(4));
+        assertEquals(4, allocator.allocate(6));
+        assertEquals(-1, allocator.allocate(1));
+        
+        allocator.free(0, 4);
+        assertEquals(-1, allocator.allocate(5));
+        assertEquals(4, allocator.getLargestFree());
+    }
+    
+    @Test
+    public void freeMergesAdjacentRanges() {
+        RangeAllocator allocator = new RangeAllocator(30);
+        int a = allocator.allocate(10);
+        int b = allocator.allocate(10);
+        int c = allocator.allocate(10);
+        assertEquals(0, allocator.getFreeRanges());
+        
+        allocator.free(a, 10);
+        allocator.free(c, 10);
+        assertEquals(2, allocator.getFreeRanges());
+        assertEquals(10, allocator.getLargestFree());
+        
+        //merged with both neighbours
+        allocator.free(b, 10);
+        assertEquals(1, allocator.getFreeRanges());
+        assertEquals(30, allocator.getLargestFree());
+        assertEquals(0, allocator.getUsed());
+        assertEquals(0, allocator.allocate(30));
+    }
+    
+    @Test
+    public void growAddsSpaceMergedWithFreeTail() {
+        RangeAllocator allocator = new RangeAllocator(10);
+        assertEquals(0, allocator.allocate(6));
+        allocator.grow(20);
+        assertEquals(20, allocator.getCapacity());
+        assertEquals(6, allocator.getUsed());
+        assertEquals(1, allocator.getFreeRanges());
+        assertEquals(6, allocator.allocate(14));
+        assertEquals(-1, allocator.allocate(1));
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void doubleFreeThrows() {
+        RangeAllocator allocator = new RangeAllocator(10);
+        int offset = allocator.allocate(5);
+        allocator.free(offset, 5);
+        allocator.free(offset, 5);
+    }
+    
+    @Test
+    public void randomRangesDontOverlap() {
+        final int capacity = 1000;
+        RangeAllocator allocator = new RangeAllocator(capacity);
+        //owner of every element, -1 for free
+        int[] owners = new int[capacity];
+        Arrays.fill(owners, -1);
+        List<int[]> allocated = new ArrayList<>();
+        Random random = new Random(24);
+        for (int step = 0; step < 10000; ++step) {
+            if (allocated.isEmpty() || random.nextInt(3) != 0) {
+                int size = 1 + random.nextInt(50);
+                int offset = allocator.allocate(size);
+                if (offset < 0) {
+                    assertTrue(allocator.getLargestFree() < size);
+                    continue;
+                }
+                assertTrue(offset + size <= capacity);
+                for (int i = offset; i < offset + size; ++i) {
+                    assertEquals("element " + i + " is allocated twice", -1, owners[i]);
+                    owners[i] = step;
+                }
+                allocated.add(new int[] {offset, size});
+            } else {
+                int[] range = allocated.remove(random.nextInt(allocated.size()));
+                allocator.free(range[0], range[1]);
+                Arrays.fill(owners, range[0], range[0] + range[1], -1);
+            }
+            int used = 0;
+            for (int owner : owners) {
+                used += owner >= 0 ? 1 : 0;
+            }
+            assertEquals(used, allocator.getUsed());
+        }
+        for (int[] range : allocated) {
+            allocator.free(range[0], range[1]);
+        }
+        assertEquals(1, allocator.getFreeRanges());
+        assertEquals(capacity, allocator.getLargestFree());
+    }
+    
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Streamed content is read whole into buffer of its size, 
+ * buffers grow only when size is unknown or wrong
+ * @author Volchkov Andrey
+ */
+public class ResourceTest {
+    
+    //size of pooled read buffer of thread
+    private static final int POOLED = 64 * 1024;
+    
+    /**
+     * Resource of byte array reporting given size
+     */
+    private static class BytesResource extends Resource {
+        
+        private final byte[] content;
+        private final long reportedSize;
+
+        BytesResource(byte[] content, long reportedSize) {
+            super("bytes");
+            this.content = content;
+            this.reportedSize = reportedSize;
+        }
+
+        @Override
+        public String getId() {
+            return "bytes:" + content.length;
+        }
+
+        @Override
+        public long size() {
+            return reportedSize;
+        }
+
+        @Override
+        public long lastModified() {
+            return 0L;
+        }
+
+        @Override
+        public InputStream openStream() {
+            return new ByteArrayInputStream(content);
+        }
+    }
+    
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+    
+    private static void assertContent(byte[] expected, ByteBuffer actual) {
+        assertEquals(expected.length, actual.remaining());
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals("byte " + i, expected[i], actual.get(actual.position() + i));
+        }
+    }
+    
+    private static void readKnownSize(int size, int expectedCapacity) throws IOException {
+        byte[] content = content(size);
+        try (ResourceBuffer buffer = new BytesResource(content, size).read()) {
+            assertContent(content, buffer.getData());
+            assertEquals(expectedCapacity, buffer.getData().capacity());
+        }
+    }
+    
+    @Test
+    public void smallContentIsCopiedFromPooledBuffer() throws IOException {
+        readKnownSize(1000, 1000);
+        readKnownSize(POOLED, POOLED);
+    }
+    
+    @Test
+    public void largeContentIsReadIntoBufferOfItsSize() throws IOException {
+        readKnownSize(POOLED + 1, POOLED + 1);
+        readKnownSize(1 << 20, 1 << 20);
+    }
+    
+    @Test
+    public void contentOfUnknownOrWrongSizeIsReadWhole() throws IOException {
+        byte[] content = content(300 * 1024);
+        try (ResourceBuffer buffer = new BytesResource(content, -1).read()) {
+            assertContent(content, buffer.getData());
+        }
+        try (ResourceBuffer buffer = new BytesResource(content, 100 * 1024).read()) {
+            assertContent(content, buffer.getData());
+        }
+        try (ResourceBuffer buffer = new BytesResource(content(0), 0).read()) {
+            assertEquals(0, buffer.size());
+        }
+    }
+    
+    @Test
+    public void stringOfPooledSizeIsDecoded() throws IOException {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < POOLED) {
+            text.append((char) ('a' + text.length() % 26));
+        }
+        byte[] content = text.toString().getBytes("UTF-8");
+        assertEquals(text.toString(), new BytesResource(content, content.length).readString());
+    }
+    
+}
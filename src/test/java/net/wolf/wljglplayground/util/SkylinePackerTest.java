@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Packed rectangles stay inside of page without overlapping, 
+ * full page doesn't accept more rectangles
+ * @author Volchkov Andrey
+ */
+public class SkylinePackerTest {
+    
+    private final int[] position = new int[2];
+    
+    /**
+     * Mark rectangle in coverage of page
+     * @return false if rectangle overlaps marked one
+     */
+    private static boolean mark(boolean[][] covered, int x, int y, int width, int height) {
+        for (int row = y; row < y + height; ++row) {
+            for (int column = x; column < x + width; ++column) {
+                if (covered[row][column]) {
+                    return false;
+                }
+                covered[row][column] = true;
+            }
+        }
+        return true;
+    }
+    
+    @Test
+    public void randomRectanglesDontOverlap() {
+        final int size = 256;
+        SkylinePacker packer = new SkylinePacker(size, size);
+        boolean[][] covered = new boolean[size][size];
+        Random random = new Random(16);
+        int packed = 0;
+        for (int i = 0; i < 500; ++i) {
+            int width = 1 + random.nextInt(40);
+            int height = 1 + random.nextInt(40);
+            if (!packer.pack(width, height, position)) {
+                continue;
+            }
+            int x = position[0];
+            int y = position[1];
+            assertTrue(x >= 0 && y >= 0 && x + width <= size && y + height <= size);
+            assertTrue("rectangle " + i + " overlaps", mark(covered, x, y, width, height));
+            packed++;
+        }
+        assertTrue("too few packed " + packed, packed > 50);
+    }
+    
+    @Test
+    public void fullPageRejectsRectangles() {
+        SkylinePacker packer = new SkylinePacker(256, 256);
+        boolean[][] covered = new boolean[256][256];
+        //equal tiles fill page exactly
+        for (int i = 0; i < 16; ++i) {
+            assertTrue("tile " + i, packer.pack(64, 64, position));
+            assertTrue(mark(covered, position[0], position[1], 64, 64));
+        }
+        assertFalse(packer.pack(1, 1, position));
+    }
+    
+    @Test
+    public void rectangleLargerThanPageIsRejected() {
+        SkylinePacker packer = new SkylinePacker(128, 64);
+        assertFalse(packer.pack(129, 1, position));
+        assertFalse(packer.pack(1, 65, position));
+        assertTrue(packer.pack(128, 64, position));
+        assertEquals(0, position[0]);
+        assertEquals(0, position[1]);
+        assertFalse(packer.pack(1, 1, position));
+    }
+    
+    @Test
+    public void lowestPlaceIsChosen() {
+        SkylinePacker packer = new SkylinePacker(100, 100);
+        assertTrue(packer.pack(60, 50, position));
+        assertTrue(packer.pack(40, 10, position));
+        assertEquals(60, position[0]);
+        assertEquals(0, position[1]);
+        //above shorter column
+        assertTrue(packer.pack(40, 10, position));
+        assertEquals(60, position[0]);
+        assertEquals(10, position[1]);
+        //too wide for right column, placed on top of whole skyline
+        assertTrue(packer.pack(70, 10, position));
+        assertEquals(0, position[0]);
+        assertEquals(50, position[1]);
+    }
+    
+}
@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Volchkov Andrey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.wolf.wljglplayground.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.system.MemoryUtil;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Stored image is mapped back with all levels, 
+ * cache is missed when source or filter is changed and when file is corrupt
+ * @author Volchkov Andrey
+ */
+public class TextureCacheTest {
+    
+    private static final String NAME = "textures/test.png";
+    private static final byte[] SOURCE = "source image content".getBytes();
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private TextureCache cache;
+    private Path sourceFile;
+    private Resource source;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = new TextureCache(folder.newFolder("cache").toString());
+        sourceFile = folder.newFile("test.png").toPath();
+        Files.write(sourceFile, SOURCE);
+        source = new FileResource("/" + NAME, sourceFile);
+    }
+    
+    /**
+     * @return RGBA image of 3 levels, bytes of level are filled by number of level
+     */
+    private static ImageData createImage() {
+        ByteBuffer[] levels = new ByteBuffer[3];
+        for (int level = 0; level < levels.length; ++level) {
+            int size = Math.max(1, 4 >> level) * Math.max(1, 2 >> level) * 4;
+            levels[level] = MemoryUtil.memAlloc(size);
+            for (int i = 0; i < size; ++i) {
+                levels[level].put(i, (byte) (level + 1));
+            }
+        }
+        return new ImageData(4, 2, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, levels, null);
+    }
+    
+    private void store() throws IOException {
+        try (ImageData image = createImage()) {
+            cache.store(source, image, MipmapGenerator.Filter.BOX);
+        }
+    }
+    
+    @Test
+    public void storedImageIsLoaded() throws IOException {
+        try (ImageData expected = createImage()) {
+            cache.store(source, expected, MipmapGenerator.Filter.BOX);
+            try (ImageData loaded = cache.load(source, MipmapGenerator.Filter.BOX)) {
+                assertNotNull(loaded);
+                assertEquals(expected.getWidth(), loaded.getWidth());
+                assertEquals(expected.getHeight(), loaded.getHeight());
+                assertEquals(expected.getGlType(), loaded.getGlType());
+                assertEquals(expected.getPixelType(), loaded.getPixelType());
+                assertEquals(expected.getMipmapCount(), loaded.getMipmapCount());
+                for (int level = 0; level < expected.getMipmapCount(); ++level) {
+                    assertEquals(expected.getMipmapData(level), loaded.getMipmapData(level));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void changedSourceMissesCache() throws IOException {
+        store();
+        byte[] changed = SOURCE.clone();
+        changed[0]++;
+        Files.write(sourceFile, changed);
+        assertNull(cache.load(source, MipmapGenerator.Filter.BOX));
+    }
+    
+    @Test
+    public void otherFilterMissesCache() throws IOException {
+        store();
+        assertNull(cache.load(source, MipmapGenerator.Filter.KAISER));
+    }
+    
+    @Test
+    public void jarResourceHitsCacheOfFile() throws IOException {
+        store();
+        Path jar = folder.newFile("textures.jar").toPath();
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(NAME));
+            out.write(SOURCE);
+            out.closeEntry();
+        }
+        URL url = new URL("jar:" + jar.toUri() + "!/" + NAME);
+        Resource packed = new UrlResource(NAME, url);
+        try (ImageData loaded = cache.load(packed, MipmapGenerator.Filter.BOX)) {
+            assertNotNull(loaded);
+            assertEquals(3, loaded.getMipmapCount());
+        }
+    }
+    
+    @Test
+    public void corruptFileMissesCache() throws IOException {
+        store();
+        Path cacheFile;
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath().resolve("cache"))) {
+            cacheFile = files.findFirst().get();
+        }
+        //offset of last level points beyond end of file
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.WRITE)) {
+            ByteBuffer offset = ByteBuffer.allocate(8).putLong(0, channel.size());
+            channel.write(offset, 48 + 2 * 16);
+        }
+        assertNull(cache.load(source, MipmapGenerator.Filter.BOX));
+    }
+    
+}